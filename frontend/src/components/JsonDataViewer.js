@@ -30,6 +30,7 @@ const JsonDataViewer = () => {
     const [endDate, setEndDate] = useState('');
     const [contentFilter, setContentFilter] = useState('');
     const [data, setData] = useState([]);
+    const [nextCursor, setNextCursor] = useState(null);
     const [loading, setLoading] = useState(false);
     const [error, setError] = useState('');
     const [open, setOpen] = useState(false);
@@ -61,10 +62,9 @@ const JsonDataViewer = () => {
         },
     ];
 
-    const fetchData = async () => {
+    const fetchPage = async (cursor) => {
         setLoading(true);
         setError('');
-        setData([]);
 
         if (!startDate || !endDate) {
             setError('Please select both a start and end date.');
@@ -80,9 +80,14 @@ const JsonDataViewer = () => {
             if (contentFilter) {
                 params.contentFilter = contentFilter;
             }
-            const response = await axios.get('/api/data', { params });
+            if (cursor) {
+                params.cursor = cursor;
+            }
+            const response = await axios.get('/api/data/scroll', { params });
             if (response.data && response.data.success) {
-                setData(response.data.data.content);
+                const page = response.data.data;
+                setData((current) => (cursor ? [...current, ...page.content] : page.content));
+                setNextCursor(page.nextCursor);
             } else {
                 setError(response.data.message || 'Failed to fetch data.');
             }
@@ -94,6 +99,12 @@ const JsonDataViewer = () => {
         }
     };
 
+    const fetchData = () => {
+        setData([]);
+        setNextCursor(null);
+        fetchPage(null);
+    };
+
     return (
         <div>
             <Typography variant="h4" gutterBottom>Inbound Message</Typography>
@@ -121,6 +132,9 @@ const JsonDataViewer = () => {
                 <Button onClick={fetchData} disabled={loading} variant="contained">
                     {loading ? 'Loading...' : 'Fetch Data'}
                 </Button>
+                <Button onClick={() => fetchPage(nextCursor)} disabled={loading || !nextCursor} variant="outlined">
+                    Load More
+                </Button>
             </Box>
             {error && <Typography color="error">{error}</Typography>}
             <div style={{ height: 600, width: '100%' }}>
@@ -8,40 +8,33 @@ const SummaryPage = () => {
     const [error, setError] = useState(null);
 
     useEffect(() => {
-        const fetchSummaryData = async () => {
-            setLoading(true);
-            try {
-                const response = await fetch('/api/summary/trades-by-fund', {
-                    credentials: 'include'
-                });
+        // The server sends a full snapshot on connect, then only the funds whose counts changed.
+        const eventSource = new EventSource('/api/summary/trades-by-fund/stream', { withCredentials: true });
 
-                if (response.status === 401) {
-                    // Let the browser's basic auth prompt handle it.
-                    // We can optionally set an error message.
-                    setError('Please log in to view the summary.');
-                    return; // Stop processing
-                }
+        eventSource.addEventListener('snapshot', (event) => {
+            setSummaryData(JSON.parse(event.data));
+            setError(null);
+            setLoading(false);
+        });
 
-                if (!response.ok) {
-                    throw new Error('Network response was not ok');
-                }
+        eventSource.addEventListener('delta', (event) => {
+            const changes = JSON.parse(event.data);
+            setSummaryData((current) => {
+                const byFund = new Map(current.map((row) => [row.fundNumber, row]));
+                changes.forEach((row) => byFund.set(row.fundNumber, row));
+                return Array.from(byFund.values());
+            });
+        });
 
-                const data = await response.json();
-                if (data && data.success) {
-                    setSummaryData(data.data);
-                    setError(null); // Clear previous errors
-                } else {
-                    setError(data.message || 'Failed to fetch summary data.');
-                }
-            } catch (err) {
-                setError(err.message || 'Failed to fetch summary data. Make sure the backend is running.');
-                console.error(err);
-            } finally {
+        eventSource.onerror = () => {
+            // EventSource reconnects on its own; it only gives up when the server refuses the stream, e.g. a 401.
+            if (eventSource.readyState === EventSource.CLOSED) {
+                setError('Could not connect to the summary stream. Please log in and make sure the backend is running.');
                 setLoading(false);
             }
         };
 
-        fetchSummaryData();
+        return () => eventSource.close();
     }, []);
 
     if (loading) {
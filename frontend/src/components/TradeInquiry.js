@@ -1,7 +1,6 @@
-import React, { useState } from 'react';
+import React, { useState, useEffect } from 'react';
 import { DataGrid } from '@mui/x-data-grid';
 import { Button, TextField, Typography, Box, Modal, Paper } from '@mui/material';
-import * as XLSX from 'xlsx';
 
 const safeFormatJson = (jsonString) => {
     if (!jsonString) return 'No JSON data available.';
@@ -18,14 +17,27 @@ const TradeInquiry = () => {
     const [startDate, setStartDate] = useState('');
     const [endDate, setEndDate] = useState('');
     const [trades, setTrades] = useState([]);
+    const [rowCount, setRowCount] = useState(0);
+    const [paginationModel, setPaginationModel] = useState({ page: 0, pageSize: 25 });
+    const [sortModel, setSortModel] = useState([{ field: 'tradeDate', sort: 'desc' }]);
+    const [searchParams, setSearchParams] = useState(null);
     const [loading, setLoading] = useState(false);
     const [error, setError] = useState(null);
     const [isModalOpen, setIsModalOpen] = useState(false);
     const [selectedJson, setSelectedJson] = useState(null);
 
-    const handleViewJson = (json) => {
-        setSelectedJson(json);
+    const handleViewJson = async (clientReferenceNumber) => {
+        setSelectedJson(null);
         setIsModalOpen(true);
+        try {
+            const response = await fetch(`/api/trades/${encodeURIComponent(clientReferenceNumber)}/outbound-json`, {
+                credentials: 'include'
+            });
+            const data = await response.json();
+            setSelectedJson(response.ok && data.success ? data.data : data.message);
+        } catch (error) {
+            setSelectedJson(error.message);
+        }
     };
 
     const handleCloseModal = () => {
@@ -33,11 +45,12 @@ const TradeInquiry = () => {
         setSelectedJson(null);
     };
 
+    // Exports every matching trade, not just the page on screen.
     const handleExport = () => {
-        const worksheet = XLSX.utils.json_to_sheet(trades);
-        const workbook = XLSX.utils.book_new();
-        XLSX.utils.book_append_sheet(workbook, worksheet, "Trades");
-        XLSX.writeFile(workbook, "TradeData.xlsx");
+        if (!searchParams) return;
+        const params = new URLSearchParams(searchParams);
+        params.append('format', 'csv');
+        window.location.href = `/api/trades/export?${params.toString()}`;
     };
 
     const columns = [
@@ -54,11 +67,12 @@ const TradeInquiry = () => {
             field: 'actions',
             headerName: 'Outbound',
             width: 100,
+            sortable: false,
             renderCell: (params) => (
                 <Button
                     variant="outlined"
                     size="small"
-                    onClick={() => handleViewJson(params.row.outboundJson)}
+                    onClick={() => handleViewJson(params.row.clientReferenceNumber)}
                 >
                     View
                 </Button>
@@ -66,7 +80,50 @@ const TradeInquiry = () => {
         },
     ];
 
-    const handleSubmit = async (event) => {
+    useEffect(() => {
+        if (!searchParams) return;
+
+        const fetchTrades = async () => {
+            setLoading(true);
+            setError(null);
+            try {
+                const params = new URLSearchParams(searchParams);
+                params.append('page', paginationModel.page);
+                params.append('size', paginationModel.pageSize);
+                if (sortModel.length > 0) {
+                    params.append('sort', `${sortModel[0].field},${sortModel[0].sort}`);
+                }
+
+                const response = await fetch(`/api/trades?${params.toString()}`, {
+                    method: 'GET',
+                    headers: {
+                        'Content-Type': 'application/json'
+                    },
+                    credentials: 'include'
+                });
+
+                const data = await response.json();
+                if (response.ok && data.success) {
+                    // Add a unique id to each row for the DataGrid
+                    const tradesWithIds = data.data.content.map((trade, index) => ({ ...trade, id: index }));
+                    setTrades(tradesWithIds);
+                    setRowCount(data.data.totalElements);
+                } else {
+                    throw new Error(data.message || 'Network response was not ok');
+                }
+            } catch (error) {
+                setError(error.message);
+                setTrades([]);
+                setRowCount(0);
+            } finally {
+                setLoading(false);
+            }
+        };
+
+        fetchTrades();
+    }, [searchParams, paginationModel, sortModel]);
+
+    const handleSubmit = (event) => {
         event.preventDefault();
         const hasClientRef = clientRef.trim();
         const hasDateRange = startDate && endDate;
@@ -80,41 +137,16 @@ const TradeInquiry = () => {
             return;
         }
 
-        setLoading(true);
-        setError(null);
-
-        try {
-            const params = new URLSearchParams();
-            if (hasClientRef) {
-                params.append('clientReferenceNumber', clientRef);
-            }
-            if (hasDateRange) {
-                params.append('startDate', startDate);
-                params.append('endDate', endDate);
-            }
-
-            const response = await fetch(`/api/trades?${params.toString()}`, {
-                method: 'GET',
-                headers: {
-                    'Content-Type': 'application/json'
-                },
-                credentials: 'include'
-            });
-
-            const data = await response.json();
-            if (response.ok && data.success) {
-                // Add a unique id to each row for the DataGrid
-                const tradesWithIds = data.data.map((trade, index) => ({ ...trade, id: index }));
-                setTrades(tradesWithIds);
-            } else {
-                throw new Error(data.message || 'Network response was not ok');
-            }
-        } catch (error) {
-            setError(error.message);
-            setTrades([]);
-        } finally {
-            setLoading(false);
+        const params = new URLSearchParams();
+        if (hasClientRef) {
+            params.append('clientReferenceNumber', clientRef);
+        }
+        if (hasDateRange) {
+            params.append('startDate', startDate);
+            params.append('endDate', endDate);
         }
+        setPaginationModel((model) => ({ ...model, page: 0 }));
+        setSearchParams(params.toString());
     };
 
     return (
@@ -154,8 +186,14 @@ const TradeInquiry = () => {
                 <DataGrid
                     rows={trades}
                     columns={columns}
-                    pageSize={5}
-                    rowsPerPageOptions={[5]}
+                    rowCount={rowCount}
+                    paginationMode="server"
+                    paginationModel={paginationModel}
+                    onPaginationModelChange={setPaginationModel}
+                    pageSizeOptions={[25, 50, 100]}
+                    sortingMode="server"
+                    sortModel={sortModel}
+                    onSortModelChange={setSortModel}
                     loading={loading}
                     getRowId={(row) => row.id}
                     slots={{
@@ -168,7 +206,7 @@ const TradeInquiry = () => {
                 />
             </div>
             <Box sx={{ mt: 2, display: 'flex', justifyContent: 'flex-end' }}>
-                <Button variant="contained" onClick={handleExport}>Export to Excel</Button>
+                <Button variant="contained" onClick={handleExport} disabled={!searchParams}>Export to CSV</Button>
             </Box>
 
             <Modal
@@ -1,30 +1,29 @@
 package com.poc.trademanager;
 
+import com.poc.trademanager.dto.CursorPage;
 import com.poc.trademanager.dto.FundTradeCount;
 import com.poc.trademanager.dto.JsonData;
+import com.poc.trademanager.dto.KeysetCursor;
 import com.poc.trademanager.dto.TradeDetailsDto;
 import com.poc.trademanager.dto.TradeExceptionData;
 import com.poc.trademanager.dto.TradeSummaryDto;
 import com.poc.trademanager.entity.JsonDoc;
 import com.poc.trademanager.entity.TradeDetail;
 import com.poc.trademanager.entity.TradeException;
-import com.poc.trademanager.entity.UserFundEntitlement;
-import com.poc.trademanager.repository.AppUserRepository;
 import com.poc.trademanager.repository.JsonDocRepository;
 import com.poc.trademanager.repository.TradeDetailRepository;
 import com.poc.trademanager.repository.TradeExceptionRepository;
-import com.poc.trademanager.repository.UserFundEntitlementRepository;
+import com.poc.trademanager.service.EntitlementCache;
+import com.poc.trademanager.service.JsonDocArchive;
+import com.poc.trademanager.service.JsonDocContentIndex;
 import com.poc.trademanager.service.UniqueIdGenerator;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.dao.DataAccessException;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -32,39 +31,40 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class DatabaseStorageService {
 
     private static final Logger log = LoggerFactory.getLogger(DatabaseStorageService.class);
 
-    private final AppUserRepository appUserRepository;
-    private final UserFundEntitlementRepository userFundEntitlementRepository;
+    private final EntitlementCache entitlementCache;
+    private final JsonDocContentIndex jsonDocContentIndex;
+    private final JsonDocArchive jsonDocArchive;
     private final UniqueIdGenerator uniqueIdGenerator;
     private final JsonDocRepository jsonDocRepository;
     private final TradeDetailRepository tradeDetailRepository;
     private final TradeExceptionRepository tradeExceptionRepository;
-    private final ObjectMapper objectMapper;
 
-    public DatabaseStorageService(AppUserRepository appUserRepository, UserFundEntitlementRepository userFundEntitlementRepository, UniqueIdGenerator uniqueIdGenerator, JsonDocRepository jsonDocRepository, TradeDetailRepository tradeDetailRepository, TradeExceptionRepository tradeExceptionRepository, ObjectMapper objectMapper) {
-        this.appUserRepository = appUserRepository;
-        this.userFundEntitlementRepository = userFundEntitlementRepository;
+    public DatabaseStorageService(EntitlementCache entitlementCache, JsonDocContentIndex jsonDocContentIndex, JsonDocArchive jsonDocArchive, UniqueIdGenerator uniqueIdGenerator, JsonDocRepository jsonDocRepository, TradeDetailRepository tradeDetailRepository, TradeExceptionRepository tradeExceptionRepository) {
+        this.entitlementCache = entitlementCache;
+        this.jsonDocContentIndex = jsonDocContentIndex;
+        this.jsonDocArchive = jsonDocArchive;
         this.uniqueIdGenerator = uniqueIdGenerator;
         this.jsonDocRepository = jsonDocRepository;
         this.tradeDetailRepository = tradeDetailRepository;
         this.tradeExceptionRepository = tradeExceptionRepository;
-        this.objectMapper = objectMapper;
     }
 
     @Transactional
-    @Retryable(
-        value = { DataAccessException.class },
-        maxAttempts = Integer.MAX_VALUE,
-        backoff = @Backoff(delay = 300000)
-    )
     public JsonDoc saveRawMessage(String jsonMessage) {
         if (jsonMessage == null || jsonMessage.trim().isEmpty()) {
             log.warn("Received an empty or null message, not saving.");
@@ -73,15 +73,241 @@ public class DatabaseStorageService {
         JsonDoc jsonDoc = new JsonDoc();
         jsonDoc.setMessageKey(uniqueIdGenerator.generateUniqueId());
         jsonDoc.setData(jsonMessage);
-        return jsonDocRepository.save(jsonDoc);
+        JsonDoc saved = jsonDocRepository.save(jsonDoc);
+        jsonDocContentIndex.addAll(Collections.singletonList(saved));
+        return saved;
     }
 
+    /**
+     * Persists a whole consumer batch in a single transaction. Empty or null messages are skipped, so the
+     * returned list may be shorter than the input.
+     */
+    @Transactional
+    public List<JsonDoc> saveRawMessages(List<String> jsonMessages) {
+        List<JsonDoc> jsonDocs = new ArrayList<>(jsonMessages.size());
+        for (String jsonMessage : jsonMessages) {
+            if (jsonMessage == null || jsonMessage.trim().isEmpty()) {
+                log.warn("Received an empty or null message in batch, not saving.");
+                continue;
+            }
+            JsonDoc jsonDoc = new JsonDoc();
+            jsonDoc.setMessageKey(uniqueIdGenerator.generateUniqueId());
+            jsonDoc.setData(jsonMessage);
+            jsonDocs.add(jsonDoc);
+        }
+        List<JsonDoc> saved = jsonDocRepository.saveAll(jsonDocs);
+        jsonDocContentIndex.addAll(saved);
+        return saved;
+    }
+
+    /**
+     * Searches the raw messages, newest first, including those moved to the {@link JsonDocArchive}. The content
+     * filter is a {@code LIKE} substring, so {@code %} and {@code _} are wildcards; the content index narrows it
+     * down to candidate rows where it can. Archived rows are not in the table, so they are matched here, the way
+     * MySQL's default case-insensitive collation would.
+     */
+    @Transactional(readOnly = true)
     public Page<JsonData> getDataByDateRange(LocalDate startDate, LocalDate endDate, String contentFilter, Pageable pageable) {
         LocalDateTime startDateTime = startDate != null ? startDate.atStartOfDay() : null;
         LocalDateTime endDateTime = endDate != null ? endDate.plusDays(1).atStartOfDay() : null;
 
-        return jsonDocRepository.findByCriteria(startDateTime, endDateTime, contentFilter, pageable)
-                .map(this::convertToJsonData);
+        if (!jsonDocArchive.hasRecordsIn(startDateTime, endDateTime)) {
+            Optional<JsonDocContentIndex.ContentLookup> lookup = lookup(contentFilter, startDateTime);
+            Page<JsonDoc> docs = lookup.isPresent()
+                    ? jsonDocRepository.findByCriteriaAndCandidates(candidateIds(lookup.get()), lookup.get().getIndexedUpTo(),
+                            startDateTime, endDateTime, contentFilter, pageable)
+                    : jsonDocRepository.findByCriteria(startDateTime, endDateTime, contentFilter, pageable);
+            return docs.map(this::convertToJsonData);
+        }
+
+        long total = jsonDocRepository.countByCriteria(startDateTime, endDateTime, contentFilter)
+                + countArchived(startDateTime, endDateTime, contentFilter);
+        if (contentFilter != null) {
+            try (Stream<JsonData> matches = streamWithArchive(startDateTime, endDateTime, contentFilter, KeysetCursor.START)) {
+                List<JsonData> content = matches.skip(pageable.getOffset()).limit(pageable.getPageSize()).collect(Collectors.toList());
+                return new PageImpl<>(content, pageable, total);
+            }
+        }
+        Optional<KeysetCursor> position = pageable.getOffset() == 0
+                ? Optional.of(KeysetCursor.START) : positionAt(startDateTime, endDateTime, pageable.getOffset());
+        if (position.isEmpty()) {
+            return new PageImpl<>(Collections.emptyList(), pageable, total);
+        }
+        try (Stream<JsonData> docs = streamWithArchive(startDateTime, endDateTime, null, position.get())) {
+            List<JsonData> content = docs.limit(pageable.getPageSize()).collect(Collectors.toList());
+            return new PageImpl<>(content, pageable, total);
+        }
+    }
+
+    /**
+     * Keyset-paginated variant of {@link #getDataByDateRange}: seeks past the cursor on {@code (createdAt, id)}
+     * instead of skipping an offset, and runs no count query.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<JsonData> getDataAfterCursor(LocalDate startDate, LocalDate endDate, String contentFilter, KeysetCursor cursor, int size) {
+        LocalDateTime startDateTime = startDate != null ? startDate.atStartOfDay() : null;
+        LocalDateTime endDateTime = endDate != null ? endDate.plusDays(1).atStartOfDay() : null;
+        KeysetCursor position = cursor != null ? cursor : KeysetCursor.START;
+
+        // One extra row tells whether there is a next page.
+        List<JsonData> docs;
+        if (!jsonDocArchive.hasRecordsIn(startDateTime, endDateTime)) {
+            Optional<JsonDocContentIndex.ContentLookup> lookup = lookup(contentFilter, startDateTime);
+            List<JsonDoc> page = lookup.isPresent()
+                    ? jsonDocRepository.findPageAfterAndCandidates(position.getCreatedAt(), position.getId(), candidateIds(lookup.get()),
+                            lookup.get().getIndexedUpTo(), startDateTime, endDateTime, contentFilter, PageRequest.of(0, size + 1))
+                    : jsonDocRepository.findPageAfter(position.getCreatedAt(), position.getId(), startDateTime, endDateTime,
+                            contentFilter, PageRequest.of(0, size + 1));
+            docs = page.stream().map(this::convertToJsonData).collect(Collectors.toList());
+        } else {
+            try (Stream<JsonData> matches = streamWithArchive(startDateTime, endDateTime, contentFilter, position)) {
+                docs = matches.limit(size + 1L).collect(Collectors.toList());
+            }
+        }
+
+        String nextCursor = null;
+        if (docs.size() > size) {
+            docs = docs.subList(0, size);
+            JsonData last = docs.get(size - 1);
+            nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new CursorPage<>(docs, nextCursor);
+    }
+    /**
+     * Position of the {@code offset}th row (from 1) of the table and archive merged newest first, found without
+     * reading any stored data. The table's rows are walked by position only; the archived rows falling between two
+     * of them are counted, and the one the offset lands on is found, through the segments' time indexes.
+     */
+    private Optional<KeysetCursor> positionAt(LocalDateTime startDateTime, LocalDateTime endDateTime, long offset) {
+        KeysetCursor position = KeysetCursor.START;
+        long remaining = offset;
+        Optional<KeysetCursor> archivedHead = jsonDocArchive.positionAt(position, 1, startDateTime, endDateTime);
+        try (Stream<KeysetCursor> rows = jsonDocRepository.streamPositions(startDateTime, endDateTime)) {
+            Iterator<KeysetCursor> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                KeysetCursor row = iterator.next();
+                boolean archivedFirst = archivedHead.isPresent() && isNewer(archivedHead.get(), row);
+                if (archivedFirst) {
+                    long archived = jsonDocArchive.countBetween(position, row, startDateTime, endDateTime);
+                    if (archived >= remaining) {
+                        return jsonDocArchive.positionAt(position, remaining, startDateTime, endDateTime);
+                    }
+                    remaining -= archived;
+                }
+                position = row;
+                if (--remaining == 0) {
+                    return Optional.of(position);
+                }
+                if (archivedFirst) {
+                    archivedHead = jsonDocArchive.positionAt(position, 1, startDateTime, endDateTime);
+                }
+            }
+        }
+        return jsonDocArchive.positionAt(position, remaining, startDateTime, endDateTime);
+    }
+
+    private static boolean isNewer(KeysetCursor position, KeysetCursor other) {
+        int comparison = position.getCreatedAt().compareTo(other.getCreatedAt());
+        return comparison > 0 || (comparison == 0 && position.getId() > other.getId());
+    }
+
+    /**
+     * The rows after the position, from the table and the archive merged newest first, that match the filter; all
+     * of them if the filter is null.
+     */
+    private Stream<JsonData> streamWithArchive(LocalDateTime startDateTime, LocalDateTime endDateTime, String contentFilter, KeysetCursor position) {
+        Stream<JsonData> docs = jsonDocRepository.streamAfter(position.getCreatedAt(), position.getId(), startDateTime, endDateTime, contentFilter);
+        return JsonDocArchive.newestFirst(docs, streamArchived(startDateTime, endDateTime, contentFilter, position));
+    }
+
+    private Stream<JsonData> streamArchived(LocalDateTime startDateTime, LocalDateTime endDateTime, String contentFilter, KeysetCursor position) {
+        Stream<JsonData> archived = jsonDocArchive.streamAfter(position.getCreatedAt(), position.getId(), startDateTime, endDateTime);
+        if (contentFilter == null) {
+            return archived;
+        }
+        Pattern pattern = likePattern(contentFilter);
+        return archived.filter(doc -> doc.getJsonData() != null && pattern.matcher(doc.getJsonData()).find());
+    }
+
+    private long countArchived(LocalDateTime startDateTime, LocalDateTime endDateTime, String contentFilter) {
+        if (contentFilter == null) {
+            return jsonDocArchive.count(startDateTime, endDateTime);
+        }
+        try (Stream<JsonData> matches = streamArchived(startDateTime, endDateTime, contentFilter, KeysetCursor.START)) {
+            return matches.count();
+        }
+    }
+
+    /**
+     * Looks the filter's longest literal run up in the content index: every row the filter matches contains it.
+     */
+    private Optional<JsonDocContentIndex.ContentLookup> lookup(String contentFilter, LocalDateTime startDateTime) {
+        return contentFilter != null ? jsonDocContentIndex.lookup(longestLiteral(contentFilter), startDateTime) : Optional.empty();
+    }
+
+    private static List<Long> candidateIds(JsonDocContentIndex.ContentLookup lookup) {
+        // An empty IN list is not valid SQL everywhere; no json_docs row has a negative id.
+        return lookup.getCandidateIds().isEmpty() ? Collections.singletonList(-1L) : lookup.getCandidateIds();
+    }
+
+    /**
+     * The longest part of a {@code LIKE} filter between wildcards, with its escapes removed.
+     */
+    static String longestLiteral(String contentFilter) {
+        String longest = "";
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i <= contentFilter.length(); i++) {
+            char c = i < contentFilter.length() ? contentFilter.charAt(i) : '%';
+            if (c == '%' || c == '_') {
+                if (literal.length() > longest.length()) {
+                    longest = literal.toString();
+                }
+                literal.setLength(0);
+            } else {
+                if (c == '\\' && i + 1 < contentFilter.length()) {
+                    c = contentFilter.charAt(++i);
+                }
+                literal.append(c);
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * A {@code LIKE} filter as a case-insensitive pattern to find in the text: {@code %} matches any run of
+     * characters, {@code _} any one, and a backslash escapes the character after it.
+     */
+    static Pattern likePattern(String contentFilter) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < contentFilter.length(); i++) {
+            char c = contentFilter.charAt(i);
+            if (c == '%' || c == '_') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '%' ? ".*" : ".");
+            } else {
+                if (c == '\\' && i + 1 < contentFilter.length()) {
+                    c = contentFilter.charAt(++i);
+                }
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+    }
+
+    /**
+     * Looks a raw message up by its key, in the table and then in the archive.
+     */
+    @Transactional(readOnly = true)
+    public Optional<JsonData> getDataByMessageKey(String messageKey) {
+        Optional<JsonData> current = jsonDocRepository.findByMessageKey(messageKey).map(this::convertToJsonData);
+        return current.isPresent() ? current : jsonDocArchive.findByMessageKey(messageKey);
     }
 
     public List<TradeDetailsDto> getTradeDetailsByClientReference(String clientReferenceNumber) {
@@ -96,43 +322,35 @@ public class DatabaseStorageService {
                 .collect(Collectors.toList());
     }
 
-    private List<String> getEntitledFundNumbers(String username) {
-        return appUserRepository.findByUsername(username)
-                .map(user -> userFundEntitlementRepository.findByUser(user).stream()
-                        .map(UserFundEntitlement::getFundNumber)
-                        .collect(Collectors.toList()))
-                .orElse(Collections.emptyList());
+    private Set<String> getEntitledFundNumbers(String username) {
+        return entitlementCache.getFundNumbers(username);
     }
 
+    @Transactional(readOnly = true)
     public Page<JsonData> getDataByDateRangeForUser(LocalDate startDate, LocalDate endDate, String username, String contentFilter, Pageable pageable) {
         log.warn("getDataByDateRangeForUser is not filtering by fund entitlement as json_docs has no fund_number. Returning all data.");
         return getDataByDateRange(startDate, endDate, contentFilter, pageable);
     }
 
-    public List<TradeDetailsDto> getTradeDetailsForUser(String clientReferenceNumber, String username, LocalDate startDate, LocalDate endDate) {
-        List<String> entitledFunds = getEntitledFundNumbers(username);
+    /**
+     * Searches the trades in the user's entitled funds. The outbound JSON is not loaded; fetch it for a single
+     * trade with {@link #getOutboundJsonForUser(String, String)}.
+     */
+    public Page<TradeDetailsDto> getTradeDetailsForUser(String clientReferenceNumber, String username, LocalDate startDate, LocalDate endDate, Pageable pageable) {
+        Set<String> entitledFunds = getEntitledFundNumbers(username);
         if (entitledFunds.isEmpty()) {
-            return Collections.emptyList();
+            return Page.empty(pageable);
         }
-
-        List<TradeDetail> trades;
         boolean hasClientRef = clientReferenceNumber != null && !clientReferenceNumber.trim().isEmpty();
-        boolean hasDateRange = startDate != null && endDate != null;
+        return tradeDetailRepository.findDetails(entitledFunds, hasClientRef ? clientReferenceNumber : null, startDate, endDate, pageable);
+    }
 
-        if (hasClientRef && hasDateRange) {
-            trades = tradeDetailRepository.findByClientReferenceNumberAndFundNumberInAndTradeDateBetween(clientReferenceNumber, entitledFunds, startDate, endDate);
-        } else if (hasClientRef) {
-            trades = tradeDetailRepository.findByClientReferenceNumberAndFundNumberIn(clientReferenceNumber, entitledFunds);
-        } else if (hasDateRange) {
-            trades = tradeDetailRepository.findByFundNumberInAndTradeDateBetween(entitledFunds, startDate, endDate);
-        } else {
-            // Should be prevented by controller, but as a safeguard:
-            trades = Collections.emptyList();
+    public Optional<String> getOutboundJsonForUser(String clientReferenceNumber, String username) {
+        Set<String> entitledFunds = getEntitledFundNumbers(username);
+        if (entitledFunds.isEmpty()) {
+            return Optional.empty();
         }
-
-        return trades.stream()
-                .map(this::convertToTradeDetailsDto)
-                .collect(Collectors.toList());
+        return tradeDetailRepository.findOutboundJson(clientReferenceNumber, entitledFunds);
     }
 
     public List<TradeExceptionData> getTradeExceptionsForUser(String clientReferenceNumber, String username, LocalDateTime startDate, LocalDateTime endDate) {
@@ -189,33 +407,17 @@ public class DatabaseStorageService {
     }
 
     public List<TradeSummaryDto> getTradeSummary() {
-        List<FundTradeCount> createdCounts = tradeDetailRepository.countByFundNumber();
-        List<TradeException> exceptions = tradeExceptionRepository.findAll();
-
-        Map<String, Long> exceptionCounts = exceptions.stream()
-                .collect(Collectors.groupingBy(ex -> {
-                    try {
-                        Map<String, Object> tradeData = objectMapper.readValue(ex.getFailedTradeJson(), Map.class);
-                        return (String) tradeData.getOrDefault("fundNumber", "UNKNOWN");
-                    } catch (Exception e) {
-                        log.error("Error parsing failed trade JSON for exception ID {}: {}", ex.getId(), e.getMessage());
-                        return "UNKNOWN";
-                    }
-                }, Collectors.counting()));
-
-        Map<String, TradeSummaryDto> summaryMap = createdCounts.stream()
-                .collect(Collectors.toMap(
-                        FundTradeCount::getFundNumber,
-                        dto -> new TradeSummaryDto(dto.getFundNumber(), dto.getCount(), dto.getCount(), 0L)
-                ));
-
-        exceptionCounts.forEach((fundNumber, count) -> {
-            summaryMap.computeIfAbsent(fundNumber, fn -> new TradeSummaryDto(fn, 0L, 0L, 0L));
-            TradeSummaryDto summary = summaryMap.get(fundNumber);
-            summary.setExceptions(count);
-            summary.setTradesReceived(summary.getTradesCreated() + count);
-        });
-
+        Map<String, TradeSummaryDto> summaryMap = new HashMap<>();
+        for (FundTradeCount created : tradeDetailRepository.countByFundNumber()) {
+            summaryMap.put(created.getFundNumber(), new TradeSummaryDto(created.getFundNumber(), created.getCount(), created.getCount(), 0L));
+        }
+        for (FundTradeCount exceptions : tradeExceptionRepository.countByFundNumber()) {
+            // Rows not yet backfilled have no fund number; count them with the unknowns.
+            String fundNumber = exceptions.getFundNumber() != null ? exceptions.getFundNumber() : TradeException.UNKNOWN_FUND;
+            TradeSummaryDto summary = summaryMap.computeIfAbsent(fundNumber, fn -> new TradeSummaryDto(fn, 0L, 0L, 0L));
+            summary.setExceptions(summary.getExceptions() + exceptions.getCount());
+            summary.setTradesReceived(summary.getTradesReceived() + exceptions.getCount());
+        }
         return new ArrayList<>(summaryMap.values());
     }
 }
@@ -1,36 +1,129 @@
 package com.poc.trademanager;
 
 import com.poc.trademanager.entity.JsonDoc;
-import com.poc.trademanager.service.MessageProcessingService;
+import com.poc.trademanager.service.ExactlyOnceBatchProcessor;
+import com.poc.trademanager.service.ProcessingFlowController;
+import com.poc.trademanager.service.RetryTopicRouter;
+import com.poc.trademanager.service.TradeProcessingDispatcher;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchListenerFailedException;
 import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @Component
 public class KafkaJsonListener {
 
+    public static final String LISTENER_ID = "jsonInputListener";
+
     private static final Logger logger = LoggerFactory.getLogger(KafkaJsonListener.class);
 
     private final DatabaseStorageService databaseStorageService;
-    private final MessageProcessingService messageProcessingService;
+    private final TradeProcessingDispatcher tradeProcessingDispatcher;
+    private final ProcessingFlowController processingFlowController;
+    private final ExactlyOnceBatchProcessor exactlyOnceBatchProcessor;
+    // Only set in exactly-once mode; its sends join the container's transaction.
+    private final KafkaTemplate<String, String> transactionalKafkaTemplate;
+    private final RetryTopicRouter retryTopicRouter;
 
-    public KafkaJsonListener(DatabaseStorageService databaseStorageService, MessageProcessingService messageProcessingService) {
+    public KafkaJsonListener(DatabaseStorageService databaseStorageService, TradeProcessingDispatcher tradeProcessingDispatcher, ProcessingFlowController processingFlowController,
+                             ExactlyOnceBatchProcessor exactlyOnceBatchProcessor, ObjectProvider<KafkaTransactionManager<String, String>> kafkaTransactionManager,
+                             RetryTopicRouter retryTopicRouter) {
         this.databaseStorageService = databaseStorageService;
-        this.messageProcessingService = messageProcessingService;
+        this.tradeProcessingDispatcher = tradeProcessingDispatcher;
+        this.processingFlowController = processingFlowController;
+        this.exactlyOnceBatchProcessor = exactlyOnceBatchProcessor;
+        KafkaTransactionManager<String, String> transactionManager = kafkaTransactionManager.getIfAvailable();
+        this.transactionalKafkaTemplate = transactionManager == null ? null : new KafkaTemplate<>(transactionManager.getProducerFactory());
+        this.retryTopicRouter = retryTopicRouter;
+    }
+
+    @KafkaListener(id = LISTENER_ID, topics = "${app.kafka.topic.json-input}", groupId = "${spring.kafka.consumer.group-id}")
+    public void listen(List<ConsumerRecord<String, String>> records, Acknowledgment acknowledgment) {
+        logger.info("Received batch of {} messages", records.size());
+        if (transactionalKafkaTemplate != null) {
+            // The container commits the offsets in its transaction once this returns; acknowledging would commit them outside it.
+            processExactlyOnce(records);
+            return;
+        }
+        List<String> messages = records.stream()
+                .map(ConsumerRecord::value)
+                .collect(Collectors.toList());
+
+        List<JsonDoc> rawMessages;
+        try {
+            rawMessages = databaseStorageService.saveRawMessages(messages);
+        } catch (Exception e) {
+            logger.warn("Batch save of {} messages failed, falling back to saving them one at a time.", records.size(), e);
+            rawMessages = saveIndividually(records);
+        }
+
+        // The batch is acknowledged by the flow controller once processing of every message in it has finished.
+        processingFlowController.track(LISTENER_ID, dispatch(rawMessages), acknowledgment);
     }
 
-    @KafkaListener(topics = "${app.kafka.topic.json-input}", groupId = "${spring.kafka.consumer.group-id}")
-    public void listen(String message, Acknowledgment acknowledgment) {
+    /**
+     * Processes the batch in one database transaction or, if that fails, each record in its own, sending records
+     * that still fail to the first retry tier within the Kafka transaction. A batch listener that throws is retried as a whole,
+     * so only a failure to reach the database at all is rethrown.
+     */
+    private void processExactlyOnce(List<ConsumerRecord<String, String>> records) {
         try {
-            logger.info("Received message: {}", message);
-            JsonDoc rawMessage = databaseStorageService.saveRawMessage(message);
-            messageProcessingService.processMessage(rawMessage);
-            acknowledgment.acknowledge();
+            exactlyOnceBatchProcessor.process(records);
+            return;
+        } catch (CannotCreateTransactionException e) {
+            throw e;
         } catch (Exception e) {
-            logger.error("Error processing message: {}", message, e);
-            // Decide on error handling, e.g., send to a dead-letter topic
+            logger.warn("Batch of {} messages failed, falling back to processing them one at a time.", records.size(), e);
+        }
+        for (ConsumerRecord<String, String> record : records) {
+            try {
+                exactlyOnceBatchProcessor.process(Collections.singletonList(record));
+            } catch (CannotCreateTransactionException e) {
+                throw e;
+            } catch (Exception e) {
+                String retryTopic = retryTopicRouter.route(record.topic());
+                logger.error("Error processing message at {}-{}@{}, sending it to {}: {}", record.topic(), record.partition(), record.offset(), retryTopic, record.value(), e);
+                transactionalKafkaTemplate.send(retryTopic, record.key(), record.value());
+            }
+        }
+    }
+
+    private List<CompletableFuture<Void>> dispatch(List<JsonDoc> rawMessages) {
+        return rawMessages.stream()
+                .map(tradeProcessingDispatcher::dispatch)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Saves each record in its own transaction so that a single poison message does not roll back the
+     * rest of the batch. On the first failure the records saved so far are processed to completion and a
+     * {@link BatchListenerFailedException} tells the error handler to commit them and to send the failed record
+     * to the first retry tier, then carry on with those after it.
+     */
+    private List<JsonDoc> saveIndividually(List<ConsumerRecord<String, String>> records) {
+        List<JsonDoc> saved = new ArrayList<>();
+        for (ConsumerRecord<String, String> record : records) {
+            try {
+                saved.addAll(databaseStorageService.saveRawMessages(Collections.singletonList(record.value())));
+            } catch (Exception e) {
+                logger.error("Error saving message at {}-{}@{}: {}", record.topic(), record.partition(), record.offset(), record.value(), e);
+                processingFlowController.awaitCompletion(LISTENER_ID, dispatch(saved));
+                throw new BatchListenerFailedException("Failed to save raw message", e, record);
+            }
         }
+        return saved;
     }
 }
@@ -0,0 +1,78 @@
+package com.poc.trademanager;
+
+import com.poc.trademanager.entity.JsonDoc;
+import com.poc.trademanager.service.ProcessingFlowController;
+import com.poc.trademanager.service.RetryTopicRouter;
+import com.poc.trademanager.service.TradeProcessingDispatcher;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Consumes the retry tiers, each with its own consumer. A record is retried once it has been on its tier's topic
+ * for the tier's delay; until then the consumer is paused with a nack, so a backing-off record holds up only the
+ * records behind it on the same tier. A record that fails again goes on to the next tier through the error handler.
+ */
+@Component
+public class RetryTopicListener {
+
+    public static final String TIER_1_LISTENER_ID = "retryTier1Listener";
+    public static final String TIER_2_LISTENER_ID = "retryTier2Listener";
+    public static final String TIER_3_LISTENER_ID = "retryTier3Listener";
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryTopicListener.class);
+
+    private final DatabaseStorageService databaseStorageService;
+    private final TradeProcessingDispatcher tradeProcessingDispatcher;
+    private final ProcessingFlowController processingFlowController;
+    private final RetryTopicRouter retryTopicRouter;
+
+    public RetryTopicListener(DatabaseStorageService databaseStorageService, TradeProcessingDispatcher tradeProcessingDispatcher,
+                              ProcessingFlowController processingFlowController, RetryTopicRouter retryTopicRouter) {
+        this.databaseStorageService = databaseStorageService;
+        this.tradeProcessingDispatcher = tradeProcessingDispatcher;
+        this.processingFlowController = processingFlowController;
+        this.retryTopicRouter = retryTopicRouter;
+    }
+
+    @KafkaListener(id = TIER_1_LISTENER_ID, topics = "${app.kafka.topic.json-input-retry-1:${app.kafka.topic.json-input}.retry-1}",
+            groupId = "${spring.kafka.consumer.group-id}", containerFactory = "retryListenerContainerFactory")
+    public void listenTier1(ConsumerRecord<String, String> record, Acknowledgment acknowledgment) {
+        retry(1, TIER_1_LISTENER_ID, record, acknowledgment);
+    }
+
+    @KafkaListener(id = TIER_2_LISTENER_ID, topics = "${app.kafka.topic.json-input-retry-2:${app.kafka.topic.json-input}.retry-2}",
+            groupId = "${spring.kafka.consumer.group-id}", containerFactory = "retryListenerContainerFactory")
+    public void listenTier2(ConsumerRecord<String, String> record, Acknowledgment acknowledgment) {
+        retry(2, TIER_2_LISTENER_ID, record, acknowledgment);
+    }
+
+    @KafkaListener(id = TIER_3_LISTENER_ID, topics = "${app.kafka.topic.json-input-retry-3:${app.kafka.topic.json-input}.retry-3}",
+            groupId = "${spring.kafka.consumer.group-id}", containerFactory = "retryListenerContainerFactory")
+    public void listenTier3(ConsumerRecord<String, String> record, Acknowledgment acknowledgment) {
+        retry(3, TIER_3_LISTENER_ID, record, acknowledgment);
+    }
+
+    private void retry(int tier, String listenerId, ConsumerRecord<String, String> record, Acknowledgment acknowledgment) {
+        // The record's timestamp is when the error handler sent it to this tier.
+        long remaining = record.timestamp() + retryTopicRouter.getDelay(tier).toMillis() - System.currentTimeMillis();
+        if (remaining > 0) {
+            acknowledgment.nack(Duration.ofMillis(remaining));
+            return;
+        }
+        logger.info("Retrying message from {}-{}@{}", record.topic(), record.partition(), record.offset());
+        List<JsonDoc> saved = databaseStorageService.saveRawMessages(Collections.singletonList(record.value()));
+        retryTopicRouter.recordRecovered(tier);
+        processingFlowController.track(listenerId, saved.stream()
+                .map(tradeProcessingDispatcher::dispatch)
+                .collect(Collectors.toList()), acknowledgment);
+    }
+}
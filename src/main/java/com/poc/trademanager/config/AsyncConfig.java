@@ -1,21 +1,26 @@
 package com.poc.trademanager.config;
 
+import com.poc.trademanager.service.KeyedTaskExecutor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.task.TaskExecutor;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Configuration
 public class AsyncConfig {
 
-    @Bean("asyncTaskExecutor")
-    public TaskExecutor asyncTaskExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(2);
-        executor.setMaxPoolSize(2);
-        executor.setQueueCapacity(100);
-        executor.setThreadNamePrefix("AsyncMsgProcessor-");
-        executor.initialize();
-        return executor;
+    @Value("${app.processing.lanes:0}")
+    private int lanes;
+
+    @Value("${app.processing.lane-queue-capacity:250}")
+    private int laneQueueCapacity;
+
+    /**
+     * Trade processing executor. Messages are routed to a lane by client reference number, so the same trade
+     * is never processed twice concurrently. Defaults to one lane per available core.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public KeyedTaskExecutor tradeProcessingExecutor() {
+        int laneCount = lanes > 0 ? lanes : Runtime.getRuntime().availableProcessors();
+        return new KeyedTaskExecutor(laneCount, laneQueueCapacity, "TradeLane-");
     }
 }
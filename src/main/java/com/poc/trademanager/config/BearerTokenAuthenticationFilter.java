@@ -0,0 +1,39 @@
+package com.poc.trademanager.config;
+
+import com.poc.trademanager.service.AuthTokenService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Authenticates requests carrying a token from {@code POST /api/auth/token}. A missing or invalid token leaves
+ * the request unauthenticated, so the security chain rejects it as usual.
+ * <p>
+ * Deliberately not a component: it only belongs in the bearer token filter chain built by {@link SecurityConfig}.
+ */
+public class BearerTokenAuthenticationFilter extends OncePerRequestFilter {
+
+    static final String BEARER_PREFIX = "Bearer ";
+
+    private final AuthTokenService authTokenService;
+
+    public BearerTokenAuthenticationFilter(AuthTokenService authTokenService) {
+        this.authTokenService = authTokenService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER_PREFIX) && SecurityContextHolder.getContext().getAuthentication() == null) {
+            authTokenService.verify(header.substring(BEARER_PREFIX.length()).trim())
+                    .ifPresent(authentication -> SecurityContextHolder.getContext().setAuthentication(authentication));
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,79 @@
+package com.poc.trademanager.config;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateDeserializer;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Reads {@code yyyy-MM-dd} dates, the form trade messages use, straight from the parser's buffer. The standard
+ * deserializer goes through a {@link java.time.format.DateTimeFormatter}, which allocates a parse context and a
+ * map of fields for every value. Anything else, including invalid dates, is handed to the standard deserializer,
+ * so other formats and the errors reported stay the same.
+ * <p>
+ * A property or type that customises the format, for example with {@code @JsonFormat}, gets the standard
+ * deserializer configured for it instead, since its strings may not be ISO dates at all.
+ */
+public class IsoLocalDateDeserializer extends StdScalarDeserializer<LocalDate> implements ContextualDeserializer {
+
+    private static final int ISO_DATE_LENGTH = 10;
+
+    public IsoLocalDateDeserializer() {
+        super(LocalDate.class);
+    }
+
+    @Override
+    public JsonDeserializer<?> createContextual(DeserializationContext context, BeanProperty property) throws JsonMappingException {
+        JsonDeserializer<?> contextual = LocalDateDeserializer.INSTANCE.createContextual(context, property);
+        return contextual == LocalDateDeserializer.INSTANCE ? this : contextual;
+    }
+
+    @Override
+    public LocalDate deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (parser.hasToken(JsonToken.VALUE_STRING) && parser.getTextLength() == ISO_DATE_LENGTH) {
+            LocalDate date = parse(parser.getTextCharacters(), parser.getTextOffset());
+            if (date != null) {
+                return date;
+            }
+        }
+        return LocalDateDeserializer.INSTANCE.deserialize(parser, context);
+    }
+
+    private static LocalDate parse(char[] text, int offset) {
+        if (text[offset + 4] != '-' || text[offset + 7] != '-') {
+            return null;
+        }
+        int year = digits(text, offset, 4);
+        int month = digits(text, offset + 5, 2);
+        int day = digits(text, offset + 8, 2);
+        if (year < 0 || month < 0 || day < 0) {
+            return null;
+        }
+        try {
+            return LocalDate.of(year, month, day);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static int digits(char[] text, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = text[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
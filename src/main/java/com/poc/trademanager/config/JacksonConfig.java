@@ -0,0 +1,33 @@
+package com.poc.trademanager.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.LocalDate;
+
+/**
+ * Modules added to the application's {@code ObjectMapper}, which every trade message is bound with. See
+ * {@code TradeDetailsBindingBenchmark} for what they save per message.
+ */
+@Configuration
+public class JacksonConfig {
+
+    /**
+     * Replaces reflective getter and setter calls with generated lambdas.
+     */
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    /**
+     * Registered after the Java time module, so it takes precedence for {@link LocalDate}.
+     */
+    @Bean
+    public Module isoLocalDateModule() {
+        return new SimpleModule("IsoLocalDateModule").addDeserializer(LocalDate.class, new IsoLocalDateDeserializer());
+    }
+}
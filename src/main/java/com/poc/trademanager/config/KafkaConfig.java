@@ -1,20 +1,27 @@
 package com.poc.trademanager.config;
 
+import com.poc.trademanager.service.RetryTopicRouter;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.NestedExceptionUtils;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.listener.CommonErrorHandler;
 import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultAfterRollbackProcessor;
 import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
 import org.springframework.util.backoff.FixedBackOff;
 
 @Configuration
@@ -26,22 +33,57 @@ public class KafkaConfig {
     @Value("${app.kafka.topic.json-input-dlq}")
     private String dlqTopicName;
 
+    /**
+     * Failed records are not retried in place, which would hold up the rest of the partition: each is passed
+     * straight on to the next retry tier, see {@link RetryTopicRouter}, and from the last tier to the DLQ.
+     * Records that cannot be deserialized go to the DLQ directly.
+     */
     @Bean
-    public CommonErrorHandler errorHandler(KafkaTemplate<String, String> template) {
+    public CommonErrorHandler errorHandler(KafkaTemplate<String, String> template, RetryTopicRouter retryTopicRouter) {
         DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(template,
                 (record, ex) -> {
-                    log.error("Message failed after retries. Sending to DLQ. Topic: {}, Partition: {}, Offset: {}",
-                            record.topic(), record.partition(), record.offset(), ex);
-                    return new org.apache.kafka.common.TopicPartition(dlqTopicName, record.partition());
+                    String topic = NestedExceptionUtils.getMostSpecificCause(ex) instanceof DeserializationException
+                            ? dlqTopicName : retryTopicRouter.route(record.topic());
+                    if (retryTopicRouter.isDeadLetterTopic(topic)) {
+                        log.error("Message failed after retries. Sending to DLQ. Topic: {}, Partition: {}, Offset: {}",
+                                record.topic(), record.partition(), record.offset(), ex);
+                        return new TopicPartition(topic, record.partition());
+                    }
+                    log.warn("Message failed. Sending to retry topic {}. Topic: {}, Partition: {}, Offset: {}",
+                            topic, record.topic(), record.partition(), record.offset(), ex);
+                    return new TopicPartition(topic, -1);
                 });
+        // The original topic/offset headers would otherwise be added again by every tier.
+        recoverer.setAppendOriginalHeaders(false);
 
-        DefaultErrorHandler errorHandler = new DefaultErrorHandler(recoverer, new FixedBackOff(1000L, 2L));
-        errorHandler.addNotRetryableExceptions(DeserializationException.class);
-        return errorHandler;
+        return new DefaultErrorHandler(recoverer, new FixedBackOff(0L, 0L));
     }
 
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory(
+            ConsumerFactory<String, String> consumerFactory,
+            CommonErrorHandler errorHandler,
+            ObjectProvider<KafkaTransactionManager<String, String>> kafkaTransactionManager) {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setCommonErrorHandler(errorHandler);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        kafkaTransactionManager.ifAvailable(transactionManager -> {
+            // Exactly-once mode: offsets are sent in the batch's transaction. The listener handles bad records
+            // itself, so a rolled-back batch failed as a whole, e.g. with the database down, and is retried.
+            factory.getContainerProperties().setTransactionManager(transactionManager);
+            factory.setAfterRollbackProcessor(new DefaultAfterRollbackProcessor<>(new FixedBackOff(1000L, FixedBackOff.UNLIMITED_ATTEMPTS)));
+        });
+        return factory;
+    }
+
+    /**
+     * Record listeners for the retry tiers. Never transactional: a retried record is processed like one from the
+     * input topic outside exactly-once mode.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> retryListenerContainerFactory(
             ConsumerFactory<String, String> consumerFactory,
             CommonErrorHandler errorHandler) {
         ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
@@ -51,6 +93,15 @@ public class KafkaConfig {
         return factory;
     }
 
+    @Bean
+    public KafkaAdmin.NewTopics retryTopics(RetryTopicRouter retryTopicRouter) {
+        NewTopic[] topics = new NewTopic[RetryTopicRouter.TIER_COUNT];
+        for (int tier = 1; tier <= RetryTopicRouter.TIER_COUNT; tier++) {
+            topics[tier - 1] = new NewTopic(retryTopicRouter.getTopic(tier), 1, (short) 1);
+        }
+        return new KafkaAdmin.NewTopics(topics);
+    }
+
     @Bean
     public NewTopic dlt() {
         return new NewTopic(dlqTopicName, 1, (short) 1);
@@ -0,0 +1,52 @@
+package com.poc.trademanager.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
+import org.springframework.orm.jpa.JpaTransactionManager;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Exactly-once mode, enabled per deployment with {@code app.kafka.exactly-once=true}. The listener container runs
+ * each batch in a Kafka transaction that also commits the consumed offsets, and the listener stores and processes
+ * the batch synchronously in a JPA transaction that commits just before it.
+ * <p>
+ * The transactional producer factory is not exposed as a bean, so the auto-configured {@code KafkaTemplate} used
+ * everywhere else stays non-transactional. Declaring the Kafka transaction manager switches off Boot's JPA one,
+ * which is therefore declared here as the primary transaction manager.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.kafka.exactly-once", havingValue = "true")
+public class KafkaTransactionConfig implements DisposableBean {
+
+    private final DefaultKafkaProducerFactory<String, String> transactionalProducerFactory;
+
+    public KafkaTransactionConfig(KafkaProperties kafkaProperties,
+                                  @Value("${app.kafka.transaction-id-prefix:trade-manager-${HOSTNAME:local}-tx-}") String transactionIdPrefix) {
+        this.transactionalProducerFactory = new DefaultKafkaProducerFactory<>(kafkaProperties.buildProducerProperties());
+        this.transactionalProducerFactory.setTransactionIdPrefix(transactionIdPrefix);
+    }
+
+    @Bean
+    @Primary
+    public JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+        return new JpaTransactionManager(entityManagerFactory);
+    }
+
+    @Bean
+    public KafkaTransactionManager<String, String> kafkaTransactionManager() {
+        return new KafkaTransactionManager<>(transactionalProducerFactory);
+    }
+
+    @Override
+    public void destroy() {
+        transactionalProducerFactory.destroy();
+    }
+}
@@ -1,15 +1,22 @@
 package com.poc.trademanager.config;
 
+import com.poc.trademanager.service.AuthTokenService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -24,7 +31,36 @@ import static org.springframework.security.config.Customizer.withDefaults;
 @Order(1)
 public class SecurityConfig {
 
+    private static final AntPathRequestMatcher TOKEN_ENDPOINT = new AntPathRequestMatcher("/api/auth/token");
+
+    /**
+     * Requests presenting a bearer token from {@code POST /api/auth/token} are authenticated by checking its
+     * signature, with no password hashing or session. Everything else falls through to the chain below, including
+     * {@code /api/auth/token} itself: a token must never be able to mint its own replacement, so issuing one always
+     * takes the username and password.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain bearerTokenFilterChain(HttpSecurity http, AuthTokenService authTokenService) throws Exception {
+        http
+                .requestMatcher(request -> {
+                    String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+                    return header != null && header.startsWith(BearerTokenAuthenticationFilter.BEARER_PREFIX)
+                            && !TOKEN_ENDPOINT.matches(request);
+                })
+                .cors(withDefaults())
+                .csrf(csrf -> csrf.disable())
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .authorizeHttpRequests(authz -> authz
+                        .antMatchers("/api/**").authenticated()
+                        .anyRequest().permitAll())
+                .addFilterBefore(new BearerTokenAuthenticationFilter(authTokenService), BasicAuthenticationFilter.class)
+                .exceptionHandling(exceptions -> exceptions.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)));
+        return http.build();
+    }
+
     @Bean
+    @Order(2)
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
                 .cors(withDefaults())
@@ -0,0 +1,33 @@
+package com.poc.trademanager.controller;
+
+import com.poc.trademanager.dto.ApiResponse;
+import com.poc.trademanager.dto.AuthTokenResponse;
+import com.poc.trademanager.service.AuthTokenService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+
+@RestController
+@RequestMapping("/api/auth")
+public class AuthController {
+
+    private final AuthTokenService authTokenService;
+
+    public AuthController(AuthTokenService authTokenService) {
+        this.authTokenService = authTokenService;
+    }
+
+    /**
+     * Exchanges a username and password, checked once here, for a bearer token to send on later requests.
+     */
+    @PostMapping("/token")
+    public ResponseEntity<ApiResponse<AuthTokenResponse>> issueToken(Authentication authentication) {
+        Instant expiresAt = authTokenService.getExpiry();
+        String token = authTokenService.issue(authentication, expiresAt);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Token issued successfully", new AuthTokenResponse(token, "Bearer", expiresAt)));
+    }
+}
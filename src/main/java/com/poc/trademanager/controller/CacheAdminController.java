@@ -0,0 +1,39 @@
+package com.poc.trademanager.controller;
+
+import com.poc.trademanager.dto.ApiResponse;
+import com.poc.trademanager.service.EntitlementCache;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/caches")
+public class CacheAdminController {
+
+    private final EntitlementCache entitlementCache;
+
+    public CacheAdminController(EntitlementCache entitlementCache) {
+        this.entitlementCache = entitlementCache;
+    }
+
+    /**
+     * Flushes every cached entitlement set, e.g. after entitlements were changed directly in the database.
+     */
+    @DeleteMapping("/entitlements")
+    @PreAuthorize("hasRole('SUPPORT')")
+    public ResponseEntity<ApiResponse<Long>> flushEntitlements() {
+        long flushed = entitlementCache.size();
+        entitlementCache.invalidateAll();
+        return ResponseEntity.ok(new ApiResponse<>(true, "Entitlement cache flushed successfully", flushed));
+    }
+
+    @DeleteMapping("/entitlements/{username}")
+    @PreAuthorize("hasRole('SUPPORT')")
+    public ResponseEntity<ApiResponse<Void>> flushEntitlements(@PathVariable String username) {
+        entitlementCache.invalidate(username);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Entitlements for " + username + " flushed successfully", null));
+    }
+}
@@ -2,13 +2,16 @@ package com.poc.trademanager.controller;
 
 import com.poc.trademanager.DatabaseStorageService;
 import com.poc.trademanager.dto.ApiResponse;
+import com.poc.trademanager.dto.CursorPage;
 import com.poc.trademanager.dto.ErrorResponse;
 import com.poc.trademanager.dto.JsonData;
+import com.poc.trademanager.dto.KeysetCursor;
 import com.poc.trademanager.dto.TradeDetailsDto;
 import com.poc.trademanager.dto.TradeExceptionData;
-import com.poc.trademanager.dto.TradeSummaryDto;
 import com.poc.trademanager.entity.JsonDoc;
-import com.poc.trademanager.service.MessageProcessingService;
+import com.poc.trademanager.service.TradeExportService;
+import com.poc.trademanager.service.TradeExportService.ExportFormat;
+import com.poc.trademanager.service.TradeProcessingDispatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -17,7 +20,10 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -31,9 +37,11 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -42,16 +50,23 @@ import java.util.Map;
 public class JsonDataController {
 
     private static final Logger log = LoggerFactory.getLogger(JsonDataController.class);
+
+    private static final List<String> SORTABLE_TRADE_PROPERTIES = Arrays.asList(
+            "clientReferenceNumber", "fundNumber", "securityId", "tradeDate", "settleDate",
+            "quantity", "price", "principal", "netAmount");
+
     private final DatabaseStorageService storageService;
-    private final MessageProcessingService messageProcessingService;
+    private final TradeProcessingDispatcher tradeProcessingDispatcher;
+    private final TradeExportService tradeExportService;
     private final KafkaTemplate<String, String> kafkaTemplate;
 
     @Value("${app.kafka.topic.json-input}")
     private String topicName;
 
-    public JsonDataController(DatabaseStorageService storageService, MessageProcessingService messageProcessingService, KafkaTemplate<String, String> kafkaTemplate) {
+    public JsonDataController(DatabaseStorageService storageService, TradeProcessingDispatcher tradeProcessingDispatcher, TradeExportService tradeExportService, KafkaTemplate<String, String> kafkaTemplate) {
         this.storageService = storageService;
-        this.messageProcessingService = messageProcessingService;
+        this.tradeProcessingDispatcher = tradeProcessingDispatcher;
+        this.tradeExportService = tradeExportService;
         this.kafkaTemplate = kafkaTemplate;
     }
 
@@ -63,15 +78,7 @@ public class JsonDataController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "100") int size) {
 
-        if (startDate != null && endDate != null) {
-            if (startDate.isAfter(endDate)) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Start date must be before end date.");
-            }
-            long daysBetween = java.time.temporal.ChronoUnit.DAYS.between(startDate, endDate);
-            if (daysBetween > 31) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The date range cannot exceed 31 days.");
-            }
-        }
+        validateDateRange(startDate, endDate);
 
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String username = authentication.getName();
@@ -87,30 +94,105 @@ public class JsonDataController {
         return ResponseEntity.ok(new ApiResponse<>(true, "Data retrieved successfully", data));
     }
 
-    @GetMapping("/trades")
-    public ResponseEntity<ApiResponse<List<TradeDetailsDto>>> getTrades(
-            @RequestParam(required = false) String clientReferenceNumber,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+    /**
+     * Cursor-based alternative to {@code GET /api/data}: pass the {@code nextCursor} of one page to get the next.
+     * Each page costs the same however deep it is, and no total count is computed.
+     */
+    @GetMapping("/data/scroll")
+    public ResponseEntity<ApiResponse<CursorPage<JsonData>>> scrollData(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String contentFilter,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int size) {
 
-        if (clientReferenceNumber == null && startDate == null && endDate == null) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one search parameter (clientReferenceNumber, startDate, endDate) must be provided.");
+        validateDateRange(startDate, endDate);
+        if (size < 1 || size > 1000) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Size must be between 1 and 1000.");
         }
 
-        if ((startDate != null && endDate == null) || (startDate == null && endDate != null)) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Both startDate and endDate must be provided for a date range search.");
+        KeysetCursor position = null;
+        if (cursor != null) {
+            try {
+                position = KeysetCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor.");
+            }
         }
 
-        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Start date must be before end date.");
+        CursorPage<JsonData> data = storageService.getDataAfterCursor(
+                startDate != null ? startDate.toLocalDate() : null,
+                endDate != null ? endDate.toLocalDate() : null,
+                contentFilter,
+                position,
+                size
+        );
+        return ResponseEntity.ok(new ApiResponse<>(true, "Data retrieved successfully", data));
+    }
+
+    /**
+     * A single raw message by its key, whether it is still in the database or has been archived.
+     */
+    @GetMapping("/data/{messageKey}")
+    public ResponseEntity<ApiResponse<JsonData>> getDataByMessageKey(@PathVariable String messageKey) {
+        JsonData data = storageService.getDataByMessageKey(messageKey)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No message found for key " + messageKey + "."));
+        return ResponseEntity.ok(new ApiResponse<>(true, "Data retrieved successfully", data));
+    }
+
+    /**
+     * Searches trades in the caller's entitled funds, a page at a time. {@code sort} is a property, optionally
+     * followed by {@code ,asc} or {@code ,desc}. The outbound JSON is left out; see {@link #getOutboundJson(String)}.
+     */
+    @GetMapping("/trades")
+    public ResponseEntity<ApiResponse<Page<TradeDetailsDto>>> getTrades(
+            @RequestParam(required = false) String clientReferenceNumber,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size,
+            @RequestParam(defaultValue = "tradeDate,desc") String sort) {
+
+        validateSearch(clientReferenceNumber, startDate, endDate);
+        if (page < 0 || size < 1 || size > 1000) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page must not be negative and size must be between 1 and 1000.");
         }
 
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String username = authentication.getName();
-        List<TradeDetailsDto> trades = storageService.getTradeDetailsForUser(clientReferenceNumber, username, startDate, endDate);
+        Pageable pageable = PageRequest.of(page, size, parseTradeSort(sort));
+        Page<TradeDetailsDto> trades = storageService.getTradeDetailsForUser(clientReferenceNumber, username, startDate, endDate, pageable);
         return ResponseEntity.ok(new ApiResponse<>(true, "Trades retrieved successfully", trades));
     }
 
+    @GetMapping("/trades/{clientReferenceNumber}/outbound-json")
+    public ResponseEntity<ApiResponse<String>> getOutboundJson(@PathVariable String clientReferenceNumber) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String username = authentication.getName();
+        String outboundJson = storageService.getOutboundJsonForUser(clientReferenceNumber, username)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No outbound JSON found for trade " + clientReferenceNumber + "."));
+        return ResponseEntity.ok(new ApiResponse<>(true, "Outbound JSON retrieved successfully", outboundJson));
+    }
+
+    /**
+     * Streams every trade matching the {@code GET /api/trades} criteria as NDJSON or CSV, without a row limit.
+     */
+    @GetMapping("/trades/export")
+    public ResponseEntity<StreamingResponseBody> exportTrades(
+            @RequestParam(required = false) String clientReferenceNumber,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "ndjson") String format) {
+
+        validateSearch(clientReferenceNumber, startDate, endDate);
+        ExportFormat exportFormat = parseExportFormat(format);
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String username = authentication.getName();
+        StreamingResponseBody body = tradeExportService.exportTrades(exportFormat, username, clientReferenceNumber, startDate, endDate);
+        return exportResponse("trades", exportFormat, body);
+    }
+
     @PostMapping("/messages")
     @PreAuthorize("hasRole('SUPPORT')")
     public ResponseEntity<ApiResponse<String>> postMessageToKafka(@RequestBody String message) {
@@ -139,7 +221,7 @@ public class JsonDataController {
             // For now, we will save the raw message and then process it.
             JsonDoc jsonDoc = storageService.saveRawMessage(jsonData);
             if (jsonDoc != null) {
-                messageProcessingService.processMessage(jsonDoc);
+                tradeProcessingDispatcher.dispatch(jsonDoc);
                 return ResponseEntity.ok(new ApiResponse<>(true, "Data accepted for processing.", jsonDoc.getMessageKey()));
             } else {
                 return ResponseEntity.badRequest().body(new ErrorResponse("SAVE_ERROR", "Could not save empty or null data.", "Ensure the request body is not empty."));
@@ -156,6 +238,32 @@ public class JsonDataController {
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm") LocalDateTime startDate,
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm") LocalDateTime endDate) {
 
+        validateSearch(clientReferenceNumber, startDate, endDate);
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String username = authentication.getName();
+        List<TradeExceptionData> exceptions = storageService.getTradeExceptionsForUser(clientReferenceNumber, username, startDate, endDate);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Exceptions retrieved successfully", exceptions));
+    }
+
+    /**
+     * Streams every exception matching the {@code GET /api/exceptions} criteria as NDJSON or CSV, without a row limit.
+     */
+    @GetMapping("/exceptions/export")
+    public ResponseEntity<StreamingResponseBody> exportExceptions(
+            @RequestParam(required = false) String clientReferenceNumber,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm") LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm") LocalDateTime endDate,
+            @RequestParam(defaultValue = "ndjson") String format) {
+
+        validateSearch(clientReferenceNumber, startDate, endDate);
+        ExportFormat exportFormat = parseExportFormat(format);
+
+        StreamingResponseBody body = tradeExportService.exportExceptions(exportFormat, clientReferenceNumber, startDate, endDate);
+        return exportResponse("exceptions", exportFormat, body);
+    }
+
+    private static <T extends Comparable<? super T>> void validateSearch(String clientReferenceNumber, T startDate, T endDate) {
         if (clientReferenceNumber == null && startDate == null && endDate == null) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one search parameter (clientReferenceNumber, startDate, endDate) must be provided.");
         }
@@ -164,19 +272,54 @@ public class JsonDataController {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Both startDate and endDate must be provided for a date range search.");
         }
 
-        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+        if (startDate != null && endDate != null && startDate.compareTo(endDate) > 0) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Start date must be before end date.");
         }
+    }
 
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        List<TradeExceptionData> exceptions = storageService.getTradeExceptionsForUser(clientReferenceNumber, username, startDate, endDate);
-        return ResponseEntity.ok(new ApiResponse<>(true, "Exceptions retrieved successfully", exceptions));
+    private static Sort parseTradeSort(String sort) {
+        String[] parts = sort.split(",");
+        String property = parts[0].trim();
+        if (!SORTABLE_TRADE_PROPERTIES.contains(property) || parts.length > 2) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Trades can be sorted by " + String.join(", ", SORTABLE_TRADE_PROPERTIES) + ".");
+        }
+        Sort.Direction direction = Sort.Direction.ASC;
+        if (parts.length == 2) {
+            direction = Sort.Direction.fromOptionalString(parts[1].trim())
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Sort direction must be asc or desc."));
+        }
+        // The id keeps the order stable across pages when the sort property has ties.
+        return Sort.by(direction, property).and(Sort.by("id"));
+    }
+
+    private static ExportFormat parseExportFormat(String format) {
+        for (ExportFormat exportFormat : ExportFormat.values()) {
+            if (exportFormat.getFileExtension().equalsIgnoreCase(format)) {
+                return exportFormat;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Format must be ndjson or csv.");
     }
 
-    @GetMapping("/summary/trades-by-fund")
-    public ResponseEntity<ApiResponse<List<TradeSummaryDto>>> getTradeSummary() {
-        List<TradeSummaryDto> summary = storageService.getTradeSummary();
-        return ResponseEntity.ok(new ApiResponse<>(true, "Trade summary retrieved successfully", summary));
+    private static ResponseEntity<StreamingResponseBody> exportResponse(String name, ExportFormat format, StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(name + "." + format.getFileExtension())
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
+    private static void validateDateRange(LocalDateTime startDate, LocalDateTime endDate) {
+        if (startDate != null && endDate != null) {
+            if (startDate.isAfter(endDate)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Start date must be before end date.");
+            }
+            long daysBetween = java.time.temporal.ChronoUnit.DAYS.between(startDate, endDate);
+            if (daysBetween > 31) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The date range cannot exceed 31 days.");
+            }
+        }
     }
 }
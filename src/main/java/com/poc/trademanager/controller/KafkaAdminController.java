@@ -1,31 +1,111 @@
 package com.poc.trademanager.controller;
 
 import com.poc.trademanager.dto.ApiResponse;
+import com.poc.trademanager.dto.CursorPage;
 import com.poc.trademanager.dto.KafkaMessageDto;
 import com.poc.trademanager.service.KafkaAdminService;
+import com.poc.trademanager.service.TradeExportService.ExportFormat;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.time.OffsetDateTime;
 
 @RestController
 @RequestMapping("/api/kafka")
 public class KafkaAdminController {
 
+    private static final int MAX_RECORDS = 1000;
+    private static final int MAX_BYTES = 10 * 1024 * 1024;
+    private static final int MAX_SEARCH_LIMIT = 1000;
+
     private final KafkaAdminService kafkaAdminService;
 
     public KafkaAdminController(KafkaAdminService kafkaAdminService) {
         this.kafkaAdminService = kafkaAdminService;
     }
 
+    /**
+     * One page of a partition, starting at {@code offset} or at the first message at or after {@code timestamp}
+     * (e.g. {@code 2024-06-01T09:00:00Z}), or at the beginning. Pass {@code nextCursor} back as {@code cursor} for
+     * the following page.
+     */
     @GetMapping("/browse/{topicName}")
     @PreAuthorize("hasRole('SUPPORT')")
-    public ResponseEntity<ApiResponse<List<KafkaMessageDto>>> browseTopic(@PathVariable String topicName) {
-        List<KafkaMessageDto> messages = kafkaAdminService.browseMessages(topicName);
-        return ResponseEntity.ok(new ApiResponse<>(true, "Messages browsed successfully", messages));
+    public ResponseEntity<ApiResponse<CursorPage<KafkaMessageDto>>> browseTopic(
+            @PathVariable String topicName,
+            @RequestParam(defaultValue = "0") int partition,
+            @RequestParam(required = false) Long offset,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime timestamp,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int maxRecords,
+            @RequestParam(defaultValue = "1048576") int maxBytes) {
+
+        if (offset != null && timestamp != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Give either an offset or a timestamp, not both.");
+        }
+        if (maxRecords < 1 || maxRecords > MAX_RECORDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "maxRecords must be between 1 and " + MAX_RECORDS + ".");
+        }
+        if (maxBytes < 1 || maxBytes > MAX_BYTES) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "maxBytes must be between 1 and " + MAX_BYTES + ".");
+        }
+        try {
+            CursorPage<KafkaMessageDto> messages = kafkaAdminService.browseMessages(topicName, partition, offset,
+                    timestamp == null ? null : timestamp.toInstant(), cursor, maxRecords, maxBytes);
+            return ResponseEntity.ok(new ApiResponse<>(true, "Messages browsed successfully", messages));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    /**
+     * Searches all partitions of a topic for messages written in {@code [from, to)} with the given key, header
+     * or value substring, streaming matches as NDJSON as they are found. At least one criterion is required.
+     */
+    @GetMapping("/search/{topicName}")
+    @PreAuthorize("hasRole('SUPPORT')")
+    public ResponseEntity<StreamingResponseBody> searchTopic(
+            @PathVariable String topicName,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @RequestParam(required = false) String key,
+            @RequestParam(required = false) String headerName,
+            @RequestParam(required = false) String headerValue,
+            @RequestParam(required = false) String valueContains,
+            @RequestParam(defaultValue = "100") int limit) {
+
+        if (to != null && !from.isBefore(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to.");
+        }
+        if (key == null && headerName == null && valueContains == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Give a key, headerName or valueContains to search for.");
+        }
+        if (headerValue != null && headerName == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "headerValue needs a headerName.");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_SEARCH_LIMIT + ".");
+        }
+        try {
+            StreamingResponseBody body = kafkaAdminService.searchMessages(topicName, from.toInstant(), to == null ? null : to.toInstant(),
+                    key, headerName, headerValue, valueContains, limit);
+            return ResponseEntity.ok().contentType(MediaType.parseMediaType(ExportFormat.NDJSON.getContentType())).body(body);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
     }
 }
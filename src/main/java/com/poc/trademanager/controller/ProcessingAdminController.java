@@ -0,0 +1,46 @@
+package com.poc.trademanager.controller;
+
+import com.poc.trademanager.dto.ApiResponse;
+import com.poc.trademanager.dto.LaneStatus;
+import com.poc.trademanager.dto.RetryTierStatus;
+import com.poc.trademanager.service.KeyedTaskExecutor;
+import com.poc.trademanager.service.RetryTopicRouter;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/processing")
+public class ProcessingAdminController {
+
+    private final KeyedTaskExecutor tradeProcessingExecutor;
+    private final RetryTopicRouter retryTopicRouter;
+
+    public ProcessingAdminController(KeyedTaskExecutor tradeProcessingExecutor, RetryTopicRouter retryTopicRouter) {
+        this.tradeProcessingExecutor = tradeProcessingExecutor;
+        this.retryTopicRouter = retryTopicRouter;
+    }
+
+    /**
+     * Queue depth per processing lane. One lane holding most of the backlog points to a hot client reference.
+     */
+    @GetMapping("/lanes")
+    @PreAuthorize("hasRole('SUPPORT')")
+    public ResponseEntity<ApiResponse<List<LaneStatus>>> getLaneStatuses() {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Lane statuses retrieved successfully", tradeProcessingExecutor.getLaneStatuses()));
+    }
+
+    /**
+     * Records through each retry tier since startup. Records received but neither recovered nor forwarded are
+     * still waiting out the tier's delay.
+     */
+    @GetMapping("/retries")
+    @PreAuthorize("hasRole('SUPPORT')")
+    public ResponseEntity<ApiResponse<List<RetryTierStatus>>> getRetryTierStatuses() {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Retry tier statuses retrieved successfully", retryTopicRouter.getStatuses()));
+    }
+}
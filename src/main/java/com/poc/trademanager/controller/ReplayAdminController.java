@@ -0,0 +1,80 @@
+package com.poc.trademanager.controller;
+
+import com.poc.trademanager.dto.ApiResponse;
+import com.poc.trademanager.dto.ReplayRequest;
+import com.poc.trademanager.entity.ReplayJob;
+import com.poc.trademanager.service.TradeReplayService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+@RestController
+@RequestMapping("/api/admin/replays")
+public class ReplayAdminController {
+
+    private final TradeReplayService tradeReplayService;
+
+    public ReplayAdminController(TradeReplayService tradeReplayService) {
+        this.tradeReplayService = tradeReplayService;
+    }
+
+    @GetMapping
+    @PreAuthorize("hasRole('SUPPORT')")
+    public ResponseEntity<ApiResponse<List<ReplayJob>>> getJobs() {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Replay jobs retrieved successfully", tradeReplayService.getJobs()));
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize("hasRole('SUPPORT')")
+    public ResponseEntity<ApiResponse<ReplayJob>> getJob(@PathVariable Long id) {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Replay job retrieved successfully", found(id, tradeReplayService.getJob(id))));
+    }
+
+    @PostMapping
+    @PreAuthorize("hasRole('SUPPORT')")
+    public ResponseEntity<ApiResponse<ReplayJob>> startJob(@RequestBody ReplayRequest request) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        ReplayJob job = badRequestOnInvalid(() -> tradeReplayService.start(request, username));
+        return ResponseEntity.ok(new ApiResponse<>(true, "Replay job started successfully", job));
+    }
+
+    /**
+     * The job stops once the chunk in progress has been replayed.
+     */
+    @PostMapping("/{id}/stop")
+    @PreAuthorize("hasRole('SUPPORT')")
+    public ResponseEntity<ApiResponse<ReplayJob>> stopJob(@PathVariable Long id) {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Replay job stop requested successfully", found(id, tradeReplayService.stop(id))));
+    }
+
+    @PostMapping("/{id}/resume")
+    @PreAuthorize("hasRole('SUPPORT')")
+    public ResponseEntity<ApiResponse<ReplayJob>> resumeJob(@PathVariable Long id) {
+        ReplayJob job = found(id, badRequestOnInvalid(() -> tradeReplayService.resume(id)));
+        return ResponseEntity.ok(new ApiResponse<>(true, "Replay job resumed successfully", job));
+    }
+
+    private static ReplayJob found(Long id, Optional<ReplayJob> job) {
+        return job.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Replay job " + id + " not found"));
+    }
+
+    private static <T> T badRequestOnInvalid(Supplier<T> action) {
+        try {
+            return action.get();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
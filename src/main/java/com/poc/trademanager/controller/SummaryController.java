@@ -0,0 +1,40 @@
+package com.poc.trademanager.controller;
+
+import com.poc.trademanager.dto.ApiResponse;
+import com.poc.trademanager.dto.TradeSummaryDto;
+import com.poc.trademanager.service.TradeSummaryBroadcaster;
+import com.poc.trademanager.service.TradeSummaryCounters;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/summary")
+public class SummaryController {
+
+    private final TradeSummaryCounters tradeSummaryCounters;
+    private final TradeSummaryBroadcaster tradeSummaryBroadcaster;
+
+    public SummaryController(TradeSummaryCounters tradeSummaryCounters, TradeSummaryBroadcaster tradeSummaryBroadcaster) {
+        this.tradeSummaryCounters = tradeSummaryCounters;
+        this.tradeSummaryBroadcaster = tradeSummaryBroadcaster;
+    }
+
+    @GetMapping("/trades-by-fund")
+    public ResponseEntity<ApiResponse<List<TradeSummaryDto>>> getTradeSummary() {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Trade summary retrieved successfully", tradeSummaryCounters.getSummary()));
+    }
+
+    /**
+     * Server-Sent Events stream of the same summary: a {@code snapshot} event on connect, then {@code delta} events.
+     */
+    @GetMapping(path = "/trades-by-fund/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamTradeSummary() {
+        return tradeSummaryBroadcaster.subscribe();
+    }
+}
@@ -0,0 +1,73 @@
+package com.poc.trademanager.controller;
+
+import com.poc.trademanager.dto.ApiResponse;
+import com.poc.trademanager.entity.TradeValidationRule;
+import com.poc.trademanager.service.TradeValidationEngine;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/validation-rules")
+public class ValidationRuleAdminController {
+
+    private final TradeValidationEngine tradeValidationEngine;
+
+    public ValidationRuleAdminController(TradeValidationEngine tradeValidationEngine) {
+        this.tradeValidationEngine = tradeValidationEngine;
+    }
+
+    @GetMapping
+    @PreAuthorize("hasRole('SUPPORT')")
+    public ResponseEntity<ApiResponse<List<TradeValidationRule>>> getRules() {
+        return ResponseEntity.ok(new ApiResponse<>(true, "Validation rules retrieved successfully", tradeValidationEngine.getRules()));
+    }
+
+    @PostMapping
+    @PreAuthorize("hasRole('SUPPORT')")
+    public ResponseEntity<ApiResponse<TradeValidationRule>> createRule(@RequestBody TradeValidationRule rule) {
+        rule.setId(null);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Validation rule created successfully", save(rule)));
+    }
+
+    @PutMapping("/{id}")
+    @PreAuthorize("hasRole('SUPPORT')")
+    public ResponseEntity<ApiResponse<TradeValidationRule>> updateRule(@PathVariable Long id, @RequestBody TradeValidationRule rule) {
+        if (!tradeValidationEngine.hasRule(id)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Validation rule " + id + " not found");
+        }
+        rule.setId(id);
+        return ResponseEntity.ok(new ApiResponse<>(true, "Validation rule updated successfully", save(rule)));
+    }
+
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasRole('SUPPORT')")
+    public ResponseEntity<ApiResponse<Void>> deleteRule(@PathVariable Long id) {
+        if (!tradeValidationEngine.deleteRule(id)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Validation rule " + id + " not found");
+        }
+        return ResponseEntity.ok(new ApiResponse<>(true, "Validation rule deleted successfully", null));
+    }
+
+    /**
+     * Rules that would not compile are rejected here rather than left for the engine to skip.
+     */
+    private TradeValidationRule save(TradeValidationRule rule) {
+        try {
+            return tradeValidationEngine.saveRule(rule);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.poc.trademanager.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthTokenResponse {
+    private String token;
+    private String tokenType;
+    private Instant expiresAt;
+}
@@ -0,0 +1,18 @@
+package com.poc.trademanager.dto;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+/**
+ * The fund fields needed to enrich and validate a trade, without the rest of the {@code Fund} entity and its LOB
+ * columns.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FundReference {
+    private String fundNumber;
+    private String baseCurrency;
+    private String fundType;
+}
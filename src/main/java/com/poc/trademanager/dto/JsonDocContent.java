@@ -0,0 +1,16 @@
+package com.poc.trademanager.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JsonDocContent {
+    private Long id;
+    private String data;
+    private LocalDateTime createdAt;
+}
@@ -8,6 +8,8 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 public class KafkaMessageDto {
+    private int partition;
+    private long offset;
     private long timestamp;
     private String key;
     private String value;
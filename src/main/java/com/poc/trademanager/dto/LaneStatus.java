@@ -0,0 +1,15 @@
+package com.poc.trademanager.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LaneStatus {
+    private int lane;
+    private int queueDepth;
+    private boolean active;
+    private long completedTasks;
+}
@@ -0,0 +1,24 @@
+package com.poc.trademanager.dto;
+
+/**
+ * What processing a trade message stored.
+ */
+public enum ProcessingOutcome {
+    /** A trade was saved. */
+    ACCEPTED,
+    /** A business or technical exception was saved. */
+    REJECTED,
+    /** Nothing was saved because the message has no client reference number. */
+    NO_CLIENT_REFERENCE,
+    /** Nothing was saved because a trade or exception with the same client reference number exists. */
+    DUPLICATE,
+    /** The message failed and its exception could not be saved either. */
+    UNRECORDED;
+
+    /**
+     * @return true if a trade or an exception row now stands for the message
+     */
+    public boolean isPersisted() {
+        return this == ACCEPTED || this == REJECTED;
+    }
+}
@@ -0,0 +1,8 @@
+package com.poc.trademanager.dto;
+
+public enum ReplayJobStatus {
+    RUNNING,
+    STOPPED,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,21 @@
+package com.poc.trademanager.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Selects the failures to replay. Every filter is optional; {@code failureReason} matches part of the reason, and
+ * for the DLQ the error the record was dead-lettered with. DLQ records count as {@link ErrorType#TECHNICAL}.
+ */
+@Data
+public class ReplayRequest {
+    private ReplaySource source;
+    private ErrorType errorType;
+    private String fundNumber;
+    private String failureReason;
+    private LocalDateTime startDate;
+    private LocalDateTime endDate;
+    /** Messages replayed per second; the configured default when not set. */
+    private Integer ratePerSecond;
+}
@@ -0,0 +1,6 @@
+package com.poc.trademanager.dto;
+
+public enum ReplaySource {
+    DLQ,
+    TRADE_EXCEPTIONS
+}
@@ -0,0 +1,20 @@
+package com.poc.trademanager.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetryTierStatus {
+    private int tier;
+    private String topic;
+    private long delaySeconds;
+    /** Records sent to this tier. */
+    private long received;
+    /** Records that succeeded when retried from this tier. */
+    private long recovered;
+    /** Records that failed again and went on to the next tier, or to the DLQ from the last one. */
+    private long forwarded;
+}
@@ -0,0 +1,10 @@
+package com.poc.trademanager.dto;
+
+/**
+ * Which trades a validation rule applies to: every trade, trades in funds of one fund type, or trades in one fund.
+ */
+public enum RuleScope {
+    ALL,
+    FUND_TYPE,
+    FUND
+}
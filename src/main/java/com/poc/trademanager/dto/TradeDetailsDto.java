@@ -2,11 +2,13 @@ package com.poc.trademanager.dto;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Data
+@NoArgsConstructor
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class TradeDetailsDto {
     private String clientReferenceNumber;
@@ -20,4 +22,21 @@ public class TradeDetailsDto {
     private BigDecimal netAmount;
     private String baseCurrency;
     private String outboundJson;
+
+    /**
+     * Used by the trade search projection, which leaves out the outbound JSON.
+     */
+    public TradeDetailsDto(String clientReferenceNumber, String fundNumber, String securityId, LocalDate tradeDate,
+                           LocalDate settleDate, BigDecimal quantity, BigDecimal price, BigDecimal principal,
+                           BigDecimal netAmount) {
+        this.clientReferenceNumber = clientReferenceNumber;
+        this.fundNumber = fundNumber;
+        this.securityId = securityId;
+        this.tradeDate = tradeDate;
+        this.settleDate = settleDate;
+        this.quantity = quantity;
+        this.price = price;
+        this.principal = principal;
+        this.netAmount = netAmount;
+    }
 }
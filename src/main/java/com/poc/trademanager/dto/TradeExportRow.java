@@ -0,0 +1,28 @@
+package com.poc.trademanager.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One trade as exported by {@code /api/trades/export}; read without the outbound JSON, which is not exported.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TradeExportRow {
+    private String clientReferenceNumber;
+    private String fundNumber;
+    private String securityId;
+    private LocalDate tradeDate;
+    private LocalDate settleDate;
+    private BigDecimal quantity;
+    private BigDecimal price;
+    private BigDecimal principal;
+    private BigDecimal netAmount;
+    private LocalDateTime createdAt;
+}
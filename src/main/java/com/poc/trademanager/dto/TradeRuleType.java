@@ -0,0 +1,19 @@
+package com.poc.trademanager.dto;
+
+/**
+ * The checks a validation rule can make. Rules of the parameterized types take their limit from the rule's
+ * {@code parameter}.
+ */
+public enum TradeRuleType {
+    TRADE_DATE_IS_TODAY,
+    SETTLE_DATE_IN_FUTURE,
+    PRINCIPAL_EQUALS_QUANTITY_TIMES_PRICE,
+    /**
+     * Settlement no more than {@code parameter} days after the trade date.
+     */
+    MAX_SETTLEMENT_DAYS,
+    /**
+     * Principal no larger than {@code parameter}.
+     */
+    MAX_PRINCIPAL
+}
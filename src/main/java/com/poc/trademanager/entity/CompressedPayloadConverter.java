@@ -0,0 +1,22 @@
+package com.poc.trademanager.entity;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores a JSON payload column compressed with {@link PayloadCodec}. Values written before the column was
+ * compressed are read back unchanged.
+ */
+@Converter
+public class CompressedPayloadConverter implements AttributeConverter<String, String> {
+
+    @Override
+    public String convertToDatabaseColumn(String attribute) {
+        return PayloadCodec.encode(attribute);
+    }
+
+    @Override
+    public String convertToEntityAttribute(String dbData) {
+        return PayloadCodec.decode(dbData);
+    }
+}
@@ -0,0 +1,48 @@
+package com.poc.trademanager.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * The last input offset whose processing has been committed to the database, per consumer group and partition.
+ * Written in the same transaction as that processing, so a record redelivered after the database committed but
+ * before Kafka did is recognised and skipped.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "consumed_offsets", uniqueConstraints = @UniqueConstraint(
+        name = "uk_consumed_offsets_partition", columnNames = {"consumer_group", "topic", "partition_number"}))
+public class ConsumedOffset {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "consumer_group", nullable = false)
+    private String consumerGroup;
+
+    @Column(nullable = false)
+    private String topic;
+
+    @Column(name = "partition_number", nullable = false)
+    private int partition;
+
+    @Column(name = "last_offset", nullable = false)
+    private long lastOffset;
+
+    public ConsumedOffset(String consumerGroup, String topic, int partition, long lastOffset) {
+        this.consumerGroup = consumerGroup;
+        this.topic = topic;
+        this.partition = partition;
+        this.lastOffset = lastOffset;
+    }
+}
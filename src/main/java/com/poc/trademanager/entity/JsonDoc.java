@@ -2,29 +2,37 @@ package com.poc.trademanager.entity;
 
 import lombok.Data;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Lob;
 import javax.persistence.Table;
 import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "json_docs")
+@Table(name = "json_docs", indexes = @Index(name = "idx_json_docs_created_at_id", columnList = "created_at, id"))
 public class JsonDoc {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "json_docs_seq")
+    @GenericGenerator(name = "json_docs_seq", strategy = "com.poc.trademanager.entity.PooledSequenceGenerator",
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "json_docs_seq"))
     private Long id;
 
     @Column(name = "message_key", unique = true, nullable = false)
     private String messageKey;
 
     @Lob
+    @Convert(converter = PlainPayloadConverter.class)
     @Column(nullable = false)
     private String data;
 
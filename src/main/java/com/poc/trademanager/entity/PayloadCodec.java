@@ -0,0 +1,132 @@
+package com.poc.trademanager.entity;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Compresses JSON payloads with zstd and a dictionary trained on trade messages, which is what makes messages of a
+ * few hundred bytes worth compressing at all. The result stays text, {@code {zstd:<dictionary>}} followed by the
+ * base64 frame, so the existing text columns hold it unchanged: a valid JSON document cannot start with that
+ * marker, and any value without it is read back as it is. Rows written before compression therefore keep working
+ * and can be migrated at leisure.
+ * <p>
+ * The dictionary id is part of the marker so that a retrained dictionary can be added alongside the current one;
+ * values written with an older dictionary must stay decodable.
+ */
+public final class PayloadCodec {
+
+    public static final String MARKER_PREFIX = "{zstd:";
+
+    static final int DICTIONARY_ID = 1;
+
+    private static final String DICTIONARY_RESOURCE = "/compression/trade-json-" + DICTIONARY_ID + ".zdict";
+    private static final String MARKER = MARKER_PREFIX + DICTIONARY_ID + "}";
+    private static final int LEVEL = 3;
+
+    /**
+     * Below this the marker and base64 overhead outweighs what the dictionary saves.
+     */
+    private static final int MIN_COMPRESSIBLE_LENGTH = 64;
+
+    private static final byte[] DICTIONARY = loadDictionary();
+
+    private static final ThreadLocal<ZstdCompressCtx> COMPRESSORS = ThreadLocal.withInitial(() ->
+            new ZstdCompressCtx().setLevel(LEVEL).setContentSize(true).setChecksum(false).loadDict(DICTIONARY));
+    private static final ThreadLocal<ZstdDecompressCtx> DECOMPRESSORS = ThreadLocal.withInitial(() ->
+            new ZstdDecompressCtx().loadDict(DICTIONARY));
+
+    private PayloadCodec() {
+    }
+
+    /**
+     * Returns the stored form of a payload: compressed if that makes it shorter, otherwise the payload itself.
+     */
+    public static String encode(String payload) {
+        if (payload == null) {
+            return null;
+        }
+        // A plain value that happens to look encoded must be compressed, or it would be misread.
+        boolean lookEncoded = payload.startsWith(MARKER_PREFIX);
+        if (payload.length() < MIN_COMPRESSIBLE_LENGTH && !lookEncoded) {
+            return payload;
+        }
+        byte[] compressed = COMPRESSORS.get().compress(payload.getBytes(StandardCharsets.UTF_8));
+        String encoded = MARKER + Base64.getEncoder().encodeToString(compressed);
+        return encoded.length() < payload.length() || lookEncoded ? encoded : payload;
+    }
+
+    /**
+     * Returns the payload for a stored value, which may or may not be compressed.
+     */
+    public static String decode(String stored) {
+        if (!isEncoded(stored)) {
+            return stored;
+        }
+        int end = stored.indexOf('}', MARKER_PREFIX.length());
+        int dictionaryId = Integer.parseInt(stored.substring(MARKER_PREFIX.length(), end));
+        return decompress(dictionaryId, Base64.getDecoder().decode(stored.substring(end + 1)));
+    }
+
+    /**
+     * Converts a stored value to a compact binary form for storage outside the database: a byte holding the id of
+     * the dictionary the rest was compressed with, or 0 if the rest is the payload as UTF-8.
+     */
+    public static byte[] toBinary(String stored) {
+        byte[] frame;
+        int dictionaryId;
+        if (isEncoded(stored)) {
+            int end = stored.indexOf('}', MARKER_PREFIX.length());
+            dictionaryId = Integer.parseInt(stored.substring(MARKER_PREFIX.length(), end));
+            frame = Base64.getDecoder().decode(stored.substring(end + 1));
+        } else if (stored.length() >= MIN_COMPRESSIBLE_LENGTH) {
+            dictionaryId = DICTIONARY_ID;
+            frame = COMPRESSORS.get().compress(stored.getBytes(StandardCharsets.UTF_8));
+        } else {
+            dictionaryId = 0;
+            frame = stored.getBytes(StandardCharsets.UTF_8);
+        }
+        byte[] binary = new byte[frame.length + 1];
+        binary[0] = (byte) dictionaryId;
+        System.arraycopy(frame, 0, binary, 1, frame.length);
+        return binary;
+    }
+
+    public static String fromBinary(byte[] binary) {
+        int dictionaryId = binary[0];
+        if (dictionaryId == 0) {
+            return new String(binary, 1, binary.length - 1, StandardCharsets.UTF_8);
+        }
+        return decompress(dictionaryId, Arrays.copyOfRange(binary, 1, binary.length));
+    }
+
+    public static boolean isEncoded(String stored) {
+        return stored != null && stored.startsWith(MARKER_PREFIX);
+    }
+
+    private static String decompress(int dictionaryId, byte[] frame) {
+        if (dictionaryId != DICTIONARY_ID) {
+            throw new IllegalStateException("Payload was compressed with unknown dictionary " + dictionaryId);
+        }
+        byte[] payload = DECOMPRESSORS.get().decompress(frame, (int) Zstd.decompressedSize(frame));
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] loadDictionary() {
+        try (InputStream in = PayloadCodec.class.getResourceAsStream(DICTIONARY_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Compression dictionary " + DICTIONARY_RESOURCE + " is missing");
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read compression dictionary " + DICTIONARY_RESOURCE, e);
+        }
+    }
+}
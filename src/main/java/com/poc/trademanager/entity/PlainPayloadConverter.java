@@ -0,0 +1,23 @@
+package com.poc.trademanager.entity;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores a JSON payload column as it is, so that SQL can search it, while still reading back values written
+ * compressed with {@link PayloadCodec}.
+ */
+@Converter
+public class PlainPayloadConverter implements AttributeConverter<String, String> {
+
+    @Override
+    public String convertToDatabaseColumn(String attribute) {
+        // A plain value that looks compressed has to be stored compressed, or it would be misread.
+        return PayloadCodec.isEncoded(attribute) ? PayloadCodec.encode(attribute) : attribute;
+    }
+
+    @Override
+    public String convertToEntityAttribute(String dbData) {
+        return PayloadCodec.decode(dbData);
+    }
+}
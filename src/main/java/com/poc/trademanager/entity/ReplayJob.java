@@ -0,0 +1,97 @@
+package com.poc.trademanager.entity;
+
+import com.poc.trademanager.dto.ErrorType;
+import com.poc.trademanager.dto.ReplayJobStatus;
+import com.poc.trademanager.dto.ReplaySource;
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * A replay of failed messages and its progress. {@code checkpoint} is where the replay carries on from: the last
+ * trade exception id handled, or the next offset of each DLQ partition as {@code partition:offset} pairs.
+ * {@code endPosition} is the same for the end of the failures that existed when the job was started, so failures
+ * that the replay itself produces are not picked up again.
+ */
+@Data
+@Entity
+@Table(name = "replay_jobs")
+public class ReplayJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private ReplaySource source;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "error_type", length = 20)
+    private ErrorType errorType;
+
+    @Column(name = "fund_number", length = TradeException.FUND_NUMBER_LENGTH)
+    private String fundNumber;
+
+    @Column(name = "failure_reason")
+    private String failureReason;
+
+    @Column(name = "start_date")
+    private LocalDateTime startDate;
+
+    @Column(name = "end_date")
+    private LocalDateTime endDate;
+
+    @Column(name = "rate_per_second", nullable = false)
+    private int ratePerSecond;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private ReplayJobStatus status;
+
+    @Column(length = 4000)
+    private String checkpoint;
+
+    @Column(name = "end_position", length = 4000)
+    private String endPosition;
+
+    /** Failures left to look at when the job was started, before the filters for DLQ records. */
+    @Column(name = "total_candidates", nullable = false)
+    private long totalCandidates;
+
+    @Column(nullable = false)
+    private long scanned;
+
+    @Column(nullable = false)
+    private long replayed;
+
+    @Column(nullable = false)
+    private long skipped;
+
+    @Column(nullable = false)
+    private long failed;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_by", length = 100)
+    private String createdBy;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
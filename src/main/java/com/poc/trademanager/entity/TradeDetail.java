@@ -2,8 +2,12 @@ package com.poc.trademanager.entity;
 
 import lombok.Data;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
@@ -20,7 +24,9 @@ import java.time.LocalDateTime;
 public class TradeDetail {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trade_details_seq")
+    @GenericGenerator(name = "trade_details_seq", strategy = "com.poc.trademanager.entity.PooledSequenceGenerator",
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "trade_details_seq"))
     private Long id;
 
     @Column(name = "client_reference_number", unique = true, nullable = false)
@@ -52,6 +58,7 @@ public class TradeDetail {
     private LocalDateTime createdAt;
 
     @Lob
+    @Convert(converter = CompressedPayloadConverter.class)
     @Column(name = "outbound_json")
     private String outboundJson;
 }
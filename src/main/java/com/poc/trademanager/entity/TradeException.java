@@ -3,35 +3,54 @@ package com.poc.trademanager.entity;
 import com.poc.trademanager.dto.ErrorType;
 import lombok.Data;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Lob;
 import javax.persistence.Table;
 import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "trade_exceptions")
+@Table(name = "trade_exceptions", indexes = @Index(name = "idx_trade_exceptions_fund_number", columnList = "fund_number"))
 public class TradeException {
 
+    /**
+     * Stored in {@code fund_number} when the failed message has no readable fund number, or one too long to be a
+     * real fund.
+     */
+    public static final String UNKNOWN_FUND = "UNKNOWN";
+
+    public static final int FUND_NUMBER_LENGTH = 20;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trade_exceptions_seq")
+    @GenericGenerator(name = "trade_exceptions_seq", strategy = "com.poc.trademanager.entity.PooledSequenceGenerator",
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "trade_exceptions_seq"))
     private Long id;
 
-    @Column(name = "client_reference_number")
+    @Column(name = "client_reference_number", unique = true)
     private String clientReferenceNumber;
 
+    @Column(name = "fund_number", length = FUND_NUMBER_LENGTH)
+    private String fundNumber;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "error_type", nullable = false)
     private ErrorType errorType;
 
     @Lob
+    @Convert(converter = CompressedPayloadConverter.class)
     @Column(name = "failed_trade_json", nullable = false)
     private String failedTradeJson;
 
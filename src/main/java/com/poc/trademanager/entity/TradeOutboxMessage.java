@@ -0,0 +1,55 @@
+package com.poc.trademanager.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * A message to publish, written in the same transaction as the rows it describes and sent by
+ * {@code TradeOutboxRelay}. {@code sentAt} is set once the broker has acknowledged it.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "trade_outbox", indexes = @Index(name = "idx_trade_outbox_sent_at_id", columnList = "sent_at, id"))
+public class TradeOutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trade_outbox_seq")
+    @GenericGenerator(name = "trade_outbox_seq", strategy = "com.poc.trademanager.entity.PooledSequenceGenerator",
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "trade_outbox_seq"))
+    private Long id;
+
+    @Column(nullable = false)
+    private String topic;
+
+    // Rows are deleted soon after they are sent, so the payload is not worth compressing.
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    public TradeOutboxMessage(String topic, String payload) {
+        this.topic = topic;
+        this.payload = payload;
+    }
+}
@@ -0,0 +1,60 @@
+package com.poc.trademanager.entity;
+
+import com.poc.trademanager.dto.RuleScope;
+import com.poc.trademanager.dto.TradeRuleType;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * One check applied to incoming trades. {@code scopeValue} is the fund type or fund number for rules scoped to one,
+ * and empty for rules that apply to every trade.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "trade_validation_rules")
+public class TradeValidationRule {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private RuleScope scope;
+
+    @Column(name = "scope_value", length = 50)
+    private String scopeValue;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "rule_type", nullable = false, length = 50)
+    private TradeRuleType ruleType;
+
+    @Column(length = 100)
+    private String parameter;
+
+    @Column(nullable = false)
+    private boolean enabled = true;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public TradeValidationRule(RuleScope scope, String scopeValue, TradeRuleType ruleType, String parameter) {
+        this.scope = scope;
+        this.scopeValue = scopeValue;
+        this.ruleType = ruleType;
+        this.parameter = parameter;
+    }
+}
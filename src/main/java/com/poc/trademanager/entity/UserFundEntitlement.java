@@ -2,6 +2,7 @@ package com.poc.trademanager.entity;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
@@ -11,6 +12,7 @@ import javax.persistence.Table;
 
 @Entity
 @Table(name = "user_fund_entitlements")
+@EntityListeners(UserFundEntitlementListener.class)
 public class UserFundEntitlement {
 
     @Id
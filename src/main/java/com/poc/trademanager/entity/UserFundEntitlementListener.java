@@ -0,0 +1,43 @@
+package com.poc.trademanager.entity;
+
+import com.poc.trademanager.service.EntitlementCache;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Evicts a user's cached entitlements whenever one of their entitlements changes. Eviction waits for the commit
+ * so a concurrent request cannot reload the old set in between.
+ */
+public class UserFundEntitlementListener {
+
+    private final ObjectProvider<EntitlementCache> entitlementCache;
+
+    public UserFundEntitlementListener(ObjectProvider<EntitlementCache> entitlementCache) {
+        this.entitlementCache = entitlementCache;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void entitlementChanged(UserFundEntitlement entitlement) {
+        if (entitlement.getUser() == null) {
+            return;
+        }
+        String username = entitlement.getUser().getUsername();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    entitlementCache.ifAvailable(cache -> cache.invalidate(username));
+                }
+            });
+        } else {
+            entitlementCache.ifAvailable(cache -> cache.invalidate(username));
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.poc.trademanager.repository;
+
+import com.poc.trademanager.entity.ConsumedOffset;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ConsumedOffsetRepository extends JpaRepository<ConsumedOffset, Long> {
+
+    List<ConsumedOffset> findByConsumerGroupAndTopic(String consumerGroup, String topic);
+}
@@ -1,9 +1,17 @@
 package com.poc.trademanager.repository;
 
+import com.poc.trademanager.dto.FundReference;
 import com.poc.trademanager.entity.Fund;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+
 @Repository
 public interface FundRepository extends JpaRepository<Fund, String> {
+
+    @Query("SELECT new com.poc.trademanager.dto.FundReference(f.fundID, f.baseCurrency, f.fundType) FROM Fund f WHERE f.fundID = :fundNumber")
+    Optional<FundReference> findReferenceByFundNumber(@Param("fundNumber") String fundNumber);
 }
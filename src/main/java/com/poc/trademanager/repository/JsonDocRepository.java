@@ -1,15 +1,26 @@
 package com.poc.trademanager.repository;
 
-import com.poc.trademanager.entity.JsonDoc;
+import com.poc.trademanager.dto.JsonData;
+import com.poc.trademanager.dto.JsonDocContent;
+import com.poc.trademanager.dto.KeysetCursor;
 import com.poc.trademanager.entity.JsonDoc;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface JsonDocRepository extends JpaRepository<JsonDoc, Long> {
@@ -23,4 +34,108 @@ public interface JsonDocRepository extends JpaRepository<JsonDoc, Long> {
             @Param("contentFilter") String contentFilter,
             Pageable pageable
     );
+
+    /**
+     * Content-filtered search restricted to the candidate ids from the content index, plus any rows newer than
+     * the index is known to be complete for.
+     */
+    @Query("SELECT j FROM JsonDoc j WHERE " +
+            "(j.id IN :candidateIds OR j.createdAt > :indexedUpTo) AND " +
+            "(:startDate IS NULL OR j.createdAt >= :startDate) AND " +
+            "(:endDate IS NULL OR j.createdAt <= :endDate) AND " +
+            "j.data LIKE %:contentFilter%")
+    Page<JsonDoc> findByCriteriaAndCandidates(
+            @Param("candidateIds") Collection<Long> candidateIds,
+            @Param("indexedUpTo") LocalDateTime indexedUpTo,
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate,
+            @Param("contentFilter") String contentFilter,
+            Pageable pageable
+    );
+
+    @Query("SELECT COUNT(j) FROM JsonDoc j WHERE " +
+            "(:startDate IS NULL OR j.createdAt >= :startDate) AND " +
+            "(:endDate IS NULL OR j.createdAt <= :endDate) AND " +
+            "(:contentFilter IS NULL OR j.data LIKE %:contentFilter%)")
+    long countByCriteria(
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate,
+            @Param("contentFilter") String contentFilter
+    );
+
+    Optional<JsonDoc> findByMessageKey(String messageKey);
+
+    /**
+     * One keyset page, newest first, of the rows strictly after the given {@code (createdAt, id)} position. The
+     * pageable only limits the rows; no count query is run.
+     */
+    @Query("SELECT j FROM JsonDoc j WHERE " +
+            "(j.createdAt < :cursorCreatedAt OR (j.createdAt = :cursorCreatedAt AND j.id < :cursorId)) AND " +
+            "(:startDate IS NULL OR j.createdAt >= :startDate) AND " +
+            "(:endDate IS NULL OR j.createdAt <= :endDate) AND " +
+            "(:contentFilter IS NULL OR j.data LIKE %:contentFilter%) " +
+            "ORDER BY j.createdAt DESC, j.id DESC")
+    List<JsonDoc> findPageAfter(
+            @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+            @Param("cursorId") Long cursorId,
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate,
+            @Param("contentFilter") String contentFilter,
+            Pageable limit
+    );
+
+    @Query("SELECT j FROM JsonDoc j WHERE " +
+            "(j.createdAt < :cursorCreatedAt OR (j.createdAt = :cursorCreatedAt AND j.id < :cursorId)) AND " +
+            "(j.id IN :candidateIds OR j.createdAt > :indexedUpTo) AND " +
+            "(:startDate IS NULL OR j.createdAt >= :startDate) AND " +
+            "(:endDate IS NULL OR j.createdAt <= :endDate) AND " +
+            "j.data LIKE %:contentFilter% " +
+            "ORDER BY j.createdAt DESC, j.id DESC")
+    List<JsonDoc> findPageAfterAndCandidates(
+            @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+            @Param("cursorId") Long cursorId,
+            @Param("candidateIds") Collection<Long> candidateIds,
+            @Param("indexedUpTo") LocalDateTime indexedUpTo,
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate,
+            @Param("contentFilter") String contentFilter,
+            Pageable limit
+    );
+
+    /**
+     * The rows after the given {@code (createdAt, id)} position, newest first, that contain the filter, or all of
+     * them if it is null; for merging with the archived rows.
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "200"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("SELECT new com.poc.trademanager.dto.JsonData(j.id, j.messageKey, j.data, j.createdAt) FROM JsonDoc j WHERE " +
+            "(j.createdAt < :cursorCreatedAt OR (j.createdAt = :cursorCreatedAt AND j.id < :cursorId)) AND " +
+            "(:startDate IS NULL OR j.createdAt >= :startDate) AND " +
+            "(:endDate IS NULL OR j.createdAt <= :endDate) AND " +
+            "(:contentFilter IS NULL OR j.data LIKE %:contentFilter%) " +
+            "ORDER BY j.createdAt DESC, j.id DESC")
+    Stream<JsonData> streamAfter(
+            @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+            @Param("cursorId") Long cursorId,
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate,
+            @Param("contentFilter") String contentFilter
+    );
+
+    /**
+     * The {@code (createdAt, id)} position of every row in the range, newest first, read from the index without
+     * touching the stored data.
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("SELECT new com.poc.trademanager.dto.KeysetCursor(j.createdAt, j.id) FROM JsonDoc j WHERE " +
+            "(:startDate IS NULL OR j.createdAt >= :startDate) AND " +
+            "(:endDate IS NULL OR j.createdAt <= :endDate) " +
+            "ORDER BY j.createdAt DESC, j.id DESC")
+    Stream<KeysetCursor> streamPositions(
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate
+    );
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.poc.trademanager.dto.JsonDocContent(j.id, j.data, j.createdAt) FROM JsonDoc j WHERE j.createdAt > :after")
+    Stream<JsonDocContent> streamContentCreatedAfter(@Param("after") LocalDateTime after);
 }
@@ -0,0 +1,16 @@
+package com.poc.trademanager.repository;
+
+import com.poc.trademanager.dto.ReplayJobStatus;
+import com.poc.trademanager.entity.ReplayJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ReplayJobRepository extends JpaRepository<ReplayJob, Long> {
+
+    List<ReplayJob> findByStatus(ReplayJobStatus status);
+
+    List<ReplayJob> findAllByOrderByIdDesc();
+}
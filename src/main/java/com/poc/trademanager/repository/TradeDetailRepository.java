@@ -1,22 +1,71 @@
 package com.poc.trademanager.repository;
 
 import com.poc.trademanager.dto.FundTradeCount;
+import com.poc.trademanager.dto.TradeDetailsDto;
+import com.poc.trademanager.dto.TradeExportRow;
 import com.poc.trademanager.entity.TradeDetail;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface TradeDetailRepository extends JpaRepository<TradeDetail, Long> {
     boolean existsByClientReferenceNumber(String clientReferenceNumber);
     List<TradeDetail> findByClientReferenceNumber(String clientReferenceNumber);
-    List<TradeDetail> findByClientReferenceNumberAndFundNumberIn(String clientReferenceNumber, List<String> fundNumbers);
-    List<TradeDetail> findByClientReferenceNumberAndFundNumberInAndTradeDateBetween(String clientReferenceNumber, List<String> fundNumbers, LocalDate startDate, LocalDate endDate);
-    List<TradeDetail> findByFundNumberInAndTradeDateBetween(List<String> fundNumbers, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Search used by {@code /api/trades} and its export; a null client reference number or date is not filtered on.
+     */
+    String SEARCH_CONDITION = "t.fundNumber IN :fundNumbers AND " +
+            "(:clientReferenceNumber IS NULL OR t.clientReferenceNumber = :clientReferenceNumber) AND " +
+            "(:startDate IS NULL OR t.tradeDate >= :startDate) AND " +
+            "(:endDate IS NULL OR t.tradeDate <= :endDate)";
+
+    @Query(value = "SELECT new com.poc.trademanager.dto.TradeDetailsDto(t.clientReferenceNumber, t.fundNumber, " +
+            "t.securityId, t.tradeDate, t.settleDate, t.quantity, t.price, t.principal, t.netAmount) " +
+            "FROM TradeDetail t WHERE " + SEARCH_CONDITION,
+            countQuery = "SELECT COUNT(t) FROM TradeDetail t WHERE " + SEARCH_CONDITION)
+    Page<TradeDetailsDto> findDetails(
+            @Param("fundNumbers") Collection<String> fundNumbers,
+            @Param("clientReferenceNumber") String clientReferenceNumber,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate,
+            Pageable pageable);
+
+    @Query("SELECT t.outboundJson FROM TradeDetail t " +
+            "WHERE t.clientReferenceNumber = :clientReferenceNumber AND t.fundNumber IN :fundNumbers")
+    Optional<String> findOutboundJson(
+            @Param("clientReferenceNumber") String clientReferenceNumber,
+            @Param("fundNumbers") Collection<String> fundNumbers);
 
     @Query("SELECT new com.poc.trademanager.dto.FundTradeCount(t.fundNumber, COUNT(t)) FROM TradeDetail t GROUP BY t.fundNumber")
     List<FundTradeCount> countByFundNumber();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT t.clientReferenceNumber FROM TradeDetail t")
+    Stream<String> streamAllClientReferenceNumbers();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.poc.trademanager.dto.TradeExportRow(t.clientReferenceNumber, t.fundNumber, " +
+            "t.securityId, t.tradeDate, t.settleDate, t.quantity, t.price, t.principal, t.netAmount, t.createdAt) " +
+            "FROM TradeDetail t WHERE " + SEARCH_CONDITION + " ORDER BY t.id")
+    Stream<TradeExportRow> streamForExport(
+            @Param("fundNumbers") Collection<String> fundNumbers,
+            @Param("clientReferenceNumber") String clientReferenceNumber,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate);
 }
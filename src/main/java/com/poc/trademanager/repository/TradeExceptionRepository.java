@@ -1,11 +1,20 @@
 package com.poc.trademanager.repository;
 
+import com.poc.trademanager.dto.FundTradeCount;
 import com.poc.trademanager.entity.TradeException;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface TradeExceptionRepository extends JpaRepository<TradeException, Long> {
@@ -13,4 +22,22 @@ public interface TradeExceptionRepository extends JpaRepository<TradeException,
     List<TradeException> findByClientReferenceNumber(String clientReferenceNumber);
     List<TradeException> findByClientReferenceNumberAndCreatedAtBetween(String clientReferenceNumber, LocalDateTime startDate, LocalDateTime endDate);
     List<TradeException> findByCreatedAtBetween(LocalDateTime startDate, LocalDateTime endDate);
+
+    @Query("SELECT new com.poc.trademanager.dto.FundTradeCount(e.fundNumber, COUNT(e)) FROM TradeException e GROUP BY e.fundNumber")
+    List<FundTradeCount> countByFundNumber();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT e.clientReferenceNumber FROM TradeException e WHERE e.clientReferenceNumber IS NOT NULL")
+    Stream<String> streamAllClientReferenceNumbers();
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("SELECT e FROM TradeException e WHERE " +
+            "(:clientReferenceNumber IS NULL OR e.clientReferenceNumber = :clientReferenceNumber) AND " +
+            "(:startDate IS NULL OR e.createdAt >= :startDate) AND " +
+            "(:endDate IS NULL OR e.createdAt <= :endDate) " +
+            "ORDER BY e.id")
+    Stream<TradeException> streamForExport(
+            @Param("clientReferenceNumber") String clientReferenceNumber,
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate);
 }
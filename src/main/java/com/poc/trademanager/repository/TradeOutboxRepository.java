@@ -0,0 +1,9 @@
+package com.poc.trademanager.repository;
+
+import com.poc.trademanager.entity.TradeOutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface TradeOutboxRepository extends JpaRepository<TradeOutboxMessage, Long> {
+}
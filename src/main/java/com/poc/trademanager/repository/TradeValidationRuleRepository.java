@@ -0,0 +1,21 @@
+package com.poc.trademanager.repository;
+
+import com.poc.trademanager.entity.TradeValidationRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TradeValidationRuleRepository extends JpaRepository<TradeValidationRule, Long> {
+
+    List<TradeValidationRule> findByEnabledTrueOrderByIdAsc();
+
+    /**
+     * Together with the row count, tells whether the rules changed since they were last read.
+     */
+    @Query("SELECT MAX(r.updatedAt) FROM TradeValidationRule r")
+    LocalDateTime findLastUpdatedAt();
+}
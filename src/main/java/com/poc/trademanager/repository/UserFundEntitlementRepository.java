@@ -3,9 +3,14 @@ package com.poc.trademanager.repository;
 import com.poc.trademanager.entity.AppUser;
 import com.poc.trademanager.entity.UserFundEntitlement;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
 public interface UserFundEntitlementRepository extends JpaRepository<UserFundEntitlement, Long> {
     List<UserFundEntitlement> findByUser(AppUser user);
+
+    @Query("SELECT e.fundNumber FROM UserFundEntitlement e WHERE e.user.username = :username")
+    List<String> findFundNumbersByUsername(@Param("username") String username);
 }
@@ -0,0 +1,128 @@
+package com.poc.trademanager.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Issues and verifies HMAC-SHA256 signed access tokens, so that only the request that obtains a token pays for
+ * the BCrypt password check. A token carries the username, the granted roles and an expiry. Verifying it needs
+ * no database lookup, so role changes take effect when the user's current token expires.
+ * <p>
+ * Tokens have the form {@code base64url(payload).base64url(signature)}, where the payload is
+ * {@code expiryEpochSeconds:role,role:username}.
+ */
+@Service
+public class AuthTokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthTokenService.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final Clock clock;
+    private final ThreadLocal<Mac> macs;
+
+    @Autowired
+    public AuthTokenService(@Value("${app.auth.token.secret:}") String secret,
+                            @Value("${app.auth.token.ttl:30m}") Duration ttl) {
+        this(secret, ttl, Clock.systemUTC());
+    }
+
+    AuthTokenService(String secret, Duration ttl, Clock clock) {
+        this.key = new SecretKeySpec(secretBytes(secret), ALGORITHM);
+        this.ttl = ttl;
+        this.clock = clock;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    public String issue(Authentication authentication, Instant expiresAt) {
+        String roles = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.joining(","));
+        String payload = expiresAt.getEpochSecond() + ":" + roles + ":" + authentication.getName();
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(payloadBytes) + "." + ENCODER.encodeToString(sign(payloadBytes));
+    }
+
+    /**
+     * Returns the authentication carried by the token, or empty if it is malformed, tampered with or expired.
+     */
+    public Optional<Authentication> verify(String token) {
+        int separator = token.indexOf('.');
+        if (separator < 0) {
+            return Optional.empty();
+        }
+        byte[] payloadBytes;
+        byte[] signature;
+        try {
+            payloadBytes = DECODER.decode(token.substring(0, separator));
+            signature = DECODER.decode(token.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (!MessageDigest.isEqual(sign(payloadBytes), signature)) {
+            return Optional.empty();
+        }
+
+        String[] fields = new String(payloadBytes, StandardCharsets.UTF_8).split(":", 3);
+        if (fields.length != 3 || Instant.ofEpochSecond(Long.parseLong(fields[0])).isBefore(clock.instant())) {
+            return Optional.empty();
+        }
+        return Optional.of(new UsernamePasswordAuthenticationToken(fields[2], null,
+                AuthorityUtils.commaSeparatedStringToAuthorityList(fields[1])));
+    }
+
+    /**
+     * The expiry for a token issued now.
+     */
+    public Instant getExpiry() {
+        return clock.instant().plus(ttl);
+    }
+
+    private byte[] sign(byte[] payload) {
+        return macs.get().doFinal(payload);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not initialise " + ALGORITHM, e);
+        }
+    }
+
+    private static byte[] secretBytes(String secret) {
+        if (secret == null || secret.isEmpty()) {
+            log.warn("app.auth.token.secret is not set; using a random key. Tokens will not survive a restart or work across instances.");
+            byte[] random = new byte[32];
+            new SecureRandom().nextBytes(random);
+            return random;
+        }
+        return secret.getBytes(StandardCharsets.UTF_8);
+    }
+}
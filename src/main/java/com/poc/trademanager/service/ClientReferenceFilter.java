@@ -0,0 +1,178 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.repository.TradeDetailRepository;
+import com.poc.trademanager.repository.TradeExceptionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter over every client reference number already stored as a trade or a trade exception. A negative
+ * answer means this instance has not seen the reference, so the duplicate check can skip the database for the vast
+ * majority of messages; a positive answer only means the database has to be asked.
+ * <p>
+ * The filter is warmed by streaming both tables once the application is ready. Until then every lookup is
+ * reported as a possible hit. It only sees saves made by this instance, so a negative answer is not proof: the
+ * unique constraints on {@code client_reference_number} in {@code trade_details} and {@code trade_exceptions} are
+ * what stop a reference stored by another instance from being accepted twice.
+ * <p>
+ * Deleted references, e.g. replayed exceptions, stay set until the filter is rebuilt on
+ * {@code app.duplicate-filter.rebuild-cron}. A rebuild fills a fresh filter while the current one keeps answering,
+ * and references saved meanwhile are added to both.
+ */
+@Component
+public class ClientReferenceFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(ClientReferenceFilter.class);
+
+    private final TradeDetailRepository tradeDetailRepository;
+    private final TradeExceptionRepository tradeExceptionRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final long bitCount;
+    private final int hashCount;
+    private final long expectedInsertions;
+    private final LongAdder insertions = new LongAdder();
+    private volatile AtomicLongArray bits;
+    private volatile AtomicLongArray rebuilding;
+    private volatile boolean ready;
+
+    public ClientReferenceFilter(TradeDetailRepository tradeDetailRepository,
+                                 TradeExceptionRepository tradeExceptionRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${app.duplicate-filter.expected-insertions:5000000}") long expectedInsertions,
+                                 @Value("${app.duplicate-filter.false-positive-rate:0.001}") double falsePositiveRate) {
+        this.tradeDetailRepository = tradeDetailRepository;
+        this.tradeExceptionRepository = tradeExceptionRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.expectedInsertions = expectedInsertions;
+
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = Math.max(64, (optimalBits + 63) / 64 * 64);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.bits = new AtomicLongArray((int) (bitCount / 64));
+        log.info("Client reference filter sized at {} KB with {} hash functions for {} references.", bitCount / 8 / 1024, hashCount, expectedInsertions);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        rebuild();
+    }
+
+    @Scheduled(cron = "${app.duplicate-filter.rebuild-cron:0 45 2 * * *}")
+    public synchronized void rebuild() {
+        long startTime = System.currentTimeMillis();
+        AtomicLongArray fresh = new AtomicLongArray((int) (bitCount / 64));
+        // Set before reading, so a reference saved while the tables are streamed reaches the new filter either way
+        rebuilding = fresh;
+        insertions.reset();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<String> tradeReferences = tradeDetailRepository.streamAllClientReferenceNumbers()) {
+                    tradeReferences.forEach(this::put);
+                }
+                try (Stream<String> exceptionReferences = tradeExceptionRepository.streamAllClientReferenceNumbers()) {
+                    exceptionReferences.forEach(this::put);
+                }
+            });
+            bits = fresh;
+            ready = true;
+        } finally {
+            rebuilding = null;
+        }
+        log.info("Client reference filter built with {} references in {} ms.", insertions.sum(), System.currentTimeMillis() - startTime);
+    }
+
+    public void put(String clientReferenceNumber) {
+        if (clientReferenceNumber == null) {
+            return;
+        }
+        long hash = hash(clientReferenceNumber);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        AtomicLongArray current = bits;
+        AtomicLongArray next = rebuilding;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            setBit(current, bit);
+            if (next != null) {
+                setBit(next, bit);
+            }
+        }
+        insertions.increment();
+        if (insertions.sum() == expectedInsertions + 1) {
+            log.warn("Client reference filter has exceeded its expected {} references; its false positive rate will rise. Increase app.duplicate-filter.expected-insertions.", expectedInsertions);
+        }
+    }
+
+    /**
+     * Returns {@code false} only if the reference has definitely never been stored.
+     */
+    public boolean mightContain(String clientReferenceNumber) {
+        if (!ready) {
+            return true;
+        }
+        long hash = hash(clientReferenceNumber);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        AtomicLongArray current = bits;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((current.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    private static void setBit(AtomicLongArray bits, long bit) {
+        int index = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long current;
+        do {
+            current = bits.get(index);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(index, current, current | mask));
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units of the value.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * MurmurHash3 finalizer, used to derive two well-distributed hashes for double hashing.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
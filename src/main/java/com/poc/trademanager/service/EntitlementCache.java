@@ -0,0 +1,46 @@
+package com.poc.trademanager.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.poc.trademanager.repository.UserFundEntitlementRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Fund numbers each user is entitled to, loaded with a single query per user and kept for a fixed TTL.
+ * Entries are invalidated when an entitlement is saved or deleted, and can be flushed through the cache admin
+ * endpoint after changes made directly in the database.
+ */
+@Component
+public class EntitlementCache {
+
+    private final LoadingCache<String, Set<String>> cache;
+
+    public EntitlementCache(UserFundEntitlementRepository userFundEntitlementRepository,
+                            @Value("${app.entitlement-cache.maximum-size:10000}") long maximumSize,
+                            @Value("${app.entitlement-cache.ttl:5m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build(username -> Set.copyOf(userFundEntitlementRepository.findFundNumbersByUsername(username)));
+    }
+
+    public Set<String> getFundNumbers(String username) {
+        return cache.get(username);
+    }
+
+    public void invalidate(String username) {
+        cache.invalidate(username);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
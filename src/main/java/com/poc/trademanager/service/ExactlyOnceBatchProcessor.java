@@ -0,0 +1,86 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.DatabaseStorageService;
+import com.poc.trademanager.entity.ConsumedOffset;
+import com.poc.trademanager.entity.JsonDoc;
+import com.poc.trademanager.repository.ConsumedOffsetRepository;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores and processes a consumer batch in one database transaction, for the exactly-once mode
+ * ({@code app.kafka.exactly-once}). The listener container runs each batch in a Kafka transaction that commits the
+ * consumed offsets; this database transaction commits just before it. For the window between the two commits, the
+ * last processed offset per partition is stored with the batch, and redelivered records at or below it are skipped
+ * without writing anything.
+ */
+@Service
+public class ExactlyOnceBatchProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(ExactlyOnceBatchProcessor.class);
+
+    private final DatabaseStorageService databaseStorageService;
+    private final MessageProcessingService messageProcessingService;
+    private final ConsumedOffsetRepository consumedOffsetRepository;
+    private final String consumerGroup;
+
+    public ExactlyOnceBatchProcessor(DatabaseStorageService databaseStorageService,
+                                     MessageProcessingService messageProcessingService,
+                                     ConsumedOffsetRepository consumedOffsetRepository,
+                                     @Value("${spring.kafka.consumer.group-id}") String consumerGroup) {
+        this.databaseStorageService = databaseStorageService;
+        this.messageProcessingService = messageProcessingService;
+        this.consumedOffsetRepository = consumedOffsetRepository;
+        this.consumerGroup = consumerGroup;
+    }
+
+    /**
+     * @return the number of records skipped as already processed
+     */
+    @Transactional
+    public int process(List<ConsumerRecord<String, String>> records) {
+        Map<String, Map<Integer, ConsumedOffset>> offsetsByTopic = new HashMap<>();
+        List<String> messages = new ArrayList<>(records.size());
+        int skipped = 0;
+        for (ConsumerRecord<String, String> record : records) {
+            ConsumedOffset consumed = offsetsByTopic
+                    .computeIfAbsent(record.topic(), this::loadOffsets)
+                    .computeIfAbsent(record.partition(), partition -> new ConsumedOffset(consumerGroup, record.topic(), partition, -1L));
+            if (record.offset() <= consumed.getLastOffset()) {
+                skipped++;
+                continue;
+            }
+            consumed.setLastOffset(record.offset());
+            messages.add(record.value());
+        }
+        if (skipped > 0) {
+            log.info("Skipped {} redelivered records that were already processed.", skipped);
+        }
+
+        if (!messages.isEmpty()) {
+            // Processed here rather than on the processing lanes: everything has to commit before the listener returns.
+            for (JsonDoc jsonDoc : databaseStorageService.saveRawMessages(messages)) {
+                messageProcessingService.processMessage(jsonDoc);
+            }
+            offsetsByTopic.values().forEach(offsets -> consumedOffsetRepository.saveAll(offsets.values()));
+        }
+        return skipped;
+    }
+
+    private Map<Integer, ConsumedOffset> loadOffsets(String topic) {
+        Map<Integer, ConsumedOffset> offsets = new HashMap<>();
+        for (ConsumedOffset consumed : consumedOffsetRepository.findByConsumerGroupAndTopic(consumerGroup, topic)) {
+            offsets.put(consumed.getPartition(), consumed);
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,71 @@
+package com.poc.trademanager.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.poc.trademanager.dto.FundReference;
+import com.poc.trademanager.repository.FundRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Read-through cache of the fund fields used to enrich trades. Unknown fund numbers are cached as well, for a
+ * much shorter time, so a burst of trades for a bad fund code costs one query rather than one per trade.
+ * {@link FundService} invalidates an entry whenever it writes that fund.
+ */
+@Component
+public class FundReferenceCache {
+
+    private final LoadingCache<String, Optional<FundReference>> cache;
+
+    public FundReferenceCache(FundRepository fundRepository,
+                              @Value("${app.fund-cache.maximum-size:10000}") long maximumSize,
+                              @Value("${app.fund-cache.ttl:10m}") Duration ttl,
+                              @Value("${app.fund-cache.negative-ttl:30s}") Duration negativeTtl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new FoundOrMissingExpiry(ttl.toNanos(), negativeTtl.toNanos()))
+                .build(fundRepository::findReferenceByFundNumber);
+    }
+
+    public Optional<FundReference> get(String fundNumber) {
+        if (fundNumber == null) {
+            return Optional.empty();
+        }
+        return cache.get(fundNumber);
+    }
+
+    public void invalidate(String fundNumber) {
+        if (fundNumber != null) {
+            cache.invalidate(fundNumber);
+        }
+    }
+
+    private static final class FoundOrMissingExpiry implements Expiry<String, Optional<FundReference>> {
+        private final long foundNanos;
+        private final long missingNanos;
+
+        private FoundOrMissingExpiry(long foundNanos, long missingNanos) {
+            this.foundNanos = foundNanos;
+            this.missingNanos = missingNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Optional<FundReference> value, long currentTime) {
+            return value.isPresent() ? foundNanos : missingNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Optional<FundReference> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Optional<FundReference> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -15,6 +15,9 @@ public class FundService {
     @Autowired
     private FundRepository fundRepository;
 
+    @Autowired
+    private FundReferenceCache fundReferenceCache;
+
     public List<Fund> getAllFunds() {
         return fundRepository.findAll();
     }
@@ -27,7 +30,10 @@ public class FundService {
         fund.setLastUpdatedDate(LocalDateTime.now());
         // In a real application, LastUpdatedBy would be set based on the logged-in user
         fund.setLastUpdatedBy("system");
-        return fundRepository.save(fund);
+        Fund saved = fundRepository.save(fund);
+        // Drops a cached "not found" for this fund number.
+        fundReferenceCache.invalidate(saved.getFundID());
+        return saved;
     }
 
     public Optional<Fund> updateFund(String id, Fund fundDetails) {
@@ -56,7 +62,9 @@ public class FundService {
                     fund.setStatus(fundDetails.getStatus());
                     fund.setLastUpdatedBy("system"); // Or the current user
                     fund.setLastUpdatedDate(LocalDateTime.now());
-                    return fundRepository.save(fund);
+                    Fund saved = fundRepository.save(fund);
+                    fundReferenceCache.invalidate(id);
+                    return saved;
                 });
     }
 
@@ -64,6 +72,7 @@ public class FundService {
         return fundRepository.findById(id)
                 .map(fund -> {
                     fundRepository.delete(fund);
+                    fundReferenceCache.invalidate(id);
                     return true;
                 })
                 .orElse(false);
@@ -0,0 +1,258 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.dto.JsonData;
+import com.poc.trademanager.dto.KeysetCursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The {@code json_docs} rows moved out of the database by {@link JsonDocArchiver}, as segment files in
+ * {@code app.archive.directory}. Reads look like the repository's: newest first on {@code (createdAt, id)}, seeking
+ * past a keyset position, so callers can merge them with the rows still in the table.
+ */
+@Component
+public class JsonDocArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(JsonDocArchive.class);
+
+    private static final Comparator<JsonData> NEWEST_FIRST = Comparator.comparing(JsonData::getCreatedAt)
+            .thenComparingLong(JsonData::getId).reversed();
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final Path directory;
+    private final List<JsonDocSegment> segments = new CopyOnWriteArrayList<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    public JsonDocArchive(@Value("${app.archive.directory:./data/archive}") String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        Files.createDirectories(directory);
+        List<JsonDocSegment> loaded = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(JsonDocSegment.SUFFIX + ".tmp")) {
+                    // Left by an archiver run that did not finish; its rows are still in the table.
+                    Files.delete(file);
+                } else if (name.endsWith(JsonDocSegment.SUFFIX)) {
+                    loaded.add(JsonDocSegment.open(file));
+                }
+            }
+        }
+        loaded.sort(Comparator.comparing(segment -> segment.getFile().getFileName().toString()));
+        segments.addAll(loaded);
+        if (!loaded.isEmpty()) {
+            log.info("Loaded {} archive segments with {} messages from {}.", loaded.size(),
+                    loaded.stream().mapToLong(JsonDocSegment::getRecordCount).sum(), directory);
+        }
+    }
+
+    /**
+     * Whether any archived message may fall in the inclusive range, either end of which may be null.
+     */
+    public boolean hasRecordsIn(LocalDateTime start, LocalDateTime end) {
+        return segments.stream().anyMatch(segment -> segment.overlaps(start, end));
+    }
+
+    /**
+     * Number of archived messages in the range, from each segment's record count and time index rather than by
+     * reading the messages.
+     */
+    public long count(LocalDateTime start, LocalDateTime end) {
+        return segments.stream()
+                .filter(segment -> segment.overlaps(start, end))
+                .mapToLong(segment -> segment.count(start, end))
+                .sum();
+    }
+
+    /**
+     * Number of archived messages in the range that are strictly after the {@code after} position and strictly
+     * newer than the {@code newerThan} position.
+     */
+    public long countBetween(KeysetCursor after, KeysetCursor newerThan, LocalDateTime start, LocalDateTime end) {
+        JsonData afterBound = toBound(after);
+        JsonData newerThanBound = toBound(newerThan);
+        return segments.stream()
+                .filter(segment -> segment.overlaps(start, end))
+                .mapToLong(segment -> segment.countBetween(afterBound, newerThanBound, start, end))
+                .sum();
+    }
+
+    /**
+     * Position of the {@code n}th archived message (from 1) in the range strictly after the {@code after} position,
+     * or empty if there are fewer. Found through the segments' time indexes without reading any payload.
+     */
+    public Optional<KeysetCursor> positionAt(KeysetCursor after, long n, LocalDateTime start, LocalDateTime end) {
+        JsonData afterBound = toBound(after);
+        List<JsonDocSegment> candidates = new ArrayList<>();
+        for (JsonDocSegment segment : segments) {
+            if (segment.overlaps(start, end)) {
+                candidates.add(segment);
+            }
+        }
+        candidates.sort(Comparator.comparing(JsonDocSegment::getNewest).reversed());
+        for (int i = 1; i < candidates.size(); i++) {
+            if (!candidates.get(i - 1).getOldest().isAfter(candidates.get(i).getNewest())) {
+                // Segments sharing a time span, e.g. from an interrupted archiver run, have to be merged record by
+                // record, though only their headers are read.
+                return mergedHeaders(candidates, after, start, end).skip(n - 1).findFirst().map(JsonDocArchive::toCursor);
+            }
+        }
+        long remaining = n;
+        for (JsonDocSegment segment : candidates) {
+            int available = segment.countBetween(afterBound, null, start, end);
+            if (remaining <= available) {
+                return Optional.of(toCursor(segment.headerAt(afterBound, remaining, start, end)));
+            }
+            remaining -= available;
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The archived messages strictly after the {@code (createdAt, id)} position and within the range, newest first.
+     */
+    public Stream<JsonData> streamAfter(LocalDateTime cursorCreatedAt, long cursorId, LocalDateTime start, LocalDateTime end) {
+        List<Iterator<JsonData>> iterators = new ArrayList<>();
+        for (JsonDocSegment segment : segments) {
+            if (segment.overlaps(start, end)) {
+                iterators.add(segment.iterator(cursorCreatedAt, cursorId, start, end));
+            }
+        }
+        return toStream(new MergingIterator(iterators));
+    }
+
+    private static Stream<JsonData> mergedHeaders(List<JsonDocSegment> segments, KeysetCursor after, LocalDateTime start, LocalDateTime end) {
+        List<Iterator<JsonData>> iterators = new ArrayList<>(segments.size());
+        for (JsonDocSegment segment : segments) {
+            iterators.add(segment.headerIterator(after.getCreatedAt(), after.getId(), start, end));
+        }
+        return toStream(new MergingIterator(iterators));
+    }
+
+    private static JsonData toBound(KeysetCursor position) {
+        return position != null ? new JsonData(position.getId(), null, null, position.getCreatedAt()) : null;
+    }
+
+    private static KeysetCursor toCursor(JsonData header) {
+        return new KeysetCursor(header.getCreatedAt(), header.getId());
+    }
+
+    public Optional<JsonData> findByMessageKey(String messageKey) {
+        for (JsonDocSegment segment : segments) {
+            Optional<JsonData> found = segment.findByMessageKey(messageKey);
+            if (found.isPresent()) {
+                return found;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Merges streams that are each ordered newest first into one, closing them all when it is closed.
+     */
+    @SafeVarargs
+    public static Stream<JsonData> newestFirst(Stream<JsonData>... streams) {
+        List<Iterator<JsonData>> iterators = new ArrayList<>(streams.length);
+        for (Stream<JsonData> stream : streams) {
+            iterators.add(stream.iterator());
+        }
+        Stream<JsonData> merged = toStream(new MergingIterator(iterators));
+        for (Stream<JsonData> stream : Arrays.asList(streams)) {
+            merged = merged.onClose(stream::close);
+        }
+        return merged;
+    }
+
+    JsonDocSegment.Writer newSegmentWriter(LocalDateTime runStartedAt) throws IOException {
+        String name = "json-docs-" + FILE_TIMESTAMP.format(runStartedAt) + "-"
+                + String.format("%04d", sequence.incrementAndGet()) + JsonDocSegment.SUFFIX;
+        return JsonDocSegment.writer(directory.resolve(name));
+    }
+
+    void add(JsonDocSegment segment) {
+        segments.add(segment);
+    }
+
+    /**
+     * The segment written last, which is the only one whose rows may not all have been deleted from the table.
+     */
+    Optional<JsonDocSegment> getLatestSegment() {
+        return segments.isEmpty() ? Optional.empty() : Optional.of(segments.get(segments.size() - 1));
+    }
+
+    private static Stream<JsonData> toStream(Iterator<JsonData> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * K-way merge of newest-first iterators, keeping each iterator's next element in a priority queue.
+     */
+    private static final class MergingIterator implements Iterator<JsonData> {
+        private final PriorityQueue<Head> heads = new PriorityQueue<>((a, b) -> NEWEST_FIRST.compare(a.next, b.next));
+
+        private MergingIterator(List<Iterator<JsonData>> iterators) {
+            for (Iterator<JsonData> iterator : iterators) {
+                if (iterator.hasNext()) {
+                    heads.add(new Head(iterator.next(), iterator));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public JsonData next() {
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            JsonData result = head.next;
+            if (head.iterator.hasNext()) {
+                heads.add(new Head(head.iterator.next(), head.iterator));
+            }
+            return result;
+        }
+    }
+
+    private static final class Head {
+        private final JsonData next;
+        private final Iterator<JsonData> iterator;
+
+        private Head(JsonData next, Iterator<JsonData> iterator) {
+            this.next = next;
+            this.iterator = iterator;
+        }
+    }
+}
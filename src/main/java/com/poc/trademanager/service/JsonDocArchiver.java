@@ -0,0 +1,150 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.entity.PayloadCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves {@code json_docs} rows older than {@code app.archive.after} out of the database into {@link JsonDocArchive}
+ * segments. Each segment holds up to {@code app.archive.max-segment-records} rows, newest first; it is written and
+ * synced under a temporary name, renamed into place, and only then are its rows deleted from the table, a chunk at
+ * a time. A crash before the rename leaves the rows in the table; a crash after it leaves rows in both places,
+ * which the startup check deletes from the table.
+ */
+@Component
+public class JsonDocArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(JsonDocArchiver.class);
+
+    private static final int CHUNK_SIZE = 500;
+    private static final int FETCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonDocArchive archive;
+    private final Duration archiveAfter;
+    private final int maxSegmentRecords;
+
+    public JsonDocArchiver(JdbcTemplate jdbcTemplate, JsonDocArchive archive,
+                           @Value("${app.archive.after:90d}") Duration archiveAfter,
+                           @Value("${app.archive.max-segment-records:500000}") int maxSegmentRecords) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.archive = archive;
+        this.archiveAfter = archiveAfter;
+        this.maxSegmentRecords = maxSegmentRecords;
+    }
+
+    /**
+     * Finishes the deletes of a run that stopped after writing its last segment. Rows are deleted in segment
+     * order, so if the segment's last row is gone, all of them are.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reconcile() {
+        archive.getLatestSegment().ifPresent(segment -> {
+            List<Long> ids = segment.ids();
+            if (ids.isEmpty() || !existsInTable(ids.get(ids.size() - 1))) {
+                return;
+            }
+            deleteFromTable(ids);
+            log.info("Deleted {} rows already archived in {} from json_docs.", ids.size(), segment.getFile());
+        });
+    }
+
+    @Scheduled(cron = "${app.archive.cron:0 0 3 * * *}")
+    public synchronized void archive() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        Timestamp cutoff = Timestamp.valueOf(startedAt.minus(archiveAfter));
+        long archived = 0;
+        int segments = 0;
+        try {
+            // Each segment continues, older, from where the previous one ended.
+            Timestamp lastCreatedAt = cutoff;
+            long lastId = Long.MAX_VALUE;
+            while (true) {
+                JsonDocSegment segment = writeSegment(startedAt, lastCreatedAt, lastId);
+                if (segment == null) {
+                    break;
+                }
+                archive.add(segment);
+                List<Long> ids = segment.ids();
+                deleteFromTable(ids);
+                archived += ids.size();
+                segments++;
+                lastCreatedAt = Timestamp.valueOf(segment.getOldest());
+                lastId = ids.get(ids.size() - 1);
+            }
+        } catch (IOException e) {
+            log.error("Archiving json_docs stopped after {} rows; the remaining rows stay in the table.", archived, e);
+            return;
+        }
+        if (archived > 0) {
+            log.info("Archived {} json_docs rows older than {} into {} segments in {} ms.", archived, cutoff, segments,
+                    Duration.between(startedAt, LocalDateTime.now()).toMillis());
+        }
+    }
+
+    /**
+     * Writes the rows strictly before the {@code (createdAt, id)} position, newest first, into a new segment, or
+     * returns null if there are none.
+     */
+    private JsonDocSegment writeSegment(LocalDateTime startedAt, Timestamp beforeCreatedAt, long beforeId) throws IOException {
+        try (JsonDocSegment.Writer writer = archive.newSegmentWriter(startedAt)) {
+            try {
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(
+                            "SELECT id, message_key, data, created_at FROM json_docs "
+                                    + "WHERE created_at < ? OR (created_at = ? AND id < ?) "
+                                    + "ORDER BY created_at DESC, id DESC LIMIT ?");
+                    statement.setFetchSize(FETCH_SIZE);
+                    statement.setTimestamp(1, beforeCreatedAt);
+                    statement.setTimestamp(2, beforeCreatedAt);
+                    statement.setLong(3, beforeId);
+                    statement.setInt(4, maxSegmentRecords);
+                    return statement;
+                }, rs -> {
+                    if (writer.getSizeInBytes() >= JsonDocSegment.MAX_SIZE_BYTES) {
+                        return;
+                    }
+                    try {
+                        writer.append(rs.getLong("id"), rs.getTimestamp("created_at").toLocalDateTime(),
+                                rs.getString("message_key"), PayloadCodec.toBinary(rs.getString("data")));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return writer.getRecordCount() > 0 ? writer.finish() : null;
+        }
+    }
+
+    private boolean existsInTable(long id) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM json_docs WHERE id = ?", Integer.class, id);
+        return count != null && count > 0;
+    }
+
+    private void deleteFromTable(List<Long> ids) {
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            List<Object[]> chunk = new ArrayList<>(CHUNK_SIZE);
+            for (Long id : ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size()))) {
+                chunk.add(new Object[]{id});
+            }
+            jdbcTemplate.batchUpdate("DELETE FROM json_docs WHERE id = ?", chunk);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.dto.JsonDocContent;
+import com.poc.trademanager.entity.JsonDoc;
+import com.poc.trademanager.repository.JsonDocRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Trigram index over {@code json_docs.data} for the content filter, covering the documents of the last
+ * {@code app.content-index.retention}. Documents saved by this instance are added as their transaction commits;
+ * a periodic catch-up reads anything else written since, e.g. by another instance. The index is rebuilt nightly to
+ * drop documents that have aged out, and snapshotted to a local directory so a restart only has to catch up.
+ * <p>
+ * The index is complete for documents created up to {@link ContentLookup#getIndexedUpTo()}; searches must still
+ * consider newer rows and check every candidate with the real filter.
+ */
+@Component
+public class JsonDocContentIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(JsonDocContentIndex.class);
+
+    private static final String SNAPSHOT_FILE = "json-docs.trigrams";
+
+    private final JsonDocRepository jsonDocRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Path directory;
+    private final Duration retention;
+    private final Duration commitMargin;
+    private final int maxCandidates;
+
+    private volatile Generation current;
+
+    public JsonDocContentIndex(JsonDocRepository jsonDocRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.content-index.directory:./data/content-index}") String directory,
+                               @Value("${app.content-index.retention:45d}") Duration retention,
+                               @Value("${app.content-index.commit-margin:2m}") Duration commitMargin,
+                               @Value("${app.content-index.max-candidates:10000}") int maxCandidates) {
+        this.jsonDocRepository = jsonDocRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.directory = Paths.get(directory);
+        this.retention = retention;
+        this.commitMargin = commitMargin;
+        this.maxCandidates = maxCandidates;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        Generation snapshot = readSnapshot();
+        if (snapshot != null && !snapshot.coveredFrom.isAfter(now().minus(retention)) && matchesDatabase(snapshot)) {
+            current = snapshot;
+            catchUp();
+            log.info("Content index loaded from {} and caught up to {}.", directory, current.indexedUpTo);
+        } else {
+            rebuild();
+        }
+    }
+
+    /**
+     * Returns the candidate ids for a content filter, or empty if the index cannot answer it: the search starts
+     * before the index's coverage, the filter is shorter than a trigram or it matches too many documents to be
+     * worth narrowing.
+     */
+    public Optional<ContentLookup> lookup(String contentFilter, LocalDateTime searchFrom) {
+        Generation generation = current;
+        if (generation == null || searchFrom == null || searchFrom.isBefore(generation.coveredFrom)) {
+            return Optional.empty();
+        }
+        long[] candidates = generation.index.candidates(contentFilter);
+        if (candidates == null || candidates.length > maxCandidates) {
+            return Optional.empty();
+        }
+        List<Long> ids = new ArrayList<>(candidates.length);
+        for (long id : candidates) {
+            ids.add(id);
+        }
+        return Optional.of(new ContentLookup(ids, generation.indexedUpTo));
+    }
+
+    /**
+     * Indexes newly saved documents once the saving transaction commits.
+     */
+    public void addAll(List<JsonDoc> jsonDocs) {
+        Runnable add = () -> {
+            Generation generation = current;
+            if (generation != null) {
+                jsonDocs.forEach(doc -> generation.add(doc.getId(), doc.getData(), doc.getCreatedAt()));
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add.run();
+                }
+            });
+        } else {
+            add.run();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.content-index.catch-up-interval-ms:30000}")
+    public synchronized void catchUp() {
+        Generation generation = current;
+        if (generation == null) {
+            return;
+        }
+        LocalDateTime startedAt = now();
+        long added = index(generation, generation.indexedUpTo);
+        generation.advanceTo(startedAt.minus(commitMargin));
+        if (added > 0) {
+            log.debug("Content index caught up with {} documents.", added);
+        }
+    }
+
+    @Scheduled(cron = "${app.content-index.rebuild-cron:0 30 2 * * *}")
+    public synchronized void rebuild() {
+        LocalDateTime startedAt = now();
+        LocalDateTime coveredFrom = startedAt.minus(retention);
+        // Not visible to searches until fully built, so it can claim its final watermark from the start; only
+        // documents after the watermark are then tracked for de-duplication against the next catch-up.
+        Generation generation = new Generation(new TrigramIndex(), coveredFrom, startedAt.minus(commitMargin));
+        long added = index(generation, coveredFrom);
+        current = generation;
+        // Documents saved while the rebuild was reading are picked up by the next catch-up.
+        log.info("Content index rebuilt with {} documents, {} trigrams and {} KB of postings in {} ms.", added,
+                generation.index.getTrigramCount(), generation.index.getSizeInBytes() / 1024,
+                Duration.between(startedAt, now()).toMillis());
+        writeSnapshot();
+    }
+
+    @PreDestroy
+    public synchronized void writeSnapshot() {
+        Generation generation = current;
+        if (generation == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                // Written before the postings, so the snapshot holds at least everything up to this point.
+                out.writeLong(generation.coveredFrom.toEpochSecond(ZoneOffset.UTC));
+                out.writeLong(generation.indexedUpTo.toEpochSecond(ZoneOffset.UTC));
+                out.writeLong(generation.newestId);
+                out.writeLong(generation.newestCreatedAt != null ? generation.newestCreatedAt.toEpochSecond(ZoneOffset.UTC) : 0L);
+                generation.index.writeTo(out);
+            }
+            Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not write content index snapshot to {}; the index will be rebuilt on the next start.", directory, e);
+        }
+    }
+
+    private Generation readSnapshot() {
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            LocalDateTime coveredFrom = LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC);
+            LocalDateTime indexedUpTo = LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC);
+            long newestId = in.readLong();
+            LocalDateTime newestCreatedAt = LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC);
+            Generation generation = new Generation(TrigramIndex.readFrom(in), coveredFrom, indexedUpTo);
+            generation.newestId = newestId;
+            generation.newestCreatedAt = newestCreatedAt;
+            return generation;
+        } catch (IOException e) {
+            log.warn("Could not read content index snapshot {}; rebuilding.", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Guards against a snapshot taken from a different or since restored database: the newest document it
+     * indexed must still exist with the same creation time.
+     */
+    private boolean matchesDatabase(Generation snapshot) {
+        if (snapshot.newestId == 0) {
+            return false;
+        }
+        return jsonDocRepository.findById(snapshot.newestId)
+                .map(doc -> doc.getCreatedAt().toEpochSecond(ZoneOffset.UTC) == snapshot.newestCreatedAt.toEpochSecond(ZoneOffset.UTC))
+                .orElse(false);
+    }
+
+    private long index(Generation generation, LocalDateTime after) {
+        Long added = readOnlyTransaction.execute(status -> {
+            try (Stream<JsonDocContent> docs = jsonDocRepository.streamContentCreatedAfter(after)) {
+                return docs.filter(doc -> generation.add(doc.getId(), doc.getData(), doc.getCreatedAt())).count();
+            }
+        });
+        return added != null ? added : 0;
+    }
+
+    private static LocalDateTime now() {
+        return LocalDateTime.now();
+    }
+
+    /**
+     * One index together with the window it covers. Documents newer than {@code indexedUpTo} are remembered so
+     * the next catch-up, which re-reads them, does not index them twice.
+     */
+    private static final class Generation {
+        private final TrigramIndex index;
+        private final LocalDateTime coveredFrom;
+        private final Map<Long, LocalDateTime> recentIds = new ConcurrentHashMap<>();
+        private volatile LocalDateTime indexedUpTo;
+        private volatile long newestId;
+        private volatile LocalDateTime newestCreatedAt;
+
+        private Generation(TrigramIndex index, LocalDateTime coveredFrom, LocalDateTime indexedUpTo) {
+            this.index = index;
+            this.coveredFrom = coveredFrom;
+            this.indexedUpTo = indexedUpTo;
+        }
+
+        private boolean add(Long id, String data, LocalDateTime createdAt) {
+            if (id == null || createdAt == null) {
+                return false;
+            }
+            if (createdAt.isAfter(indexedUpTo) && recentIds.putIfAbsent(id, createdAt) != null) {
+                return false;
+            }
+            index.add(id, data);
+            synchronized (this) {
+                if (id > newestId) {
+                    newestId = id;
+                    newestCreatedAt = createdAt;
+                }
+            }
+            return true;
+        }
+
+        private void advanceTo(LocalDateTime upTo) {
+            if (upTo.isAfter(indexedUpTo)) {
+                indexedUpTo = upTo;
+                recentIds.values().removeIf(createdAt -> !createdAt.isAfter(upTo));
+            }
+        }
+    }
+
+    public static final class ContentLookup {
+        private final List<Long> candidateIds;
+        private final LocalDateTime indexedUpTo;
+
+        private ContentLookup(List<Long> candidateIds, LocalDateTime indexedUpTo) {
+            this.candidateIds = candidateIds;
+            this.indexedUpTo = indexedUpTo;
+        }
+
+        public List<Long> getCandidateIds() {
+            return candidateIds;
+        }
+
+        public LocalDateTime getIndexedUpTo() {
+            return indexedUpTo;
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.dto.JsonData;
+import com.poc.trademanager.entity.PayloadCodec;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * An immutable file of archived {@code json_docs} rows, read through a read-only memory mapping. Payloads are kept
+ * in {@link PayloadCodec}'s binary form, so each is compressed on its own and can be read without touching its
+ * neighbours.
+ * <p>
+ * Layout, all offsets from the start of the file:
+ * <ul>
+ *     <li>records, newest first: id, createdAt seconds and nanos, message key, payload</li>
+ *     <li>key index: every message key, sorted, with its record's offset</li>
+ *     <li>time index: the position of every {@value #INDEX_INTERVAL}th record, read into memory on open</li>
+ *     <li>trailer: key index offset, time index offset, oldest createdAt, record count and a magic number</li>
+ * </ul>
+ * Every {@value #INDEX_INTERVAL}th key index entry is kept in memory as well, so both a time range and a message
+ * key are found with a binary search in memory and a short scan of the mapping.
+ */
+final class JsonDocSegment {
+
+    static final String SUFFIX = ".seg";
+
+    /**
+     * Keeps a segment well inside what a single mapping can address.
+     */
+    static final long MAX_SIZE_BYTES = 1L << 30;
+
+    private static final int MAGIC = 0x4A445347;
+    private static final int TRAILER_SIZE = 8 + 8 + 8 + 4 + 4 + 4;
+    private static final int INDEX_INTERVAL = 64;
+
+    private static final Comparator<JsonData> NEWEST_FIRST = Comparator.comparing(JsonData::getCreatedAt)
+            .thenComparingLong(JsonData::getId).reversed();
+
+    private final Path file;
+    private final MappedByteBuffer mapping;
+    private final int recordCount;
+    private final int keyIndexOffset;
+    private final int timeIndexOffset;
+    private final LocalDateTime oldest;
+    private final LocalDateTime[] sparseCreatedAt;
+    private final long[] sparseIds;
+    private final int[] sparseOffsets;
+    private final String[] sparseKeys;
+    private final int[] sparseKeyPositions;
+
+    private JsonDocSegment(Path file) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            this.mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer view = mapping.duplicate();
+        int trailer = view.limit() - TRAILER_SIZE;
+        if (trailer < 0 || view.getInt(trailer + 32) != MAGIC) {
+            throw new IOException("Not a complete json_docs segment: " + file);
+        }
+        this.keyIndexOffset = (int) view.getLong(trailer);
+        this.timeIndexOffset = (int) view.getLong(trailer + 8);
+        this.oldest = LocalDateTime.ofEpochSecond(view.getLong(trailer + 16), view.getInt(trailer + 24), ZoneOffset.UTC);
+        this.recordCount = view.getInt(trailer + 28);
+
+        int sparseCount = (recordCount + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+        this.sparseCreatedAt = new LocalDateTime[sparseCount];
+        this.sparseIds = new long[sparseCount];
+        this.sparseOffsets = new int[sparseCount];
+        view.position(timeIndexOffset);
+        for (int i = 0; i < sparseCount; i++) {
+            sparseCreatedAt[i] = LocalDateTime.ofEpochSecond(view.getLong(), view.getInt(), ZoneOffset.UTC);
+            sparseIds[i] = view.getLong();
+            sparseOffsets[i] = view.getInt();
+        }
+
+        this.sparseKeys = new String[sparseCount];
+        this.sparseKeyPositions = new int[sparseCount];
+        view.position(keyIndexOffset);
+        for (int i = 0; i < recordCount; i++) {
+            int position = view.position();
+            String key = readString(view);
+            view.getLong();
+            if (i % INDEX_INTERVAL == 0) {
+                sparseKeys[i / INDEX_INTERVAL] = key;
+                sparseKeyPositions[i / INDEX_INTERVAL] = position;
+            }
+        }
+    }
+
+    static JsonDocSegment open(Path file) throws IOException {
+        return new JsonDocSegment(file);
+    }
+
+    static Writer writer(Path file) throws IOException {
+        return new Writer(file);
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    int getRecordCount() {
+        return recordCount;
+    }
+
+    LocalDateTime getNewest() {
+        return sparseCreatedAt.length > 0 ? sparseCreatedAt[0] : null;
+    }
+
+    LocalDateTime getOldest() {
+        return oldest;
+    }
+
+    boolean overlaps(LocalDateTime start, LocalDateTime end) {
+        return recordCount > 0
+                && (end == null || !oldest.isAfter(end))
+                && (start == null || !getNewest().isBefore(start));
+    }
+
+    /**
+     * Iterates, newest first, over the records strictly after the {@code (createdAt, id)} position and within the
+     * inclusive date bounds, either of which may be null.
+     */
+    Iterator<JsonData> iterator(LocalDateTime cursorCreatedAt, long cursorId, LocalDateTime start, LocalDateTime end) {
+        return iterator(cursorCreatedAt, cursorId, start, end, true);
+    }
+
+    /**
+     * As {@link #iterator}, but returns only the headers, without reading the payloads.
+     */
+    Iterator<JsonData> headerIterator(LocalDateTime cursorCreatedAt, long cursorId, LocalDateTime start, LocalDateTime end) {
+        return iterator(cursorCreatedAt, cursorId, start, end, false);
+    }
+
+    private Iterator<JsonData> iterator(LocalDateTime cursorCreatedAt, long cursorId, LocalDateTime start, LocalDateTime end, boolean withPayload) {
+        JsonData bound = new JsonData(cursorId, null, null, cursorCreatedAt);
+        if (end != null && end.isBefore(cursorCreatedAt)) {
+            bound = new JsonData(Long.MAX_VALUE, null, null, end);
+        }
+        ByteBuffer view = mapping.duplicate();
+        view.position(seek(bound));
+        return new RecordIterator(view, cursorCreatedAt, cursorId, start, end, withPayload);
+    }
+
+    /**
+     * Number of records within the inclusive date bounds, either of which may be null. A segment wholly inside the
+     * range is answered from its trailer; otherwise each bound is found through the time index.
+     */
+    long count(LocalDateTime start, LocalDateTime end) {
+        if (recordCount == 0 || ((start == null || !oldest.isBefore(start)) && (end == null || !getNewest().isAfter(end)))) {
+            return recordCount;
+        }
+        return countBetween(null, null, start, end);
+    }
+
+    /**
+     * Number of records within the date bounds that are strictly after the {@code after} position, if given, and
+     * strictly newer than {@code newerThan}, if given.
+     */
+    int countBetween(JsonData after, JsonData newerThan, LocalDateTime start, LocalDateTime end) {
+        int from = firstIndex(after, end);
+        int to = start != null ? countNewerThan(new JsonData(Long.MIN_VALUE, null, null, start), false) : recordCount;
+        if (newerThan != null) {
+            to = Math.min(to, countNewerThan(newerThan, false));
+        }
+        return Math.max(0, to - from);
+    }
+
+    /**
+     * Header, without the payload, of the {@code n}th record (from 1) within the date bounds strictly after the
+     * {@code after} position, or null if there are fewer.
+     */
+    JsonData headerAt(JsonData after, long n, LocalDateTime start, LocalDateTime end) {
+        if (n < 1 || n > countBetween(after, null, start, end)) {
+            return null;
+        }
+        int index = firstIndex(after, end) + (int) n - 1;
+        ByteBuffer view = mapping.duplicate();
+        view.position(sparseOffsets[index / INDEX_INTERVAL]);
+        for (int i = 0; i < index % INDEX_INTERVAL; i++) {
+            readHeader(view);
+            skipPayload(view);
+        }
+        return readHeader(view);
+    }
+
+    /**
+     * Position, newest first, of the first record strictly after the {@code after} position and not newer than
+     * {@code end}.
+     */
+    private int firstIndex(JsonData after, LocalDateTime end) {
+        int index = after != null ? countNewerThan(after, true) : 0;
+        if (end != null) {
+            index = Math.max(index, countNewerThan(new JsonData(Long.MAX_VALUE, null, null, end), false));
+        }
+        return index;
+    }
+
+    /**
+     * Number of records that sort before the bound, newest first, or also equal to it if {@code inclusive}. The
+     * time index narrows this down to one run of {@value #INDEX_INTERVAL} records, whose headers are then read.
+     */
+    private int countNewerThan(JsonData bound, boolean inclusive) {
+        int low = 0;
+        int high = sparseOffsets.length - 1;
+        int block = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (isBefore(new JsonData(sparseIds[mid], null, null, sparseCreatedAt[mid]), bound, inclusive)) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (block < 0) {
+            return 0;
+        }
+        int index = block * INDEX_INTERVAL;
+        ByteBuffer view = mapping.duplicate();
+        view.position(sparseOffsets[block]);
+        while (index < recordCount && index < (block + 1) * INDEX_INTERVAL) {
+            if (!isBefore(readHeader(view), bound, inclusive)) {
+                break;
+            }
+            skipPayload(view);
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isBefore(JsonData record, JsonData bound, boolean inclusive) {
+        int comparison = NEWEST_FIRST.compare(record, bound);
+        return inclusive ? comparison <= 0 : comparison < 0;
+    }
+
+    Optional<JsonData> findByMessageKey(String messageKey) {
+        int low = 0;
+        int high = sparseKeys.length - 1;
+        int from = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (sparseKeys[mid].compareTo(messageKey) <= 0) {
+                from = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (from < 0) {
+            return Optional.empty();
+        }
+        ByteBuffer view = mapping.duplicate();
+        view.position(sparseKeyPositions[from]);
+        for (int i = 0; i < INDEX_INTERVAL && view.position() < timeIndexOffset; i++) {
+            String key = readString(view);
+            int offset = (int) view.getLong();
+            int comparison = key.compareTo(messageKey);
+            if (comparison == 0) {
+                view.position(offset);
+                return Optional.of(readRecord(view));
+            }
+            if (comparison > 0) {
+                break;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Ids of every record, for reconciling the segment with the table it was archived from.
+     */
+    List<Long> ids() {
+        List<Long> ids = new ArrayList<>(recordCount);
+        ByteBuffer view = mapping.duplicate();
+        view.position(0);
+        while (view.position() < keyIndexOffset) {
+            ids.add(readHeader(view).getId());
+            skipPayload(view);
+        }
+        return ids;
+    }
+
+    /**
+     * Offset of the newest sampled record that is not older than the bound; scanning from there reaches every
+     * record after it.
+     */
+    private int seek(JsonData bound) {
+        int low = 0;
+        int high = sparseOffsets.length - 1;
+        int found = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            JsonData sample = new JsonData(sparseIds[mid], null, null, sparseCreatedAt[mid]);
+            if (NEWEST_FIRST.compare(sample, bound) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return sparseOffsets.length > 0 ? sparseOffsets[found] : 0;
+    }
+
+    private static JsonData readHeader(ByteBuffer view) {
+        long id = view.getLong();
+        LocalDateTime createdAt = LocalDateTime.ofEpochSecond(view.getLong(), view.getInt(), ZoneOffset.UTC);
+        String messageKey = readString(view);
+        return new JsonData(id, messageKey, null, createdAt);
+    }
+
+    private static JsonData readRecord(ByteBuffer view) {
+        JsonData header = readHeader(view);
+        byte[] payload = new byte[view.getInt()];
+        view.get(payload);
+        return new JsonData(header.getId(), header.getMessageKey(), PayloadCodec.fromBinary(payload), header.getCreatedAt());
+    }
+
+    private static void skipPayload(ByteBuffer view) {
+        int length = view.getInt();
+        view.position(view.position() + length);
+    }
+
+    private static String readString(ByteBuffer view) {
+        byte[] bytes = new byte[view.getShort() & 0xFFFF];
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private final class RecordIterator implements Iterator<JsonData> {
+        private final ByteBuffer view;
+        private final LocalDateTime cursorCreatedAt;
+        private final long cursorId;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final boolean withPayload;
+        private JsonData next;
+        private boolean done;
+
+        private RecordIterator(ByteBuffer view, LocalDateTime cursorCreatedAt, long cursorId, LocalDateTime start, LocalDateTime end, boolean withPayload) {
+            this.view = view;
+            this.cursorCreatedAt = cursorCreatedAt;
+            this.cursorId = cursorId;
+            this.start = start;
+            this.end = end;
+            this.withPayload = withPayload;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !done && view.position() < keyIndexOffset) {
+                int offset = view.position();
+                JsonData header = readHeader(view);
+                if (start != null && header.getCreatedAt().isBefore(start)) {
+                    done = true;
+                } else if ((end != null && header.getCreatedAt().isAfter(end)) || !isAfterCursor(header)) {
+                    skipPayload(view);
+                } else if (withPayload) {
+                    view.position(offset);
+                    next = readRecord(view);
+                } else {
+                    skipPayload(view);
+                    next = header;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public JsonData next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            JsonData result = next;
+            next = null;
+            return result;
+        }
+
+        private boolean isAfterCursor(JsonData header) {
+            int comparison = header.getCreatedAt().compareTo(cursorCreatedAt);
+            return comparison < 0 || (comparison == 0 && header.getId() < cursorId);
+        }
+    }
+
+    /**
+     * Writes a segment from records supplied newest first. The file only appears under its final name once it is
+     * complete and synced, so a crash leaves at most a temporary file behind.
+     */
+    static final class Writer implements Closeable {
+        private final Path file;
+        private final Path temp;
+        private final FileOutputStream fileOut;
+        private final DataOutputStream out;
+        private final List<KeyEntry> keys = new ArrayList<>();
+        private int recordCount;
+        private final ByteArrayBuilder timeIndex = new ByteArrayBuilder();
+        private LocalDateTime oldest;
+        private int position;
+        private boolean finished;
+
+        private Writer(Path file) throws IOException {
+            this.file = file;
+            this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+            this.fileOut = new FileOutputStream(temp.toFile());
+            this.out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+        }
+
+        void append(long id, LocalDateTime createdAt, String messageKey, byte[] payload) throws IOException {
+            if (recordCount % INDEX_INTERVAL == 0) {
+                timeIndex.putLong(createdAt.toEpochSecond(ZoneOffset.UTC));
+                timeIndex.putInt(createdAt.getNano());
+                timeIndex.putLong(id);
+                timeIndex.putInt(position);
+            }
+            keys.add(new KeyEntry(messageKey, position));
+            recordCount++;
+            oldest = createdAt;
+            byte[] key = messageKey.getBytes(StandardCharsets.UTF_8);
+            out.writeLong(id);
+            out.writeLong(createdAt.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(createdAt.getNano());
+            out.writeShort(key.length);
+            out.write(key);
+            out.writeInt(payload.length);
+            out.write(payload);
+            position += 8 + 8 + 4 + 2 + key.length + 4 + payload.length;
+        }
+
+        int getRecordCount() {
+            return recordCount;
+        }
+
+        long getSizeInBytes() {
+            return position;
+        }
+
+        JsonDocSegment finish() throws IOException {
+            int keyIndexOffset = position;
+            keys.sort(Comparator.comparing(entry -> entry.key));
+            for (KeyEntry entry : keys) {
+                byte[] key = entry.key.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(key.length);
+                out.write(key);
+                out.writeLong(entry.offset);
+                position += 2 + key.length + 8;
+            }
+            int timeIndexOffset = position;
+            out.write(timeIndex.bytes, 0, timeIndex.length);
+            out.writeLong(keyIndexOffset);
+            out.writeLong(timeIndexOffset);
+            out.writeLong(oldest.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(oldest.getNano());
+            out.writeInt(recordCount);
+            out.writeInt(MAGIC);
+            out.flush();
+            fileOut.getFD().sync();
+            out.close();
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+            return open(file);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                out.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private static final class KeyEntry {
+        private final String key;
+        private final int offset;
+
+        private KeyEntry(String key, int offset) {
+            this.key = key;
+            this.offset = offset;
+        }
+    }
+
+    private static final class ByteArrayBuilder {
+        private byte[] bytes = new byte[256];
+        private int length;
+
+        void putLong(long value) {
+            ensureCapacity(8);
+            ByteBuffer.wrap(bytes, length, 8).putLong(value);
+            length += 8;
+        }
+
+        void putInt(int value) {
+            ensureCapacity(4);
+            ByteBuffer.wrap(bytes, length, 4).putInt(value);
+            length += 4;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.poc.trademanager.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Pulls single top-level fields out of raw trade messages with the streaming parser, reading only as far as the
+ * field instead of binding the whole message.
+ */
+@Component
+public class JsonFieldExtractor {
+
+    private static final Logger log = LoggerFactory.getLogger(JsonFieldExtractor.class);
+
+    private final JsonFactory jsonFactory;
+
+    public JsonFieldExtractor(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Returns the value of a top-level string field, or {@code null} if the message is not a valid JSON object,
+     * does not have the field or has a non-string value for it.
+     */
+    public String extractText(String jsonMessage, String fieldName) {
+        if (jsonMessage == null) {
+            return null;
+        }
+        try (JsonParser parser = jsonFactory.createParser(jsonMessage)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String currentName = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (fieldName.equals(currentName)) {
+                    return value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            log.debug("Could not read field {} from message.", fieldName, e);
+        }
+        return null;
+    }
+}
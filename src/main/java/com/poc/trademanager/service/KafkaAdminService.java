@@ -1,74 +1,410 @@
 package com.poc.trademanager.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.poc.trademanager.dto.CursorPage;
 import com.poc.trademanager.dto.KafkaMessageDto;
+import com.poc.trademanager.dto.TopicPosition;
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
-import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
 import org.apache.kafka.common.PartitionInfo;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+/**
+ * Reads topics for support, a page at a time, or searches them. Reads use consumers from small pools, each
+ * assigned the one partition it reads and never joining a consumer group or committing offsets. Searches have a
+ * pool of their own, so a long search cannot take the consumers that browsing needs.
+ */
 @Service
 public class KafkaAdminService {
 
     private static final Logger log = LoggerFactory.getLogger(KafkaAdminService.class);
 
+    private static final String BROWSER_GROUP_ID = "kafka-browser";
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(200);
+    // Writing to a client that has gone away is the only way to find out that it has.
+    private static final long HEARTBEAT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
     private final ConsumerFactory<String, String> consumerFactory;
+    private final ObjectMapper objectMapper;
+    private final Duration readTimeout;
+    private final Duration searchTimeout;
+    private final ConsumerPool browsePool;
+    private final ConsumerPool searchPool;
+    private final ExecutorService searchExecutor;
 
-    public KafkaAdminService(ConsumerFactory<String, String> consumerFactory) {
+    public KafkaAdminService(ConsumerFactory<String, String> consumerFactory, ObjectMapper objectMapper,
+                             @Value("${app.kafka.browse.pool-size:4}") int poolSize,
+                             @Value("${app.kafka.browse.read-timeout:5s}") Duration readTimeout,
+                             @Value("${app.kafka.search.pool-size:2}") int searchPoolSize,
+                             @Value("${app.kafka.search.timeout:5m}") Duration searchTimeout) {
         this.consumerFactory = consumerFactory;
+        this.objectMapper = objectMapper;
+        this.readTimeout = readTimeout;
+        this.searchTimeout = searchTimeout;
+        this.browsePool = new ConsumerPool("browse", poolSize);
+        this.searchPool = new ConsumerPool("search", searchPoolSize);
+        // Sized to the search pool: more threads would only wait for a consumer.
+        this.searchExecutor = Executors.newFixedThreadPool(searchPoolSize, new CustomizableThreadFactory("KafkaSearch-"));
     }
 
-    public List<KafkaMessageDto> browseMessages(String topic) {
-        Map<String, Object> consumerProps = consumerFactory.getConfigurationProperties();
-        Properties props = new Properties();
-        props.putAll(consumerProps);
-        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
-        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, "kafka-browser-" + System.currentTimeMillis());
+    /**
+     * Reads messages from one partition in offset order, from {@code cursor} if given, else from {@code offset}, else
+     * from the first message at or after {@code timestamp}, else from the beginning. The page ends after
+     * {@code maxRecords} messages, once the keys and values read add up to {@code maxBytes} (always including at
+     * least one message), or at the end of the partition, in which case {@code nextCursor} is {@code null}.
+     *
+     * @throws IllegalArgumentException if the topic or partition does not exist
+     * @throws IllegalStateException    if every pooled consumer stays busy for the read timeout
+     */
+    public CursorPage<KafkaMessageDto> browseMessages(String topic, int partition, Long offset, Instant timestamp,
+                                                      String cursor, int maxRecords, int maxBytes) {
+        if (cursor != null) {
+            TopicPosition position = TopicPosition.decode(cursor);
+            partition = position.getPartition();
+            offset = position.getOffset();
+        }
+        Consumer<String, String> consumer = browsePool.borrow(readTimeout);
+        boolean healthy = false;
+        try {
+            TopicPartition topicPartition = partitionOf(consumer, topic, partition);
+            Set<TopicPartition> partitions = Collections.singleton(topicPartition);
+            consumer.assign(partitions);
+            long beginning = consumer.beginningOffsets(partitions).get(topicPartition);
+            long end = consumer.endOffsets(partitions).get(topicPartition);
 
-        List<KafkaMessageDto> messages = new ArrayList<>();
-        try (Consumer<String, String> consumer = consumerFactory.createConsumer(props.getProperty(ConsumerConfig.GROUP_ID_CONFIG), null, null, props)) {
-            List<PartitionInfo> partitionInfos = consumer.partitionsFor(topic);
-            if (partitionInfos != null) {
-                List<TopicPartition> topicPartitions = partitionInfos.stream()
-                        .map(info -> new TopicPartition(topic, info.partition()))
-                        .collect(Collectors.toList());
-                consumer.assign(topicPartitions);
-                consumer.seekToBeginning(topicPartitions);
-
-                boolean messagesAvailable = true;
-                while (messagesAvailable) {
-                    ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(1000));
-                    if (records.isEmpty()) {
-                        messagesAvailable = false;
-                    } else {
-                        records.forEach(record -> messages.add(new KafkaMessageDto(
-                                record.timestamp(),
-                                record.key(),
-                                record.value()
-                        )));
+            long next;
+            if (offset != null) {
+                next = Math.max(beginning, Math.min(offset, end));
+            } else if (timestamp != null) {
+                OffsetAndTimestamp found = consumer.offsetsForTimes(Collections.singletonMap(topicPartition, timestamp.toEpochMilli())).get(topicPartition);
+                next = found == null ? end : found.offset();
+            } else {
+                next = beginning;
+            }
+            consumer.seek(topicPartition, next);
+
+            List<KafkaMessageDto> messages = new ArrayList<>();
+            long bytes = 0;
+            boolean full = false;
+            long deadline = System.nanoTime() + readTimeout.toNanos();
+            while (!full && next < end && System.nanoTime() < deadline) {
+                List<ConsumerRecord<String, String>> records = consumer.poll(POLL_INTERVAL).records(topicPartition);
+                for (ConsumerRecord<String, String> record : records) {
+                    long size = Math.max(record.serializedKeySize(), 0) + Math.max(record.serializedValueSize(), 0);
+                    if (!messages.isEmpty() && bytes + size > maxBytes) {
+                        full = true;
+                        break;
+                    }
+                    messages.add(new KafkaMessageDto(record.partition(), record.offset(), record.timestamp(), record.key(), record.value()));
+                    bytes += size;
+                    next = record.offset() + 1;
+                    if (messages.size() >= maxRecords) {
+                        full = true;
+                        break;
                     }
                 }
+                if (!full) {
+                    // Also moves past offsets with no message, such as transaction markers.
+                    next = Math.max(next, consumer.position(topicPartition));
+                }
             }
+            healthy = true;
+            return new CursorPage<>(messages, next < end ? new TopicPosition(partition, next).encode() : null);
+        } catch (IllegalArgumentException e) {
+            healthy = true;
+            throw e;
         } catch (Exception e) {
-            log.error("Error browsing messages for topic {}", topic, e);
+            log.error("Error browsing messages for topic {} partition {}", topic, partition, e);
             throw new RuntimeException("Error browsing messages from Kafka", e);
+        } finally {
+            browsePool.giveBack(consumer, healthy);
+        }
+    }
+
+    /**
+     * Searches every partition of the topic in parallel for messages written in {@code [from, to)} that match all
+     * of the given criteria: the key, a header with the given name (and value, if given), and a substring of the
+     * value. Matches are written to the returned body as NDJSON as soon as they are found, so they are not in
+     * offset order, and an empty line is written after each second without a match to find out whether the
+     * client is still there. The search stops once {@code limit} matches have been written, every partition has
+     * been scanned up to {@code to}, the search timeout has passed, or the client has gone away. Partitions are
+     * scanned by the search consumer pool; with more partitions than consumers, or other searches running, the
+     * rest wait for a consumer.
+     *
+     * @param to the end of the window, or {@code null} for the end of each partition
+     * @throws IllegalArgumentException if the topic does not exist
+     */
+    public StreamingResponseBody searchMessages(String topic, Instant from, Instant to, String key, String headerName,
+                                                String headerValue, String valueContains, int limit) {
+        List<TopicPartition> partitions = partitionsOf(topic);
+        MessageMatcher matcher = new MessageMatcher(from, to, key, headerName, headerValue, valueContains);
+        return out -> {
+            long startTime = System.currentTimeMillis();
+            long deadline = System.nanoTime() + searchTimeout.toNanos();
+            BlockingQueue<KafkaMessageDto> hits = new LinkedBlockingQueue<>();
+            AtomicInteger found = new AtomicInteger();
+            AtomicBoolean stop = new AtomicBoolean();
+            List<Future<?>> scans = partitions.stream()
+                    .map(partition -> searchExecutor.submit(() -> scan(partition, matcher, limit, deadline, found, hits, stop)))
+                    .collect(Collectors.toList());
+            int written = 0;
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                // The servlet container owns the response stream.
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                long lastWrite = System.nanoTime();
+                while (written < limit && System.nanoTime() < deadline) {
+                    KafkaMessageDto hit = hits.poll(POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+                    if (hit != null) {
+                        objectMapper.writeValue(generator, hit);
+                        generator.writeRaw('\n');
+                        generator.flush();
+                        written++;
+                        lastWrite = System.nanoTime();
+                    } else if (scans.stream().allMatch(Future::isDone) && hits.isEmpty()) {
+                        break;
+                    } else if (System.nanoTime() - lastWrite >= HEARTBEAT_INTERVAL_NANOS) {
+                        // Fails once the client has gone away, which stops the scans.
+                        generator.writeRaw('\n');
+                        generator.flush();
+                        lastWrite = System.nanoTime();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                stop.set(true);
+            }
+            log.info("Search of {} found {} messages in {} ms.", topic, written, System.currentTimeMillis() - startTime);
+        };
+    }
+
+    private void scan(TopicPartition topicPartition, MessageMatcher matcher, int limit, long deadline,
+                      AtomicInteger found, BlockingQueue<KafkaMessageDto> hits, AtomicBoolean stop) {
+        if (stop.get()) {
+            return;
+        }
+        Consumer<String, String> consumer;
+        try {
+            consumer = searchPool.borrow(Duration.ofNanos(Math.max(deadline - System.nanoTime(), 0)));
+        } catch (IllegalStateException e) {
+            log.warn("Search of {} skipped: {}", topicPartition, e.getMessage());
+            return;
+        }
+        boolean healthy = false;
+        try {
+            Set<TopicPartition> partitions = Collections.singleton(topicPartition);
+            consumer.assign(partitions);
+            OffsetAndTimestamp start = consumer.offsetsForTimes(Collections.singletonMap(topicPartition, matcher.from.toEpochMilli())).get(topicPartition);
+            long end = consumer.endOffsets(partitions).get(topicPartition);
+            if (matcher.to != null) {
+                OffsetAndTimestamp afterWindow = consumer.offsetsForTimes(Collections.singletonMap(topicPartition, matcher.to.toEpochMilli())).get(topicPartition);
+                if (afterWindow != null) {
+                    end = afterWindow.offset();
+                }
+            }
+            if (start != null && start.offset() < end) {
+                consumer.seek(topicPartition, start.offset());
+                long position = start.offset();
+                while (position < end && !stop.get() && System.nanoTime() < deadline) {
+                    for (ConsumerRecord<String, String> record : consumer.poll(POLL_INTERVAL).records(topicPartition)) {
+                        if (record.offset() >= end) {
+                            break;
+                        }
+                        if (matcher.matches(record)) {
+                            if (found.incrementAndGet() > limit) {
+                                stop.set(true);
+                                break;
+                            }
+                            hits.add(new KafkaMessageDto(record.partition(), record.offset(), record.timestamp(), record.key(), record.value()));
+                        }
+                    }
+                    position = consumer.position(topicPartition);
+                }
+            }
+            healthy = true;
+        } catch (Exception e) {
+            log.error("Error searching {}", topicPartition, e);
+        } finally {
+            searchPool.giveBack(consumer, healthy);
+        }
+    }
+
+    /**
+     * Stops the searches in progress and closes the idle consumers.
+     */
+    @PreDestroy
+    public void shutdown() {
+        searchExecutor.shutdownNow();
+        browsePool.close();
+        searchPool.close();
+    }
+
+    private List<TopicPartition> partitionsOf(String topic) {
+        Consumer<String, String> consumer = browsePool.borrow(readTimeout);
+        boolean healthy = false;
+        try {
+            List<PartitionInfo> partitionInfos = consumer.partitionsFor(topic);
+            healthy = true;
+            if (partitionInfos == null || partitionInfos.isEmpty()) {
+                throw new IllegalArgumentException("Topic " + topic + " does not exist");
+            }
+            return partitionInfos.stream()
+                    .map(info -> new TopicPartition(topic, info.partition()))
+                    .collect(Collectors.toList());
+        } finally {
+            browsePool.giveBack(consumer, healthy);
+        }
+    }
+
+    private static TopicPartition partitionOf(Consumer<String, String> consumer, String topic, int partition) {
+        List<PartitionInfo> partitionInfos = consumer.partitionsFor(topic);
+        if (partitionInfos == null || partitionInfos.isEmpty()) {
+            throw new IllegalArgumentException("Topic " + topic + " does not exist");
+        }
+        if (partitionInfos.stream().noneMatch(info -> info.partition() == partition)) {
+            throw new IllegalArgumentException("Topic " + topic + " has no partition " + partition);
+        }
+        return new TopicPartition(topic, partition);
+    }
+
+    /**
+     * Consumers created on demand up to {@code size} and reused; a borrower waits for one to be given back when all
+     * are in use.
+     */
+    private final class ConsumerPool {
+        private final String name;
+        private final int size;
+        private final BlockingQueue<Consumer<String, String>> idleConsumers = new LinkedBlockingQueue<>();
+        private final AtomicInteger consumerCount = new AtomicInteger();
+
+        private ConsumerPool(String name, int size) {
+            this.name = name;
+            this.size = size;
+        }
+
+        private Consumer<String, String> borrow(Duration wait) {
+            Consumer<String, String> consumer = idleConsumers.poll();
+            if (consumer != null) {
+                return consumer;
+            }
+            if (consumerCount.incrementAndGet() <= size) {
+                try {
+                    return createConsumer(name + "-" + consumerCount.get());
+                } catch (RuntimeException e) {
+                    consumerCount.decrementAndGet();
+                    throw e;
+                }
+            }
+            consumerCount.decrementAndGet();
+            try {
+                consumer = idleConsumers.poll(wait.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (consumer == null) {
+                throw new IllegalStateException("All " + size + " Kafka " + name + " consumers are busy");
+            }
+            return consumer;
+        }
+
+        /**
+         * A consumer that failed may be left in any state, so it is closed rather than reused.
+         */
+        private void giveBack(Consumer<String, String> consumer, boolean healthy) {
+            if (healthy) {
+                consumer.unsubscribe();
+                idleConsumers.offer(consumer);
+            } else {
+                consumerCount.decrementAndGet();
+                consumer.close();
+            }
         }
 
-        messages.sort(Comparator.comparingLong(KafkaMessageDto::getTimestamp));
-        return messages;
+        private void close() {
+            Consumer<String, String> consumer;
+            while ((consumer = idleConsumers.poll()) != null) {
+                consumer.close();
+            }
+        }
+    }
+
+    private Consumer<String, String> createConsumer(String clientIdSuffix) {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        // Looking up a mistyped topic must not create it.
+        props.put(ConsumerConfig.ALLOW_AUTO_CREATE_TOPICS_CONFIG, "false");
+        // Partitions are assigned, not subscribed, so the group is never joined; it is only needed by the config.
+        return consumerFactory.createConsumer(BROWSER_GROUP_ID, null, "-" + clientIdSuffix, props);
+    }
+
+    /**
+     * The criteria of a search; those not given match every message.
+     */
+    static final class MessageMatcher {
+        private final Instant from;
+        private final Instant to;
+        private final String key;
+        private final String headerName;
+        private final byte[] headerValue;
+        private final String valueContains;
+
+        MessageMatcher(Instant from, Instant to, String key, String headerName, String headerValue, String valueContains) {
+            this.from = from;
+            this.to = to;
+            this.key = key;
+            this.headerName = headerName;
+            this.headerValue = headerValue == null ? null : headerValue.getBytes(StandardCharsets.UTF_8);
+            this.valueContains = valueContains;
+        }
+
+        boolean matches(ConsumerRecord<String, String> record) {
+            // Timestamps set by producers are not in offset order, so the offsets found for the window are not exact.
+            if (record.timestamp() < from.toEpochMilli() || (to != null && record.timestamp() >= to.toEpochMilli())) {
+                return false;
+            }
+            if (key != null && !key.equals(record.key())) {
+                return false;
+            }
+            if (headerName != null) {
+                Header header = record.headers().lastHeader(headerName);
+                if (header == null || (headerValue != null && !Arrays.equals(headerValue, header.value()))) {
+                    return false;
+                }
+            }
+            return valueContains == null || (record.value() != null && record.value().contains(valueContains));
+        }
     }
 }
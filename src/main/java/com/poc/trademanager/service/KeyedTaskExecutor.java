@@ -0,0 +1,123 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.dto.LaneStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks on a fixed number of single-threaded lanes, choosing the lane from a key. Tasks with the same
+ * key always land on the same lane and therefore run one at a time in submission order, while different
+ * keys spread across all lanes. Tasks without a key are distributed round-robin.
+ * <p>
+ * A full lane blocks the submitter instead of rejecting or running the task on the caller's thread, since
+ * either would break the per-key ordering.
+ */
+public class KeyedTaskExecutor {
+
+    private static final RejectedExecutionHandler BLOCK_WHEN_FULL = (task, lane) -> {
+        if (lane.isShutdown()) {
+            throw new RejectedExecutionException("Lane has been shut down");
+        }
+        try {
+            lane.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for lane capacity", e);
+        }
+    };
+
+    private final ThreadPoolExecutor[] lanes;
+    private final int laneQueueCapacity;
+    private final AtomicInteger nextUnkeyedLane = new AtomicInteger();
+
+    public KeyedTaskExecutor(int laneCount, int laneQueueCapacity, String threadNamePrefix) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("At least one lane is required");
+        }
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        this.laneQueueCapacity = laneQueueCapacity;
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(laneQueueCapacity),
+                    new CustomizableThreadFactory(threadNamePrefix + i + "-"),
+                    BLOCK_WHEN_FULL);
+        }
+    }
+
+    public CompletableFuture<Void> execute(String key, Runnable task) {
+        return CompletableFuture.runAsync(task, lanes[laneFor(key)]);
+    }
+
+    int laneFor(String key) {
+        if (key == null) {
+            return Math.floorMod(nextUnkeyedLane.getAndIncrement(), lanes.length);
+        }
+        int hash = key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    public int getLaneQueueCapacity() {
+        return laneQueueCapacity;
+    }
+
+    /**
+     * Number of tasks waiting across all lanes, not counting the ones currently running.
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            depth += lane.getQueue().size();
+        }
+        return depth;
+    }
+
+    /**
+     * Number of tasks waiting on the fullest lane. A submission blocks once this reaches the lane queue capacity,
+     * however empty the other lanes are.
+     */
+    public int getMaxLaneDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            depth = Math.max(depth, lane.getQueue().size());
+        }
+        return depth;
+    }
+
+    public List<LaneStatus> getLaneStatuses() {
+        List<LaneStatus> statuses = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            ThreadPoolExecutor lane = lanes[i];
+            statuses.add(new LaneStatus(i, lane.getQueue().size(), lane.getActiveCount() > 0, lane.getCompletedTaskCount()));
+        }
+        return statuses;
+    }
+
+    /**
+     * Stops accepting tasks and waits for the queued ones to finish.
+     */
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        try {
+            for (ThreadPoolExecutor lane : lanes) {
+                lane.awaitTermination(30, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
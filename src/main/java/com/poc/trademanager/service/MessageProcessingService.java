@@ -1,29 +1,26 @@
 package com.poc.trademanager.service;
 
 import com.poc.trademanager.dto.ErrorType;
+import com.poc.trademanager.dto.FundReference;
+import com.poc.trademanager.dto.ProcessingOutcome;
 import com.poc.trademanager.dto.TradeDetailsDto;
-import com.poc.trademanager.entity.Fund;
 import com.poc.trademanager.entity.JsonDoc;
 import com.poc.trademanager.entity.TradeDetail;
 import com.poc.trademanager.entity.TradeException;
-import com.poc.trademanager.repository.FundRepository;
+import com.poc.trademanager.entity.TradeOutboxMessage;
 import com.poc.trademanager.repository.TradeDetailRepository;
 import com.poc.trademanager.repository.TradeExceptionRepository;
+import com.poc.trademanager.repository.TradeOutboxRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.time.LocalDate;
-import java.time.ZoneOffset;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,53 +29,68 @@ public class MessageProcessingService {
 
     private static final Logger log = LoggerFactory.getLogger(MessageProcessingService.class);
 
-    private final ObjectMapper objectMapper;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    // Bound to the type once, rather than looking up the (de)serializer on every message.
+    private final ObjectReader tradeDetailsReader;
+    private final ObjectWriter tradeDetailsWriter;
     private final TradeDetailRepository tradeDetailRepository;
+    private final TradeOutboxRepository tradeOutboxRepository;
     private final TradeExceptionRepository tradeExceptionRepository;
-    private final FundRepository fundRepository;
+    private final FundReferenceCache fundReferenceCache;
+    private final ClientReferenceFilter clientReferenceFilter;
+    private final JsonFieldExtractor jsonFieldExtractor;
+    private final TradeSummaryCounters tradeSummaryCounters;
+    private final TradeValidationEngine tradeValidationEngine;
 
     @Value("${app.kafka.topic.json-output}")
     private String outputTopic;
 
-    public MessageProcessingService(ObjectMapper objectMapper, KafkaTemplate<String, String> kafkaTemplate, TradeDetailRepository tradeDetailRepository, TradeExceptionRepository tradeExceptionRepository, FundRepository fundRepository) {
-        this.objectMapper = objectMapper;
-        this.kafkaTemplate = kafkaTemplate;
+    public MessageProcessingService(ObjectMapper objectMapper, TradeDetailRepository tradeDetailRepository, TradeOutboxRepository tradeOutboxRepository, TradeExceptionRepository tradeExceptionRepository, FundReferenceCache fundReferenceCache, ClientReferenceFilter clientReferenceFilter, JsonFieldExtractor jsonFieldExtractor, TradeSummaryCounters tradeSummaryCounters, TradeValidationEngine tradeValidationEngine) {
+        this.tradeDetailsReader = objectMapper.readerFor(TradeDetailsDto.class);
+        this.tradeDetailsWriter = objectMapper.writerFor(TradeDetailsDto.class);
         this.tradeDetailRepository = tradeDetailRepository;
+        this.tradeOutboxRepository = tradeOutboxRepository;
         this.tradeExceptionRepository = tradeExceptionRepository;
-        this.fundRepository = fundRepository;
+        this.fundReferenceCache = fundReferenceCache;
+        this.clientReferenceFilter = clientReferenceFilter;
+        this.jsonFieldExtractor = jsonFieldExtractor;
+        this.tradeSummaryCounters = tradeSummaryCounters;
+        this.tradeValidationEngine = tradeValidationEngine;
     }
 
-    @Async("asyncTaskExecutor")
+    /**
+     * Saves the message as a trade, or as an exception if it fails. Failures are recorded rather than thrown.
+     *
+     * @return what was stored for the message, if anything
+     */
     @Transactional
-    public void processMessage(JsonDoc jsonDoc) {
+    public ProcessingOutcome processMessage(JsonDoc jsonDoc) {
         long startTime = System.currentTimeMillis();
         log.info("Starting async processing for message key: {}", jsonDoc.getMessageKey());
         String jsonMessage = jsonDoc.getData();
+        ProcessingOutcome outcome;
 
         try {
-            TradeDetailsDto tradeDetailsDto = objectMapper.readValue(jsonMessage, TradeDetailsDto.class);
+            TradeDetailsDto tradeDetailsDto = tradeDetailsReader.readValue(jsonMessage);
 
             if (tradeDetailsDto.getClientReferenceNumber() == null) {
                 log.warn("Trade details has no client reference number, skipping validation and saving.");
-                return;
+                return ProcessingOutcome.NO_CLIENT_REFERENCE;
             }
 
             if (isDuplicate(tradeDetailsDto.getClientReferenceNumber())) {
                 log.warn("Duplicate trade detected with client reference number: {}. Skipping processing.", tradeDetailsDto.getClientReferenceNumber());
-                return;
+                return ProcessingOutcome.DUPLICATE;
             }
 
             // Enrich with fund base currency
-            Optional<Fund> fundOptional = fundRepository.findById(tradeDetailsDto.getFundNumber());
+            Optional<FundReference> fundOptional = fundReferenceCache.get(tradeDetailsDto.getFundNumber());
             if (fundOptional.isPresent()) {
                 tradeDetailsDto.setBaseCurrency(fundOptional.get().getBaseCurrency());
             } else {
-                saveException(tradeDetailsDto, jsonMessage, List.of("Fund not found"));
-                return;
+                return saveException(tradeDetailsDto, jsonMessage, List.of("Fund not found"));
             }
 
-            List<String> validationErrors = validateTradeDetails(tradeDetailsDto);
+            List<String> validationErrors = tradeValidationEngine.validate(tradeDetailsDto, fundOptional.get());
 
             if (validationErrors.isEmpty()) {
                 TradeDetail tradeDetail = new TradeDetail();
@@ -91,88 +103,66 @@ public class MessageProcessingService {
                 tradeDetail.setPrice(tradeDetailsDto.getPrice());
                 tradeDetail.setPrincipal(tradeDetailsDto.getPrincipal());
                 tradeDetail.setNetAmount(tradeDetailsDto.getNetAmount());
-                String tradeDetailsJson = objectMapper.writeValueAsString(tradeDetailsDto);
+                String tradeDetailsJson = tradeDetailsWriter.writeValueAsString(tradeDetailsDto);
                 tradeDetail.setOutboundJson(tradeDetailsJson);
                 tradeDetailRepository.save(tradeDetail);
+                clientReferenceFilter.put(tradeDetail.getClientReferenceNumber());
+                tradeSummaryCounters.recordCreated(tradeDetail.getFundNumber());
                 log.info("Successfully extracted and saved trade details for client reference: {}", tradeDetail.getClientReferenceNumber());
 
-                kafkaTemplate.send(outputTopic, tradeDetailsJson);
-                log.info("Successfully published trade details to Kafka topic {}: {}", outputTopic, tradeDetailsJson);
+                // Published by TradeOutboxRelay once this transaction commits.
+                tradeOutboxRepository.save(new TradeOutboxMessage(outputTopic, tradeDetailsJson));
+                outcome = ProcessingOutcome.ACCEPTED;
             } else {
-                saveException(tradeDetailsDto, jsonMessage, validationErrors);
+                outcome = saveException(tradeDetailsDto, jsonMessage, validationErrors);
             }
         } catch (JsonProcessingException e) {
-            saveTechnicalException(jsonMessage, e);
+            outcome = saveTechnicalException(jsonMessage, e);
         } catch (Exception e) {
-            saveTechnicalException(jsonMessage, e);
+            outcome = saveTechnicalException(jsonMessage, e);
         }
 
         long endTime = System.currentTimeMillis();
         log.info("Finished async processing for message key: {}. Time taken: {} ms", jsonDoc.getMessageKey(), (endTime - startTime));
+        return outcome;
     }
 
     private boolean isDuplicate(String clientReferenceNumber) {
         if (clientReferenceNumber == null || clientReferenceNumber.trim().isEmpty()) {
             return false;
         }
+        // A miss means this instance has not stored the reference. One stored elsewhere is still caught by the
+        // unique constraint on each table, which fails the insert instead of accepting the trade twice.
+        if (!clientReferenceFilter.mightContain(clientReferenceNumber)) {
+            return false;
+        }
         return tradeDetailRepository.existsByClientReferenceNumber(clientReferenceNumber) ||
                tradeExceptionRepository.existsByClientReferenceNumber(clientReferenceNumber);
     }
 
-    private List<String> validateTradeDetails(TradeDetailsDto tradeDetails) {
-        List<String> errors = new ArrayList<>();
-        LocalDate today = LocalDate.now(ZoneOffset.UTC);
-
-        if (tradeDetails.getTradeDate() != null) {
-            LocalDate tradeDate = tradeDetails.getTradeDate();
-            if (!tradeDate.equals(today)) {
-                errors.add("Trade date (" + tradeDate + ") is not the current date (" + today + ").");
-            }
-        } else {
-            errors.add("Trade date is null.");
-        }
-
-        if (tradeDetails.getSettleDate() != null) {
-            LocalDate settleDate = tradeDetails.getSettleDate();
-            if (!settleDate.isAfter(today)) {
-                errors.add("Settlement date (" + settleDate + ") is not in the future.");
-            }
-        } else {
-            errors.add("Settlement date is null.");
-        }
-
-        if (tradeDetails.getQuantity() != null && tradeDetails.getPrice() != null && tradeDetails.getPrincipal() != null) {
-            BigDecimal calculatedPrincipal = tradeDetails.getQuantity().multiply(tradeDetails.getPrice()).setScale(4, RoundingMode.HALF_UP);
-            BigDecimal providedPrincipal = tradeDetails.getPrincipal().setScale(4, RoundingMode.HALF_UP);
-
-            if (calculatedPrincipal.compareTo(providedPrincipal) != 0) {
-                errors.add("Principal amount (" + providedPrincipal + ") does not equal quantity * price (" + calculatedPrincipal + ").");
-            }
-        } else {
-            errors.add("Quantity, price, or principal is null.");
-        }
-
-        return errors;
-    }
-
-    private void saveException(TradeDetailsDto tradeDetails, String jsonMessage, List<String> errors) {
+    private ProcessingOutcome saveException(TradeDetailsDto tradeDetails, String jsonMessage, List<String> errors) {
         try {
             String failureReason = String.join(", ", errors);
             log.warn("Saving business exception for client reference {}. Reason: {}", tradeDetails.getClientReferenceNumber(), failureReason);
 
             TradeException tradeException = new TradeException();
             tradeException.setClientReferenceNumber(tradeDetails.getClientReferenceNumber());
+            tradeException.setFundNumber(fundNumberOrUnknown(tradeDetails.getFundNumber()));
             tradeException.setErrorType(ErrorType.BUSINESS);
             tradeException.setFailedTradeJson(jsonMessage);
             tradeException.setFailureReason(failureReason);
             tradeExceptionRepository.save(tradeException);
+            clientReferenceFilter.put(tradeException.getClientReferenceNumber());
+            tradeSummaryCounters.recordException(tradeException.getFundNumber());
+            return ProcessingOutcome.REJECTED;
         } catch (Exception e) {
             log.error("CRITICAL: Failed to save business exception to the database. Client Reference: {}. Reason: {}. Original message: {}",
                     tradeDetails.getClientReferenceNumber(), errors, jsonMessage, e);
+            return ProcessingOutcome.UNRECORDED;
         }
     }
 
-    private void saveTechnicalException(String jsonMessage, Exception originalException) {
+    private ProcessingOutcome saveTechnicalException(String jsonMessage, Exception originalException) {
         try {
             log.error("Saving technical exception for trade message: {}", jsonMessage, originalException);
             String failureReason = originalException.getClass().getSimpleName() + ": " + originalException.getMessage();
@@ -181,13 +171,24 @@ public class MessageProcessingService {
             }
 
             TradeException tradeException = new TradeException();
+            tradeException.setFundNumber(fundNumberOrUnknown(jsonFieldExtractor.extractText(jsonMessage, "fundNumber")));
             tradeException.setErrorType(ErrorType.TECHNICAL);
             tradeException.setFailedTradeJson(jsonMessage);
             tradeException.setFailureReason(failureReason);
             tradeExceptionRepository.save(tradeException);
+            tradeSummaryCounters.recordException(tradeException.getFundNumber());
+            return ProcessingOutcome.REJECTED;
         } catch (Exception dbException) {
             log.error("CRITICAL: Failed to save technical exception to the database. The original error was: {}. Original message: {}",
                     originalException.getMessage(), jsonMessage, dbException);
+            return ProcessingOutcome.UNRECORDED;
+        }
+    }
+
+    static String fundNumberOrUnknown(String fundNumber) {
+        if (fundNumber == null || fundNumber.trim().isEmpty() || fundNumber.length() > TradeException.FUND_NUMBER_LENGTH) {
+            return TradeException.UNKNOWN_FUND;
         }
+        return fundNumber;
     }
 }
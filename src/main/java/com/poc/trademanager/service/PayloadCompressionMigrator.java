@@ -0,0 +1,120 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.entity.PayloadCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compresses payloads stored before the payload columns were compressed, and decompresses the raw messages in
+ * {@code json_docs.data} that were stored compressed while that column was, so the content filter's SQL
+ * {@code LIKE} finds them again. Either kind of row reads correctly as it is, so this can run while the application
+ * is serving: rows are handled in id order, a chunk at a time, with one batched update per chunk. Enable it with
+ * {@code app.payload-compression.migrate-on-startup} for as long as old rows remain.
+ */
+@Component
+public class PayloadCompressionMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(PayloadCompressionMigrator.class);
+
+    private static final int CHUNK_SIZE = 500;
+
+    private static final String[][] PAYLOAD_COLUMNS = {
+            {"trade_details", "outbound_json"},
+            {"trade_exceptions", "failed_trade_json"}
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean migrateOnStartup;
+
+    public PayloadCompressionMigrator(JdbcTemplate jdbcTemplate,
+                                      @Value("${app.payload-compression.migrate-on-startup:false}") boolean migrateOnStartup) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.migrateOnStartup = migrateOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (!migrateOnStartup) {
+            return;
+        }
+        for (String[] payloadColumn : PAYLOAD_COLUMNS) {
+            migrate(payloadColumn[0], payloadColumn[1]);
+        }
+        decompress("json_docs", "data");
+    }
+
+    long migrate(String table, String column) {
+        long startTime = System.currentTimeMillis();
+        long lastId = 0;
+        long compressed = 0;
+        while (true) {
+            List<Object[]> updates = new ArrayList<>();
+            List<Long> ids = jdbcTemplate.query(
+                    "SELECT id, " + column + " FROM " + table + " WHERE id > ? AND " + column + " NOT LIKE ? ORDER BY id LIMIT ?",
+                    (rs, rowNum) -> {
+                        long id = rs.getLong("id");
+                        String payload = rs.getString(column);
+                        String encoded = PayloadCodec.encode(payload);
+                        // Payloads too short to gain anything stay as they are.
+                        if (!encoded.equals(payload)) {
+                            updates.add(new Object[]{encoded, id});
+                        }
+                        return id;
+                    },
+                    lastId, PayloadCodec.MARKER_PREFIX + "%", CHUNK_SIZE);
+            if (ids.isEmpty()) {
+                break;
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE " + table + " SET " + column + " = ? WHERE id = ?", updates);
+            }
+            compressed += updates.size();
+            lastId = ids.get(ids.size() - 1);
+        }
+        if (compressed > 0) {
+            log.info("Compressed {}.{} on {} rows in {} ms.", table, column, compressed, System.currentTimeMillis() - startTime);
+        }
+        return compressed;
+    }
+
+    long decompress(String table, String column) {
+        long startTime = System.currentTimeMillis();
+        long lastId = 0;
+        long decompressed = 0;
+        while (true) {
+            List<Object[]> updates = new ArrayList<>();
+            List<Long> ids = jdbcTemplate.query(
+                    "SELECT id, " + column + " FROM " + table + " WHERE id > ? AND " + column + " LIKE ? ORDER BY id LIMIT ?",
+                    (rs, rowNum) -> {
+                        long id = rs.getLong("id");
+                        String payload = PayloadCodec.decode(rs.getString(column));
+                        // A payload that itself looks compressed stays compressed.
+                        if (!PayloadCodec.isEncoded(payload)) {
+                            updates.add(new Object[]{payload, id});
+                        }
+                        return id;
+                    },
+                    lastId, PayloadCodec.MARKER_PREFIX + "%", CHUNK_SIZE);
+            if (ids.isEmpty()) {
+                break;
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE " + table + " SET " + column + " = ? WHERE id = ?", updates);
+            }
+            decompressed += updates.size();
+            lastId = ids.get(ids.size() - 1);
+        }
+        if (decompressed > 0) {
+            log.info("Decompressed {}.{} on {} rows in {} ms.", table, column, decompressed, System.currentTimeMillis() - startTime);
+        }
+        return decompressed;
+    }
+}
@@ -0,0 +1,99 @@
+package com.poc.trademanager.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Checks that a trade's principal equals quantity times price, both rounded half-up to {@value #SCALE} decimal
+ * places. Trade amounts almost always fit in a {@code long} once scaled, so the check is done on unscaled longs
+ * and falls back to {@link BigDecimal} arithmetic only for values too large or too precise for that, or when an
+ * intermediate result would overflow. Both paths give the same answer.
+ */
+final class PrincipalCheck {
+
+    static final int SCALE = 4;
+
+    /**
+     * Unscaled values at or above this are left to {@link BigDecimal}; see {@link #unscaled(BigDecimal)}.
+     */
+    private static final double MAX_FAST_UNSCALED = 0x1p50;
+
+    private static final long OUT_OF_RANGE = Long.MIN_VALUE;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+    private static final double[] DOUBLE_POWERS_OF_TEN = new double[19];
+
+    static {
+        long power = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = power;
+            DOUBLE_POWERS_OF_TEN[i] = power;
+            power *= 10;
+        }
+    }
+
+    private PrincipalCheck() {
+    }
+
+    static boolean matches(BigDecimal quantity, BigDecimal price, BigDecimal principal) {
+        long unscaledQuantity = unscaled(quantity);
+        long unscaledPrice = unscaled(price);
+        long unscaledPrincipal = unscaled(principal);
+        if (unscaledQuantity != OUT_OF_RANGE && unscaledPrice != OUT_OF_RANGE && unscaledPrincipal != OUT_OF_RANGE) {
+            try {
+                long product = Math.multiplyExact(unscaledQuantity, unscaledPrice);
+                long calculated = roundHalfUp(product, quantity.scale() + price.scale());
+                long provided = roundHalfUp(unscaledPrincipal, principal.scale());
+                return calculated == provided;
+            } catch (ArithmeticException overflow) {
+                // Fall through to BigDecimal.
+            }
+        }
+        return calculatedPrincipal(quantity, price).compareTo(providedPrincipal(principal)) == 0;
+    }
+
+    static BigDecimal calculatedPrincipal(BigDecimal quantity, BigDecimal price) {
+        return quantity.multiply(price).setScale(SCALE, RoundingMode.HALF_UP);
+    }
+
+    static BigDecimal providedPrincipal(BigDecimal principal) {
+        return principal.setScale(SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * The unscaled value, recovered without allocating, or {@link #OUT_OF_RANGE}: {@link BigDecimal#unscaledValue()}
+     * would create a {@code BigInteger}. {@code doubleValue()} is the correctly rounded quotient of the unscaled
+     * value and a power of ten; while the unscaled value is below 2^50, the error left after multiplying back is
+     * well under one half, so rounding restores it exactly.
+     */
+    private static long unscaled(BigDecimal value) {
+        int scale = value.scale();
+        if (scale < 0 || scale >= POWERS_OF_TEN.length) {
+            return OUT_OF_RANGE;
+        }
+        double unscaled = value.doubleValue() * DOUBLE_POWERS_OF_TEN[scale];
+        return Math.abs(unscaled) < MAX_FAST_UNSCALED ? Math.round(unscaled) : OUT_OF_RANGE;
+    }
+
+    /**
+     * Rounds an unscaled value at the given scale to {@link #SCALE}, half away from zero as
+     * {@link RoundingMode#HALF_UP} does, and returns it unscaled at {@link #SCALE}.
+     *
+     * @throws ArithmeticException if the result does not fit in a long
+     */
+    private static long roundHalfUp(long unscaled, int scale) {
+        if (scale <= SCALE) {
+            return Math.multiplyExact(unscaled, POWERS_OF_TEN[SCALE - scale]);
+        }
+        if (scale - SCALE >= POWERS_OF_TEN.length) {
+            throw new ArithmeticException("Scale " + scale + " is out of range");
+        }
+        long divisor = POWERS_OF_TEN[scale - SCALE];
+        long quotient = unscaled / divisor;
+        long remainder = Math.abs(unscaled % divisor);
+        if (remainder >= divisor - remainder) {
+            quotient += Long.signum(unscaled);
+        }
+        return quotient;
+    }
+}
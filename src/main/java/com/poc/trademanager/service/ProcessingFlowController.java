@@ -0,0 +1,167 @@
+package com.poc.trademanager.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Couples the Kafka listener to the asynchronous processor.
+ * <p>
+ * The listener container is paused once the fullest processing lane has filled to the pause percentage of its
+ * queue capacity and resumed once it has drained to the resume percentage. Thresholds are per lane rather than
+ * over the total, because a single hot client reference fills its own lane, and blocks the consumer thread, while
+ * the others stay empty. Each batch is acknowledged only after every
+ * message in it has finished processing, and batches are acknowledged in the order they were received,
+ * so a committed offset never gets ahead of work that is still queued.
+ * <p>
+ * The main and retry-tier listeners share the lanes but are paused, resumed and acknowledged independently: each
+ * listener id has its own pause flag and its own queue of batches, so a slow batch of one listener never holds
+ * back the commits of another, and whichever listener's work drains the lanes resumes every paused listener.
+ */
+@Component
+public class ProcessingFlowController {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessingFlowController.class);
+
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final KeyedTaskExecutor tradeProcessingExecutor;
+    private final Map<String, ListenerState> listeners = new ConcurrentHashMap<>();
+
+    @Value("${app.processing.flow.pause-lane-fill-percent:80}")
+    private int pauseLaneFillPercent;
+
+    @Value("${app.processing.flow.resume-lane-fill-percent:20}")
+    private int resumeLaneFillPercent;
+
+    public ProcessingFlowController(KafkaListenerEndpointRegistry listenerRegistry, KeyedTaskExecutor tradeProcessingExecutor) {
+        this.listenerRegistry = listenerRegistry;
+        this.tradeProcessingExecutor = tradeProcessingExecutor;
+    }
+
+    /**
+     * Registers the processing of one consumer batch. The batch is acknowledged once all of its futures have
+     * completed and every batch the same listener registered before it has been acknowledged.
+     */
+    public void track(String listenerId, List<CompletableFuture<Void>> processing, Acknowledgment acknowledgment) {
+        ListenerState listener = listeners.computeIfAbsent(listenerId, id -> new ListenerState());
+        PendingBatch batch = new PendingBatch(acknowledgment, CompletableFuture.allOf(processing.toArray(new CompletableFuture[0])));
+        synchronized (listener.pendingBatches) {
+            listener.pendingBatches.addLast(batch);
+        }
+        batch.completion.whenComplete((result, ex) -> {
+            if (ex != null) {
+                // processMessage records its own failures; getting here means even that failed, e.g. the commit.
+                // The raw messages are kept in json_docs, so acknowledge rather than block every later batch.
+                log.error("Processing of a batch completed exceptionally; acknowledging so later batches can be committed.", ex);
+            }
+            acknowledgeCompletedBatches(listener);
+            resumeIfDrained();
+        });
+        pauseIfBacklogged(listenerId, listener);
+    }
+
+    /**
+     * Blocks until the given futures and every batch the listener has registered so far have finished processing.
+     * Used before handing a failure to the container's error handler, which commits offsets on its own.
+     */
+    public void awaitCompletion(String listenerId, List<CompletableFuture<Void>> processing) {
+        List<CompletableFuture<?>> outstanding = new ArrayList<>(processing);
+        ListenerState listener = listeners.get(listenerId);
+        if (listener != null) {
+            synchronized (listener.pendingBatches) {
+                listener.pendingBatches.forEach(batch -> outstanding.add(batch.completion));
+            }
+        }
+        try {
+            CompletableFuture.allOf(outstanding.toArray(new CompletableFuture[0])).join();
+        } catch (Exception e) {
+            log.error("Processing failed while waiting for in-flight messages to complete.", e);
+        }
+    }
+
+    public int getQueueDepth() {
+        return tradeProcessingExecutor.getQueueDepth();
+    }
+
+    public boolean isPaused(String listenerId) {
+        ListenerState listener = listeners.get(listenerId);
+        return listener != null && listener.paused.get();
+    }
+
+    private static void acknowledgeCompletedBatches(ListenerState listener) {
+        // Acknowledging from a processing thread only queues the offsets for the consumer thread, so it is
+        // cheap enough to do under the lock, which keeps commits in the order the batches were received.
+        synchronized (listener.pendingBatches) {
+            while (!listener.pendingBatches.isEmpty() && listener.pendingBatches.peekFirst().completion.isDone()) {
+                listener.pendingBatches.pollFirst().acknowledgment.acknowledge();
+            }
+        }
+    }
+
+    private void pauseIfBacklogged(String listenerId, ListenerState listener) {
+        int depth = tradeProcessingExecutor.getMaxLaneDepth();
+        int pauseDepth = Math.max(1, laneDepth(pauseLaneFillPercent));
+        if (depth >= pauseDepth && listener.paused.compareAndSet(false, true)) {
+            MessageListenerContainer container = listenerRegistry.getListenerContainer(listenerId);
+            if (container != null) {
+                log.info("Fullest processing lane holds {} messages, reaching {}; pausing listener {}.", depth, pauseDepth, listenerId);
+                container.pause();
+            }
+            // The queue may have drained before the pause flag was visible to the completing tasks.
+            resumeIfDrained();
+        }
+    }
+
+    /**
+     * Resumes every paused listener once the lanes have drained. A listener may be paused by lanes that other
+     * listeners' work keeps full, so the check covers all of them, not only the one whose batch completed.
+     */
+    private void resumeIfDrained() {
+        int depth = tradeProcessingExecutor.getMaxLaneDepth();
+        int resumeDepth = laneDepth(resumeLaneFillPercent);
+        if (depth > resumeDepth) {
+            return;
+        }
+        listeners.forEach((listenerId, listener) -> {
+            if (listener.paused.compareAndSet(true, false)) {
+                MessageListenerContainer container = listenerRegistry.getListenerContainer(listenerId);
+                if (container != null) {
+                    log.info("Fullest processing lane holds {} messages, back under {}; resuming listener {}.", depth, resumeDepth, listenerId);
+                    container.resume();
+                }
+            }
+        });
+    }
+
+    private int laneDepth(int fillPercent) {
+        return tradeProcessingExecutor.getLaneQueueCapacity() * fillPercent / 100;
+    }
+
+    private static final class ListenerState {
+        private final Deque<PendingBatch> pendingBatches = new ArrayDeque<>();
+        private final AtomicBoolean paused = new AtomicBoolean(false);
+    }
+
+    private static final class PendingBatch {
+        private final Acknowledgment acknowledgment;
+        private final CompletableFuture<Void> completion;
+
+        private PendingBatch(Acknowledgment acknowledgment, CompletableFuture<Void> completion) {
+            this.acknowledgment = acknowledgment;
+            this.completion = completion;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.poc.trademanager.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces callers of {@link #acquire()} evenly at a fixed rate. Time spent idle is not saved up, so a limiter that
+ * has not been used for a while does not allow a burst.
+ */
+final class RateLimiter {
+
+    private final long intervalNanos;
+    private long nextPermitNanos = System.nanoTime();
+
+    RateLimiter(int permitsPerSecond) {
+        if (permitsPerSecond < 1) {
+            throw new IllegalArgumentException("Rate must be at least one per second");
+        }
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+    }
+
+    void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long permitNanos = Math.max(nextPermitNanos, now);
+            nextPermitNanos = permitNanos + intervalNanos;
+            waitNanos = permitNanos - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.dto.RetryTierStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The retry tiers a failed input record passes through before the DLQ: each tier is a topic whose listener
+ * retries a record once it has waited out the tier's delay, so the input listener and the shorter tiers keep moving
+ * while a record backs off. Also counts the records through each tier.
+ */
+@Component
+public class RetryTopicRouter {
+
+    public static final int TIER_COUNT = 3;
+
+    private final String inputTopic;
+    private final String deadLetterTopic;
+    private final Tier[] tiers;
+
+    public RetryTopicRouter(@Value("${app.kafka.topic.json-input}") String inputTopic,
+                            @Value("${app.kafka.topic.json-input-dlq}") String deadLetterTopic,
+                            @Value("${app.kafka.topic.json-input-retry-1:${app.kafka.topic.json-input}.retry-1}") String tier1Topic,
+                            @Value("${app.kafka.topic.json-input-retry-2:${app.kafka.topic.json-input}.retry-2}") String tier2Topic,
+                            @Value("${app.kafka.topic.json-input-retry-3:${app.kafka.topic.json-input}.retry-3}") String tier3Topic,
+                            @Value("${app.kafka.retry.delay-1:10s}") Duration tier1Delay,
+                            @Value("${app.kafka.retry.delay-2:1m}") Duration tier2Delay,
+                            @Value("${app.kafka.retry.delay-3:5m}") Duration tier3Delay) {
+        this.inputTopic = inputTopic;
+        this.deadLetterTopic = deadLetterTopic;
+        this.tiers = new Tier[]{new Tier(tier1Topic, tier1Delay), new Tier(tier2Topic, tier2Delay), new Tier(tier3Topic, tier3Delay)};
+    }
+
+    /**
+     * Where a record that failed on the given topic goes next, counting it as forwarded from its tier and received
+     * by the next.
+     */
+    public String route(String failedTopic) {
+        int tier = tierOf(failedTopic);
+        if (tier >= 0) {
+            tiers[tier].forwarded.increment();
+        } else if (!inputTopic.equals(failedTopic)) {
+            return deadLetterTopic;
+        }
+        if (tier + 1 >= tiers.length) {
+            return deadLetterTopic;
+        }
+        tiers[tier + 1].received.increment();
+        return tiers[tier + 1].topic;
+    }
+
+    public boolean isDeadLetterTopic(String topic) {
+        return deadLetterTopic.equals(topic);
+    }
+
+    /**
+     * @param tier 1-based
+     */
+    public String getTopic(int tier) {
+        return tiers[tier - 1].topic;
+    }
+
+    /**
+     * @param tier 1-based
+     */
+    public Duration getDelay(int tier) {
+        return tiers[tier - 1].delay;
+    }
+
+    public void recordRecovered(int tier) {
+        tiers[tier - 1].recovered.increment();
+    }
+
+    public List<RetryTierStatus> getStatuses() {
+        List<RetryTierStatus> statuses = new ArrayList<>(tiers.length);
+        for (int i = 0; i < tiers.length; i++) {
+            Tier tier = tiers[i];
+            statuses.add(new RetryTierStatus(i + 1, tier.topic, tier.delay.getSeconds(),
+                    tier.received.sum(), tier.recovered.sum(), tier.forwarded.sum()));
+        }
+        return statuses;
+    }
+
+    private int tierOf(String topic) {
+        for (int i = 0; i < tiers.length; i++) {
+            if (tiers[i].topic.equals(topic)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class Tier {
+        private final String topic;
+        private final Duration delay;
+        private final LongAdder received = new LongAdder();
+        private final LongAdder recovered = new LongAdder();
+        private final LongAdder forwarded = new LongAdder();
+
+        private Tier(String topic, Duration delay) {
+            this.topic = topic;
+            this.delay = delay;
+        }
+    }
+}
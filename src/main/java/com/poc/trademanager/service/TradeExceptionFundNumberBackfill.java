@@ -0,0 +1,75 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.entity.PayloadCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fills {@code trade_exceptions.fund_number} for rows written before the column existed, reading the fund number
+ * from each row's failed trade JSON. Rows are handled in id order, a chunk at a time, with one batched update
+ * per chunk. Once every row has a fund number this finds nothing to do. The summary counters, seeded before this
+ * runs, are told which fund each updated row now belongs to.
+ */
+@Component
+public class TradeExceptionFundNumberBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeExceptionFundNumberBackfill.class);
+
+    private static final int CHUNK_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonFieldExtractor jsonFieldExtractor;
+    private final TradeSummaryCounters tradeSummaryCounters;
+
+    public TradeExceptionFundNumberBackfill(JdbcTemplate jdbcTemplate, JsonFieldExtractor jsonFieldExtractor,
+                                            TradeSummaryCounters tradeSummaryCounters) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jsonFieldExtractor = jsonFieldExtractor;
+        this.tradeSummaryCounters = tradeSummaryCounters;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        long lastId = 0;
+        long updated = 0;
+        while (true) {
+            List<Object[]> updates = new ArrayList<>();
+            List<Long> ids = jdbcTemplate.query(
+                    "SELECT id, failed_trade_json FROM trade_exceptions WHERE fund_number IS NULL AND id > ? ORDER BY id LIMIT ?",
+                    (rs, rowNum) -> {
+                        long id = rs.getLong("id");
+                        String fundNumber = jsonFieldExtractor.extractText(PayloadCodec.decode(rs.getString("failed_trade_json")), "fundNumber");
+                        updates.add(new Object[]{MessageProcessingService.fundNumberOrUnknown(fundNumber), id});
+                        return id;
+                    },
+                    lastId, CHUNK_SIZE);
+            if (ids.isEmpty()) {
+                break;
+            }
+            // Only rows still without a fund number, in case one was replayed and deleted in the meantime.
+            int[] counts = jdbcTemplate.batchUpdate("UPDATE trade_exceptions SET fund_number = ? WHERE id = ? AND fund_number IS NULL", updates);
+            Map<String, Long> backfilled = new HashMap<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                    backfilled.merge((String) updates.get(i)[0], 1L, Long::sum);
+                }
+            }
+            tradeSummaryCounters.recordExceptionsBackfilled(backfilled);
+            updated += ids.size();
+            lastId = ids.get(ids.size() - 1);
+        }
+        if (updated > 0) {
+            log.info("Backfilled fund_number on {} trade exceptions.", updated);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.poc.trademanager.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.poc.trademanager.dto.TradeExportRow;
+import com.poc.trademanager.entity.TradeException;
+import com.poc.trademanager.repository.TradeDetailRepository;
+import com.poc.trademanager.repository.TradeExceptionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.Temporal;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Streams trades and trade exceptions straight from a database cursor to the response as NDJSON or CSV. Rows are
+ * written one at a time through a Jackson generator, so memory use does not depend on the size of the export.
+ * Trades are read as a projection that leaves out the compressed outbound JSON; exceptions, whose failed trade JSON
+ * is exported, are read as entities and detached once written. The output is flushed every
+ * {@value #FLUSH_INTERVAL} rows; a write to a client that has gone away fails, which ends the export and releases
+ * the cursor.
+ */
+@Service
+public class TradeExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeExportService.class);
+
+    private static final int FLUSH_INTERVAL = 500;
+
+    private static final CsvSchema TRADE_SCHEMA = CsvSchema.builder()
+            .addColumn("clientReferenceNumber")
+            .addColumn("fundNumber")
+            .addColumn("securityId")
+            .addColumn("tradeDate")
+            .addColumn("settleDate")
+            .addColumn("quantity")
+            .addColumn("price")
+            .addColumn("principal")
+            .addColumn("netAmount")
+            .addColumn("createdAt")
+            .build()
+            .withHeader();
+
+    private static final CsvSchema EXCEPTION_SCHEMA = CsvSchema.builder()
+            .addColumn("id")
+            .addColumn("clientReferenceNumber")
+            .addColumn("fundNumber")
+            .addColumn("errorType")
+            .addColumn("failureReason")
+            .addColumn("failedTradeJson")
+            .addColumn("createdAt")
+            .build()
+            .withHeader();
+
+    private final ObjectMapper objectMapper;
+    private final CsvMapper csvMapper = new CsvMapper();
+    private final EntitlementCache entitlementCache;
+    private final TradeDetailRepository tradeDetailRepository;
+    private final TradeExceptionRepository tradeExceptionRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public TradeExportService(ObjectMapper objectMapper, EntitlementCache entitlementCache,
+                              TradeDetailRepository tradeDetailRepository,
+                              TradeExceptionRepository tradeExceptionRepository,
+                              EntityManager entityManager,
+                              PlatformTransactionManager transactionManager) {
+        this.objectMapper = objectMapper;
+        this.entitlementCache = entitlementCache;
+        this.tradeDetailRepository = tradeDetailRepository;
+        this.tradeExceptionRepository = tradeExceptionRepository;
+        this.entityManager = entityManager;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Exports the trades in the user's entitled funds matching the criteria. The entitlements are resolved now,
+     * on the request thread; the rows are read when the returned body is written.
+     */
+    public StreamingResponseBody exportTrades(ExportFormat format, String username, String clientReferenceNumber,
+                                              LocalDate startDate, LocalDate endDate) {
+        Set<String> entitledFunds = entitlementCache.getFundNumbers(username);
+        return out -> {
+            if (entitledFunds.isEmpty()) {
+                return;
+            }
+            export("trades", format, TRADE_SCHEMA, out,
+                    () -> tradeDetailRepository.streamForExport(entitledFunds, clientReferenceNumber, startDate, endDate),
+                    TradeExportService::writeTrade);
+        };
+    }
+
+    /**
+     * Exports the trade exceptions matching the criteria. Like {@code GET /api/exceptions}, these are not filtered
+     * by fund entitlement.
+     */
+    public StreamingResponseBody exportExceptions(ExportFormat format, String clientReferenceNumber,
+                                                  LocalDateTime startDate, LocalDateTime endDate) {
+        return out -> export("exceptions", format, EXCEPTION_SCHEMA, out,
+                () -> tradeExceptionRepository.streamForExport(clientReferenceNumber, startDate, endDate),
+                (generator, exception) -> {
+                    writeException(generator, exception);
+                    entityManager.detach(exception);
+                });
+    }
+
+    private <T> void export(String name, ExportFormat format, CsvSchema schema, OutputStream out,
+                            RowSource<T> source, RowWriter<T> rowWriter) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Long rows;
+        try {
+            rows = readOnlyTransaction.execute(status -> {
+                long count = 0;
+                try (JsonGenerator generator = createGenerator(format, schema, out);
+                     Stream<T> stream = source.open()) {
+                    Iterator<T> iterator = stream.iterator();
+                    while (iterator.hasNext()) {
+                        T row = iterator.next();
+                        rowWriter.write(generator, row);
+                        if (format == ExportFormat.NDJSON) {
+                            generator.writeRaw('\n');
+                        }
+                        if (++count % FLUSH_INTERVAL == 0) {
+                            generator.flush();
+                        }
+                    }
+                    generator.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return count;
+            });
+        } catch (UncheckedIOException e) {
+            log.info("Export of {} aborted after {} ms: {}", name, System.currentTimeMillis() - startTime, e.getCause().getMessage());
+            throw e.getCause();
+        }
+        log.info("Exported {} {} as {} in {} ms.", rows, name, format, System.currentTimeMillis() - startTime);
+    }
+
+    private JsonGenerator createGenerator(ExportFormat format, CsvSchema schema, OutputStream out) throws IOException {
+        JsonGenerator generator;
+        if (format == ExportFormat.CSV) {
+            generator = csvMapper.getFactory().createGenerator(out);
+            generator.setSchema(schema);
+        } else {
+            generator = objectMapper.getFactory().createGenerator(out);
+            // Each row is terminated by a newline instead.
+            generator.setRootValueSeparator(null);
+        }
+        // The servlet container owns the response stream.
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.enable(JsonGenerator.Feature.WRITE_BIGDECIMAL_AS_PLAIN);
+        return generator;
+    }
+
+    private static void writeTrade(JsonGenerator generator, TradeExportRow trade) throws IOException {
+        generator.writeStartObject();
+        writeString(generator, "clientReferenceNumber", trade.getClientReferenceNumber());
+        writeString(generator, "fundNumber", trade.getFundNumber());
+        writeString(generator, "securityId", trade.getSecurityId());
+        writeTemporal(generator, "tradeDate", trade.getTradeDate());
+        writeTemporal(generator, "settleDate", trade.getSettleDate());
+        writeNumber(generator, "quantity", trade.getQuantity());
+        writeNumber(generator, "price", trade.getPrice());
+        writeNumber(generator, "principal", trade.getPrincipal());
+        writeNumber(generator, "netAmount", trade.getNetAmount());
+        writeTemporal(generator, "createdAt", trade.getCreatedAt());
+        generator.writeEndObject();
+    }
+
+    private static void writeException(JsonGenerator generator, TradeException exception) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", exception.getId());
+        writeString(generator, "clientReferenceNumber", exception.getClientReferenceNumber());
+        writeString(generator, "fundNumber", exception.getFundNumber());
+        writeString(generator, "errorType", exception.getErrorType() != null ? exception.getErrorType().name() : null);
+        writeString(generator, "failureReason", exception.getFailureReason());
+        writeString(generator, "failedTradeJson", exception.getFailedTradeJson());
+        writeTemporal(generator, "createdAt", exception.getCreatedAt());
+        generator.writeEndObject();
+    }
+
+    private static void writeString(JsonGenerator generator, String field, String value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(field, value);
+        } else {
+            generator.writeNullField(field);
+        }
+    }
+
+    private static void writeNumber(JsonGenerator generator, String field, BigDecimal value) throws IOException {
+        if (value != null) {
+            generator.writeNumberField(field, value);
+        } else {
+            generator.writeNullField(field);
+        }
+    }
+
+    private static void writeTemporal(JsonGenerator generator, String field, Temporal value) throws IOException {
+        writeString(generator, field, value != null ? value.toString() : null);
+    }
+
+    public enum ExportFormat {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String fileExtension;
+
+        ExportFormat(String contentType, String fileExtension) {
+            this.contentType = contentType;
+            this.fileExtension = fileExtension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getFileExtension() {
+            return fileExtension;
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowSource<T> {
+        Stream<T> open();
+    }
+
+    @FunctionalInterface
+    private interface RowWriter<T> {
+        void write(JsonGenerator generator, T row) throws IOException;
+    }
+}
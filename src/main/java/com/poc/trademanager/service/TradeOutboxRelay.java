@@ -0,0 +1,154 @@
+package com.poc.trademanager.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes the rows of {@code trade_outbox} in id order. Each batch is handed to the producer as a whole and
+ * flushed, so the producer can fill its own batches, and only the rows the broker acknowledged are marked sent; the
+ * rest are retried on the next poll. A crash between the acknowledgement and the update sends those rows again, so
+ * delivery is at least once.
+ * <p>
+ * Two relays would send the same rows, so with several instances enable it ({@code app.outbox.relay-enabled}) on one.
+ */
+@Component
+public class TradeOutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeOutboxRelay.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final Duration retention;
+
+    public TradeOutboxRelay(JdbcTemplate jdbcTemplate,
+                            KafkaTemplate<String, String> kafkaTemplate,
+                            @Value("${app.outbox.relay-enabled:true}") boolean enabled,
+                            @Value("${app.outbox.batch-size:1000}") int batchSize,
+                            @Value("${app.outbox.send-timeout:30s}") Duration sendTimeout,
+                            @Value("${app.outbox.retention:1d}") Duration retention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.kafkaTemplate = kafkaTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.sendTimeout = sendTimeout;
+        this.retention = retention;
+    }
+
+    /**
+     * Drains the outbox, a batch at a time, until it is empty or a send fails.
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:100}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+        int relayed;
+        do {
+            relayed = relayBatch();
+        } while (relayed == batchSize);
+    }
+
+    /**
+     * @return the number of rows sent, or -1 if any could not be
+     */
+    int relayBatch() {
+        List<PendingMessage> batch = jdbcTemplate.query(
+                "SELECT id, topic, payload FROM trade_outbox WHERE sent_at IS NULL ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new PendingMessage(rs.getLong("id"), rs.getString("topic"), rs.getString("payload")),
+                batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        long startTime = System.currentTimeMillis();
+        List<ListenableFuture<SendResult<String, String>>> futures = new ArrayList<>(batch.size());
+        Exception failure = null;
+        for (PendingMessage message : batch) {
+            try {
+                futures.add(kafkaTemplate.send(message.topic, message.payload));
+            } catch (KafkaException e) {
+                // Rejected before it was handed over, e.g. an invalid topic; the rest of the batch still goes.
+                futures.add(null);
+                failure = e;
+                if (e.getCause() instanceof org.apache.kafka.common.errors.TimeoutException) {
+                    // No metadata within max.block.ms: every further send would wait as long.
+                    break;
+                }
+            }
+        }
+        kafkaTemplate.flush();
+
+        List<Object[]> sent = new ArrayList<>(futures.size());
+        Timestamp sentAt = Timestamp.valueOf(LocalDateTime.now());
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        for (int i = 0; i < futures.size(); i++) {
+            if (futures.get(i) == null) {
+                continue;
+            }
+            try {
+                futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                sent.add(new Object[]{sentAt, batch.get(i).id});
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = e;
+                break;
+            } catch (ExecutionException | TimeoutException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (!sent.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE trade_outbox SET sent_at = ? WHERE id = ?", sent);
+        }
+
+        if (failure != null) {
+            log.warn("{} of {} outbox messages were not acknowledged and will be retried.",
+                    batch.size() - sent.size(), batch.size(), failure);
+            return -1;
+        }
+        log.debug("Relayed {} outbox messages in {} ms.", sent.size(), System.currentTimeMillis() - startTime);
+        return sent.size();
+    }
+
+    @Scheduled(cron = "${app.outbox.purge-cron:0 15 * * * *}")
+    public void purgeSent() {
+        int purged = jdbcTemplate.update("DELETE FROM trade_outbox WHERE sent_at < ?",
+                Timestamp.valueOf(LocalDateTime.now().minus(retention)));
+        if (purged > 0) {
+            log.info("Purged {} sent outbox messages.", purged);
+        }
+    }
+
+    private static final class PendingMessage {
+        private final long id;
+        private final String topic;
+        private final String payload;
+
+        private PendingMessage(long id, String topic, String payload) {
+            this.id = id;
+            this.topic = topic;
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.entity.JsonDoc;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Hands raw messages to {@link MessageProcessingService} on the lane owned by their client reference number,
+ * so that two messages for the same trade can never race through the duplicate check.
+ */
+@Service
+public class TradeProcessingDispatcher {
+
+    private static final String CLIENT_REFERENCE_FIELD = "clientReferenceNumber";
+
+    private final MessageProcessingService messageProcessingService;
+    private final KeyedTaskExecutor tradeProcessingExecutor;
+    private final JsonFieldExtractor jsonFieldExtractor;
+
+    public TradeProcessingDispatcher(MessageProcessingService messageProcessingService, KeyedTaskExecutor tradeProcessingExecutor, JsonFieldExtractor jsonFieldExtractor) {
+        this.messageProcessingService = messageProcessingService;
+        this.tradeProcessingExecutor = tradeProcessingExecutor;
+        this.jsonFieldExtractor = jsonFieldExtractor;
+    }
+
+    /**
+     * Messages that are not valid JSON or have no reference get no key; processing records the failure itself.
+     */
+    public CompletableFuture<Void> dispatch(JsonDoc jsonDoc) {
+        String clientReferenceNumber = jsonFieldExtractor.extractText(jsonDoc.getData(), CLIENT_REFERENCE_FIELD);
+        return tradeProcessingExecutor.execute(clientReferenceNumber, () -> messageProcessingService.processMessage(jsonDoc));
+    }
+}
@@ -0,0 +1,77 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.DatabaseStorageService;
+import com.poc.trademanager.dto.ProcessingOutcome;
+import com.poc.trademanager.entity.JsonDoc;
+import com.poc.trademanager.entity.TradeException;
+import com.poc.trademanager.repository.TradeExceptionRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import java.util.Collections;
+import java.util.Optional;
+
+/**
+ * Reprocesses one failed message for {@link TradeReplayService}.
+ */
+@Service
+public class TradeReplayProcessor {
+
+    private final DatabaseStorageService databaseStorageService;
+    private final MessageProcessingService messageProcessingService;
+    private final TradeExceptionRepository tradeExceptionRepository;
+    private final TradeSummaryCounters tradeSummaryCounters;
+
+    public TradeReplayProcessor(DatabaseStorageService databaseStorageService, MessageProcessingService messageProcessingService,
+                                TradeExceptionRepository tradeExceptionRepository, TradeSummaryCounters tradeSummaryCounters) {
+        this.databaseStorageService = databaseStorageService;
+        this.messageProcessingService = messageProcessingService;
+        this.tradeExceptionRepository = tradeExceptionRepository;
+        this.tradeSummaryCounters = tradeSummaryCounters;
+    }
+
+    /**
+     * Processes the exception's trade again. The exception is deleted first so the duplicate check does not reject
+     * the trade because of it, but the delete is rolled back unless a trade or a replacement exception was saved in
+     * its place; a skipped or unrecorded replay leaves the exception as it was.
+     *
+     * @return what processing stored, or empty if the exception no longer exists, e.g. replayed by an earlier run
+     */
+    @Transactional
+    public Optional<ProcessingOutcome> replayException(long id) {
+        Optional<TradeException> found = tradeExceptionRepository.findById(id);
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        TradeException tradeException = found.get();
+        tradeExceptionRepository.delete(tradeException);
+        // Hibernate runs inserts before deletes, so without this a replacement exception would break the unique
+        // client reference constraint
+        tradeExceptionRepository.flush();
+
+        JsonDoc jsonDoc = new JsonDoc();
+        jsonDoc.setMessageKey("replay-exception-" + id);
+        jsonDoc.setData(tradeException.getFailedTradeJson());
+        ProcessingOutcome outcome = messageProcessingService.processMessage(jsonDoc);
+        if (outcome.isPersisted()) {
+            tradeSummaryCounters.recordExceptionRemoved(tradeException.getFundNumber());
+        } else {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        }
+        return Optional.of(outcome);
+    }
+
+    /**
+     * Stores and processes a dead-lettered message as if it had just arrived on the input topic.
+     *
+     * @return what processing stored; {@link ProcessingOutcome#NO_CLIENT_REFERENCE} for an empty message
+     */
+    public ProcessingOutcome replayMessage(String message) {
+        ProcessingOutcome outcome = ProcessingOutcome.NO_CLIENT_REFERENCE;
+        for (JsonDoc jsonDoc : databaseStorageService.saveRawMessages(Collections.singletonList(message))) {
+            outcome = messageProcessingService.processMessage(jsonDoc);
+        }
+        return outcome;
+    }
+}
@@ -0,0 +1,490 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.dto.ErrorType;
+import com.poc.trademanager.dto.ProcessingOutcome;
+import com.poc.trademanager.dto.ReplayJobStatus;
+import com.poc.trademanager.dto.ReplayRequest;
+import com.poc.trademanager.dto.ReplaySource;
+import com.poc.trademanager.entity.ReplayJob;
+import com.poc.trademanager.repository.ReplayJobRepository;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays failed messages, from the DLQ or from {@code trade_exceptions}, through {@link MessageProcessingService}.
+ * A job reads its failures a chunk at a time, hands the chunk to the trade processing lanes at no more than its
+ * rate and stores a checkpoint once the whole chunk has been processed. A stopped job, or one interrupted by a
+ * restart, carries on from its checkpoint, so at most one chunk is replayed twice; the duplicate checks catch
+ * trades that were accepted the first time. A failure is counted as replayed only if its trade is accepted, as
+ * failed if it fails again or cannot be processed, and as skipped if processing stores nothing for it.
+ */
+@Service
+public class TradeReplayService {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeReplayService.class);
+
+    private static final String CLIENT_REFERENCE_FIELD = "clientReferenceNumber";
+    private static final String FUND_NUMBER_FIELD = "fundNumber";
+
+    private final ReplayJobRepository replayJobRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TradeReplayProcessor tradeReplayProcessor;
+    private final KeyedTaskExecutor tradeProcessingExecutor;
+    private final JsonFieldExtractor jsonFieldExtractor;
+    private final ConsumerFactory<String, String> consumerFactory;
+    private final ExecutorService jobExecutor = Executors.newCachedThreadPool(new CustomizableThreadFactory("ReplayJob-"));
+    private final Map<Long, AtomicBoolean> runningJobs = new ConcurrentHashMap<>();
+
+    @Value("${app.kafka.topic.json-input-dlq}")
+    private String dlqTopic;
+
+    @Value("${app.replay.chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${app.replay.rate-per-second:50}")
+    private int defaultRatePerSecond;
+
+    @Value("${app.replay.max-rate-per-second:500}")
+    private int maxRatePerSecond;
+
+    @Value("${app.replay.resume-on-startup:true}")
+    private boolean resumeOnStartup;
+
+    public TradeReplayService(ReplayJobRepository replayJobRepository, JdbcTemplate jdbcTemplate, TradeReplayProcessor tradeReplayProcessor,
+                              KeyedTaskExecutor tradeProcessingExecutor, JsonFieldExtractor jsonFieldExtractor,
+                              ConsumerFactory<String, String> consumerFactory) {
+        this.replayJobRepository = replayJobRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.tradeReplayProcessor = tradeReplayProcessor;
+        this.tradeProcessingExecutor = tradeProcessingExecutor;
+        this.jsonFieldExtractor = jsonFieldExtractor;
+        this.consumerFactory = consumerFactory;
+    }
+
+    /**
+     * Creates a job for the failures that match the request and exist now, and starts it.
+     *
+     * @throws IllegalArgumentException if the request is invalid
+     */
+    public ReplayJob start(ReplayRequest request, String username) {
+        if (request.getSource() == null) {
+            throw new IllegalArgumentException("source is required");
+        }
+        if (request.getSource() == ReplaySource.DLQ && request.getErrorType() == ErrorType.BUSINESS) {
+            throw new IllegalArgumentException("The DLQ only holds technical failures");
+        }
+        if (request.getStartDate() != null && request.getEndDate() != null && request.getStartDate().isAfter(request.getEndDate())) {
+            throw new IllegalArgumentException("startDate must not be after endDate");
+        }
+        int ratePerSecond = request.getRatePerSecond() == null ? defaultRatePerSecond : request.getRatePerSecond();
+        if (ratePerSecond < 1 || ratePerSecond > maxRatePerSecond) {
+            throw new IllegalArgumentException("ratePerSecond must be between 1 and " + maxRatePerSecond);
+        }
+
+        ReplayJob job = new ReplayJob();
+        job.setSource(request.getSource());
+        job.setErrorType(request.getErrorType());
+        job.setFundNumber(emptyToNull(request.getFundNumber()));
+        job.setFailureReason(emptyToNull(request.getFailureReason()));
+        job.setStartDate(request.getStartDate());
+        job.setEndDate(request.getEndDate());
+        job.setRatePerSecond(ratePerSecond);
+        job.setStatus(ReplayJobStatus.RUNNING);
+        job.setCreatedBy(username);
+        if (job.getSource() == ReplaySource.DLQ) {
+            initDlqPositions(job);
+        } else {
+            initExceptionPositions(job);
+        }
+        job = replayJobRepository.save(job);
+        log.info("Replay job {} created by {} for {} candidate failures from {}.", job.getId(), username, job.getTotalCandidates(), job.getSource());
+        submit(job);
+        return job;
+    }
+
+    public List<ReplayJob> getJobs() {
+        return replayJobRepository.findAllByOrderByIdDesc();
+    }
+
+    public Optional<ReplayJob> getJob(long id) {
+        return replayJobRepository.findById(id);
+    }
+
+    /**
+     * Stops the job once its current chunk has been processed.
+     */
+    public Optional<ReplayJob> stop(long id) {
+        AtomicBoolean stopRequested = runningJobs.get(id);
+        if (stopRequested != null) {
+            stopRequested.set(true);
+            return replayJobRepository.findById(id);
+        }
+        return replayJobRepository.findById(id).map(job -> {
+            // Not running on this instance, e.g. left RUNNING by an instance that was shut down.
+            if (job.getStatus() == ReplayJobStatus.RUNNING) {
+                job.setStatus(ReplayJobStatus.STOPPED);
+                return replayJobRepository.save(job);
+            }
+            return job;
+        });
+    }
+
+    /**
+     * Restarts a stopped or failed job from its checkpoint.
+     *
+     * @throws IllegalArgumentException if the job has already completed
+     */
+    public Optional<ReplayJob> resume(long id) {
+        return replayJobRepository.findById(id).map(job -> {
+            if (job.getStatus() == ReplayJobStatus.COMPLETED) {
+                throw new IllegalArgumentException("Replay job " + id + " has already completed");
+            }
+            if (!runningJobs.containsKey(id)) {
+                job.setStatus(ReplayJobStatus.RUNNING);
+                job.setLastError(null);
+                job = replayJobRepository.save(job);
+                submit(job);
+            }
+            return job;
+        });
+    }
+
+    /**
+     * Carries on with the jobs that were running when the application last stopped.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        if (!resumeOnStartup) {
+            return;
+        }
+        for (ReplayJob job : replayJobRepository.findByStatus(ReplayJobStatus.RUNNING)) {
+            log.info("Resuming replay job {} from checkpoint {}.", job.getId(), job.getCheckpoint());
+            submit(job);
+        }
+    }
+
+    /**
+     * Interrupts running jobs without changing their status, so they carry on after a restart.
+     */
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+
+    private void submit(ReplayJob job) {
+        AtomicBoolean stopRequested = new AtomicBoolean();
+        if (runningJobs.putIfAbsent(job.getId(), stopRequested) == null) {
+            jobExecutor.execute(() -> run(job, stopRequested));
+        }
+    }
+
+    private void run(ReplayJob job, AtomicBoolean stopRequested) {
+        RateLimiter rateLimiter = new RateLimiter(job.getRatePerSecond());
+        try {
+            boolean finished = job.getSource() == ReplaySource.DLQ
+                    ? replayDlq(job, rateLimiter, stopRequested)
+                    : replayExceptions(job, rateLimiter, stopRequested);
+            job.setStatus(finished ? ReplayJobStatus.COMPLETED : ReplayJobStatus.STOPPED);
+            log.info("Replay job {} {}: {} replayed, {} skipped, {} failed.", job.getId(), finished ? "completed" : "stopped",
+                    job.getReplayed(), job.getSkipped(), job.getFailed());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Replay job {} interrupted; it resumes from checkpoint {} on the next start.", job.getId(), job.getCheckpoint());
+            runningJobs.remove(job.getId());
+            return;
+        } catch (Exception e) {
+            log.error("Replay job {} failed at checkpoint {}.", job.getId(), job.getCheckpoint(), e);
+            job.setStatus(ReplayJobStatus.FAILED);
+            job.setLastError(describe(e));
+        }
+        replayJobRepository.save(job);
+        runningJobs.remove(job.getId());
+    }
+
+    private void initExceptionPositions(ReplayJob job) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM trade_exceptions", Long.class);
+        job.setCheckpoint("0");
+        job.setEndPosition(String.valueOf(maxId));
+        List<Object> args = new ArrayList<>();
+        String where = exceptionFilter(job, 0L, args);
+        job.setTotalCandidates(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM trade_exceptions WHERE " + where, Long.class, args.toArray()));
+    }
+
+    private boolean replayExceptions(ReplayJob job, RateLimiter rateLimiter, AtomicBoolean stopRequested) throws InterruptedException {
+        long lastId = Long.parseLong(job.getCheckpoint());
+        while (!stopRequested.get()) {
+            List<Object> args = new ArrayList<>();
+            String where = exceptionFilter(job, lastId, args);
+            args.add(chunkSize);
+            List<ReplayTask> chunk = jdbcTemplate.query(
+                    "SELECT id, client_reference_number FROM trade_exceptions WHERE " + where + " ORDER BY id LIMIT ?",
+                    (rs, rowNum) -> {
+                        long id = rs.getLong("id");
+                        return new ReplayTask(rs.getString("client_reference_number"), () -> tradeReplayProcessor.replayException(id), id);
+                    },
+                    args.toArray());
+            if (chunk.isEmpty()) {
+                return true;
+            }
+            replayChunk(job, chunk, rateLimiter);
+            lastId = chunk.get(chunk.size() - 1).id;
+            job.setScanned(job.getScanned() + chunk.size());
+            job.setCheckpoint(String.valueOf(lastId));
+            replayJobRepository.save(job);
+        }
+        return false;
+    }
+
+    private String exceptionFilter(ReplayJob job, long afterId, List<Object> args) {
+        StringBuilder where = new StringBuilder("id > ? AND id <= ?");
+        args.add(afterId);
+        args.add(Long.parseLong(job.getEndPosition()));
+        if (job.getErrorType() != null) {
+            where.append(" AND error_type = ?");
+            args.add(job.getErrorType().name());
+        }
+        if (job.getFundNumber() != null) {
+            where.append(" AND fund_number = ?");
+            args.add(job.getFundNumber());
+        }
+        if (job.getFailureReason() != null) {
+            where.append(" AND failure_reason LIKE ?");
+            args.add("%" + job.getFailureReason() + "%");
+        }
+        if (job.getStartDate() != null) {
+            where.append(" AND created_at >= ?");
+            args.add(job.getStartDate());
+        }
+        if (job.getEndDate() != null) {
+            where.append(" AND created_at <= ?");
+            args.add(job.getEndDate());
+        }
+        return where.toString();
+    }
+
+    private void initDlqPositions(ReplayJob job) {
+        try (Consumer<String, String> consumer = createDlqConsumer(job)) {
+            List<TopicPartition> partitions = new ArrayList<>();
+            List<PartitionInfo> partitionInfos = consumer.partitionsFor(dlqTopic);
+            if (partitionInfos != null) {
+                partitionInfos.forEach(info -> partitions.add(new TopicPartition(dlqTopic, info.partition())));
+            }
+            Map<Integer, Long> beginning = new TreeMap<>();
+            Map<Integer, Long> end = new TreeMap<>();
+            consumer.beginningOffsets(partitions).forEach((partition, offset) -> beginning.put(partition.partition(), offset));
+            consumer.endOffsets(partitions).forEach((partition, offset) -> end.put(partition.partition(), offset));
+            job.setCheckpoint(encodePositions(beginning));
+            job.setEndPosition(encodePositions(end));
+            job.setTotalCandidates(end.entrySet().stream().mapToLong(e -> e.getValue() - beginning.getOrDefault(e.getKey(), 0L)).sum());
+        }
+    }
+
+    private boolean replayDlq(ReplayJob job, RateLimiter rateLimiter, AtomicBoolean stopRequested) throws InterruptedException {
+        Map<Integer, Long> positions = decodePositions(job.getCheckpoint());
+        Map<Integer, Long> end = decodePositions(job.getEndPosition());
+        try (Consumer<String, String> consumer = createDlqConsumer(job)) {
+            List<TopicPartition> partitions = new ArrayList<>();
+            end.forEach((partition, endOffset) -> {
+                positions.putIfAbsent(partition, 0L);
+                if (positions.get(partition) < endOffset) {
+                    partitions.add(new TopicPartition(dlqTopic, partition));
+                }
+            });
+            consumer.assign(partitions);
+            partitions.forEach(partition -> consumer.seek(partition, positions.get(partition.partition())));
+
+            while (!stopRequested.get()) {
+                List<TopicPartition> finished = new ArrayList<>();
+                partitions.removeIf(partition -> positions.get(partition.partition()) >= end.get(partition.partition()) && finished.add(partition));
+                if (partitions.isEmpty()) {
+                    return true;
+                }
+                consumer.pause(finished);
+                ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(1));
+                List<ReplayTask> chunk = new ArrayList<>();
+                long scanned = 0;
+                for (ConsumerRecord<String, String> record : records) {
+                    if (record.offset() >= end.get(record.partition())) {
+                        continue;
+                    }
+                    scanned++;
+                    if (matches(job, record)) {
+                        String message = record.value();
+                        chunk.add(new ReplayTask(jsonFieldExtractor.extractText(message, CLIENT_REFERENCE_FIELD),
+                                () -> Optional.of(tradeReplayProcessor.replayMessage(message)), record.offset()));
+                    }
+                }
+                replayChunk(job, chunk, rateLimiter);
+                // The position also moves past offsets with no record, such as transaction markers.
+                partitions.forEach(partition -> positions.put(partition.partition(),
+                        Math.min(consumer.position(partition), end.get(partition.partition()))));
+                job.setScanned(job.getScanned() + scanned);
+                job.setCheckpoint(encodePositions(positions));
+                replayJobRepository.save(job);
+            }
+        }
+        return false;
+    }
+
+    private boolean matches(ReplayJob job, ConsumerRecord<String, String> record) {
+        if (job.getStartDate() != null || job.getEndDate() != null) {
+            LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(record.timestamp()), ZoneId.systemDefault());
+            if ((job.getStartDate() != null && timestamp.isBefore(job.getStartDate()))
+                    || (job.getEndDate() != null && timestamp.isAfter(job.getEndDate()))) {
+                return false;
+            }
+        }
+        if (job.getFundNumber() != null && !job.getFundNumber().equals(jsonFieldExtractor.extractText(record.value(), FUND_NUMBER_FIELD))) {
+            return false;
+        }
+        if (job.getFailureReason() != null) {
+            Header reason = record.headers().lastHeader(KafkaHeaders.DLT_EXCEPTION_MESSAGE);
+            return reason != null && new String(reason.value(), StandardCharsets.UTF_8).contains(job.getFailureReason());
+        }
+        return true;
+    }
+
+    private Consumer<String, String> createDlqConsumer(ReplayJob job) {
+        Properties props = new Properties();
+        props.putAll(consumerFactory.getConfigurationProperties());
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(chunkSize));
+        // Positions are kept in the job; the group never commits.
+        String groupId = "trade-replay-" + (job.getId() == null ? "new" : job.getId());
+        return consumerFactory.createConsumer(groupId, null, null, props);
+    }
+
+    /**
+     * Hands the chunk to the processing lanes, keyed by client reference so the same trade is never replayed twice
+     * at once, and waits for all of it.
+     */
+    private void replayChunk(ReplayJob job, List<ReplayTask> chunk, RateLimiter rateLimiter) throws InterruptedException {
+        LongAdder replayed = new LongAdder();
+        LongAdder skipped = new LongAdder();
+        LongAdder failed = new LongAdder();
+        AtomicReference<String> lastError = new AtomicReference<>();
+        List<CompletableFuture<Void>> processing = new ArrayList<>(chunk.size());
+        for (ReplayTask task : chunk) {
+            rateLimiter.acquire();
+            processing.add(tradeProcessingExecutor.execute(task.clientReferenceNumber, () -> {
+                try {
+                    ProcessingOutcome outcome = task.replay.call().orElse(null);
+                    if (outcome == ProcessingOutcome.ACCEPTED) {
+                        replayed.increment();
+                    } else if (outcome == ProcessingOutcome.REJECTED) {
+                        failed.increment();
+                    } else if (outcome == ProcessingOutcome.UNRECORDED) {
+                        failed.increment();
+                        lastError.set("Neither a trade nor an exception could be saved for " + describe(job, task));
+                    } else {
+                        // Already replayed, a duplicate or without a client reference: nothing was stored.
+                        skipped.increment();
+                    }
+                } catch (Exception e) {
+                    log.warn("Replay job {} could not replay {}.", job.getId(), describe(job, task), e);
+                    failed.increment();
+                    lastError.set(describe(e));
+                }
+            }));
+        }
+        try {
+            CompletableFuture.allOf(processing.toArray(new CompletableFuture[0])).get();
+        } catch (ExecutionException e) {
+            // Each task handles its own failure.
+            throw new IllegalStateException(e.getCause());
+        }
+        job.setReplayed(job.getReplayed() + replayed.sum());
+        job.setSkipped(job.getSkipped() + skipped.sum());
+        job.setFailed(job.getFailed() + failed.sum());
+        if (lastError.get() != null) {
+            job.setLastError(lastError.get());
+        }
+    }
+
+    static String encodePositions(Map<Integer, Long> positions) {
+        StringBuilder encoded = new StringBuilder();
+        positions.forEach((partition, offset) -> {
+            if (encoded.length() > 0) {
+                encoded.append(',');
+            }
+            encoded.append(partition).append(':').append(offset);
+        });
+        return encoded.toString();
+    }
+
+    static Map<Integer, Long> decodePositions(String encoded) {
+        Map<Integer, Long> positions = new TreeMap<>();
+        if (encoded != null && !encoded.isEmpty()) {
+            for (String position : encoded.split(",")) {
+                int separator = position.indexOf(':');
+                positions.put(Integer.parseInt(position.substring(0, separator)), Long.parseLong(position.substring(separator + 1)));
+            }
+        }
+        return positions;
+    }
+
+    private static String describe(ReplayJob job, ReplayTask task) {
+        return (job.getSource() == ReplaySource.DLQ ? "DLQ offset " : "trade exception ") + task.id;
+    }
+
+    private static String describe(Exception e) {
+        String description = e.getClass().getSimpleName() + ": " + e.getMessage();
+        return description.length() > 1000 ? description.substring(0, 997) + "..." : description;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    private static final class ReplayTask {
+        private final String clientReferenceNumber;
+        /** Empty if the failure has gone, e.g. replayed by an earlier run. */
+        private final Callable<Optional<ProcessingOutcome>> replay;
+        /** The exception id or DLQ offset, for logging. */
+        private final long id;
+
+        private ReplayTask(String clientReferenceNumber, Callable<Optional<ProcessingOutcome>> replay, long id) {
+            this.clientReferenceNumber = clientReferenceNumber;
+            this.replay = replay;
+            this.id = id;
+        }
+    }
+}
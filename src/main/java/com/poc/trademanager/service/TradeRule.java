@@ -0,0 +1,16 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.dto.TradeDetailsDto;
+
+import java.time.LocalDate;
+
+/**
+ * A compiled validation rule. {@link #test} runs for every trade and should not allocate; the failure message is
+ * only rendered for trades that fail.
+ */
+interface TradeRule {
+
+    boolean test(TradeDetailsDto trade, LocalDate today);
+
+    String failureMessage(TradeDetailsDto trade, LocalDate today);
+}
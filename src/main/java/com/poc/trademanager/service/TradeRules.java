@@ -0,0 +1,139 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.dto.TradeDetailsDto;
+import com.poc.trademanager.dto.TradeRuleType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Compiles a rule's type and parameter into a {@link TradeRule}.
+ */
+final class TradeRules {
+
+    private static final TradeRule TRADE_DATE_IS_TODAY = new TradeRule() {
+        @Override
+        public boolean test(TradeDetailsDto trade, LocalDate today) {
+            return today.equals(trade.getTradeDate());
+        }
+
+        @Override
+        public String failureMessage(TradeDetailsDto trade, LocalDate today) {
+            if (trade.getTradeDate() == null) {
+                return "Trade date is null.";
+            }
+            return "Trade date (" + trade.getTradeDate() + ") is not the current date (" + today + ").";
+        }
+    };
+
+    private static final TradeRule SETTLE_DATE_IN_FUTURE = new TradeRule() {
+        @Override
+        public boolean test(TradeDetailsDto trade, LocalDate today) {
+            return trade.getSettleDate() != null && trade.getSettleDate().isAfter(today);
+        }
+
+        @Override
+        public String failureMessage(TradeDetailsDto trade, LocalDate today) {
+            if (trade.getSettleDate() == null) {
+                return "Settlement date is null.";
+            }
+            return "Settlement date (" + trade.getSettleDate() + ") is not in the future.";
+        }
+    };
+
+    private static final TradeRule PRINCIPAL_EQUALS_QUANTITY_TIMES_PRICE = new TradeRule() {
+        @Override
+        public boolean test(TradeDetailsDto trade, LocalDate today) {
+            return trade.getQuantity() != null && trade.getPrice() != null && trade.getPrincipal() != null
+                    && PrincipalCheck.matches(trade.getQuantity(), trade.getPrice(), trade.getPrincipal());
+        }
+
+        @Override
+        public String failureMessage(TradeDetailsDto trade, LocalDate today) {
+            if (trade.getQuantity() == null || trade.getPrice() == null || trade.getPrincipal() == null) {
+                return "Quantity, price, or principal is null.";
+            }
+            return "Principal amount (" + PrincipalCheck.providedPrincipal(trade.getPrincipal())
+                    + ") does not equal quantity * price ("
+                    + PrincipalCheck.calculatedPrincipal(trade.getQuantity(), trade.getPrice()) + ").";
+        }
+    };
+
+    private TradeRules() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the rule needs a parameter and has none, or an invalid one
+     */
+    static TradeRule compile(TradeRuleType type, String parameter) {
+        switch (type) {
+            case TRADE_DATE_IS_TODAY:
+                return TRADE_DATE_IS_TODAY;
+            case SETTLE_DATE_IN_FUTURE:
+                return SETTLE_DATE_IN_FUTURE;
+            case PRINCIPAL_EQUALS_QUANTITY_TIMES_PRICE:
+                return PRINCIPAL_EQUALS_QUANTITY_TIMES_PRICE;
+            case MAX_SETTLEMENT_DAYS:
+                try {
+                    return maxSettlementDays(Integer.parseInt(requireParameter(type, parameter)));
+                } catch (NumberFormatException e) {
+                    throw invalidParameter(type, parameter);
+                }
+            case MAX_PRINCIPAL:
+                try {
+                    return maxPrincipal(new BigDecimal(requireParameter(type, parameter)));
+                } catch (NumberFormatException e) {
+                    throw invalidParameter(type, parameter);
+                }
+            default:
+                throw new IllegalArgumentException("Unsupported rule type " + type);
+        }
+    }
+
+    private static IllegalArgumentException invalidParameter(TradeRuleType type, String parameter) {
+        return new IllegalArgumentException("Invalid parameter '" + parameter + "' for rule type " + type);
+    }
+
+    private static String requireParameter(TradeRuleType type, String parameter) {
+        if (parameter == null || parameter.trim().isEmpty()) {
+            throw new IllegalArgumentException("Rule type " + type + " needs a parameter");
+        }
+        return parameter.trim();
+    }
+
+    /**
+     * Missing dates are left to the date rules.
+     */
+    private static TradeRule maxSettlementDays(int days) {
+        return new TradeRule() {
+            @Override
+            public boolean test(TradeDetailsDto trade, LocalDate today) {
+                return trade.getTradeDate() == null || trade.getSettleDate() == null
+                        || trade.getSettleDate().toEpochDay() - trade.getTradeDate().toEpochDay() <= days;
+            }
+
+            @Override
+            public String failureMessage(TradeDetailsDto trade, LocalDate today) {
+                return "Settlement date (" + trade.getSettleDate() + ") is more than " + days
+                        + " days after the trade date (" + trade.getTradeDate() + ").";
+            }
+        };
+    }
+
+    /**
+     * A missing principal is left to the principal rule.
+     */
+    private static TradeRule maxPrincipal(BigDecimal limit) {
+        return new TradeRule() {
+            @Override
+            public boolean test(TradeDetailsDto trade, LocalDate today) {
+                return trade.getPrincipal() == null || trade.getPrincipal().compareTo(limit) <= 0;
+            }
+
+            @Override
+            public String failureMessage(TradeDetailsDto trade, LocalDate today) {
+                return "Principal amount (" + trade.getPrincipal() + ") exceeds the limit (" + limit + ").";
+            }
+        };
+    }
+}
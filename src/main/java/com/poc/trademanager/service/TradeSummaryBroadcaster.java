@@ -0,0 +1,71 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.dto.TradeSummaryDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Pushes trade summary changes to subscribed dashboards over Server-Sent Events. A subscriber first receives a
+ * {@code snapshot} event with every fund, then {@code delta} events carrying the current counts of just the funds
+ * that changed. Changes are coalesced and sent at most once per publish interval.
+ */
+@Component
+public class TradeSummaryBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeSummaryBroadcaster.class);
+
+    private static final int HEARTBEAT_INTERVALS = 15;
+
+    private final TradeSummaryCounters tradeSummaryCounters;
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private int idleIntervals;
+
+    @Value("${app.summary.stream.timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    public TradeSummaryBroadcaster(TradeSummaryCounters tradeSummaryCounters) {
+        this.tradeSummaryCounters = tradeSummaryCounters;
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        emitters.add(emitter);
+        send(emitter, SseEmitter.event().name("snapshot").data(tradeSummaryCounters.getSummary(), MediaType.APPLICATION_JSON));
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${app.summary.stream.publish-interval-ms:1000}")
+    public void publishChanges() {
+        List<TradeSummaryDto> changes = tradeSummaryCounters.drainChanges();
+        if (!changes.isEmpty()) {
+            idleIntervals = 0;
+            emitters.forEach(emitter -> send(emitter, SseEmitter.event().name("delta").data(changes, MediaType.APPLICATION_JSON)));
+        } else if (++idleIntervals >= HEARTBEAT_INTERVALS) {
+            // Keeps idle connections from being closed by proxies.
+            idleIntervals = 0;
+            emitters.forEach(emitter -> send(emitter, SseEmitter.event().comment("heartbeat")));
+        }
+    }
+
+    private void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping trade summary subscriber: {}", e.getMessage());
+            emitters.remove(emitter);
+            emitter.completeWithError(e);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.DatabaseStorageService;
+import com.poc.trademanager.dto.TradeSummaryDto;
+import com.poc.trademanager.entity.TradeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory per-fund trade counts behind the summary page. Seeded from the database once all beans exist, before
+ * the listener containers and web server start, then kept current by {@link MessageProcessingService}: each count
+ * is applied when the transaction that saved the trade or exception commits.
+ * <p>
+ * Counts only include trades processed by this instance since it started on top of the seeded totals; with several
+ * instances each one shows its own view until it is restarted. Exceptions without a fund number, not yet reached by
+ * {@link TradeExceptionFundNumberBackfill}, are seeded as {@link TradeException#UNKNOWN_FUND} and moved to their
+ * fund as the backfill fills it in.
+ */
+@Component
+public class TradeSummaryCounters implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeSummaryCounters.class);
+
+    private final DatabaseStorageService databaseStorageService;
+    private final Map<String, FundCounters> counters = new ConcurrentHashMap<>();
+    private final Set<String> changedFunds = ConcurrentHashMap.newKeySet();
+
+    public TradeSummaryCounters(DatabaseStorageService databaseStorageService) {
+        this.databaseStorageService = databaseStorageService;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (TradeSummaryDto summary : databaseStorageService.getTradeSummary()) {
+            FundCounters fund = countersFor(summary.getFundNumber());
+            fund.created.add(summary.getTradesCreated());
+            fund.exceptions.add(summary.getExceptions());
+        }
+        log.info("Trade summary counters seeded for {} funds.", counters.size());
+    }
+
+    public void recordCreated(String fundNumber) {
+        afterCommit(() -> countersFor(fundNumber).created.increment(), fundNumber);
+    }
+
+    public void recordException(String fundNumber) {
+        afterCommit(() -> countersFor(fundNumber).exceptions.increment(), fundNumber);
+    }
+
+    /**
+     * For an exception row deleted because its trade is being replayed; the replay records its own outcome.
+     */
+    public void recordExceptionRemoved(String fundNumber) {
+        String seededAs = fundNumber != null ? fundNumber : TradeException.UNKNOWN_FUND;
+        afterCommit(() -> countersFor(seededAs).exceptions.decrement(), seededAs);
+    }
+
+    /**
+     * For exception rows that had no fund number when the counters were seeded and have since been given one.
+     *
+     * @param backfilled the number of rows given each fund number
+     */
+    public void recordExceptionsBackfilled(Map<String, Long> backfilled) {
+        backfilled.forEach((fundNumber, count) -> {
+            if (!TradeException.UNKNOWN_FUND.equals(fundNumber)) {
+                afterCommit(() -> countersFor(TradeException.UNKNOWN_FUND).exceptions.add(-count), TradeException.UNKNOWN_FUND);
+                afterCommit(() -> countersFor(fundNumber).exceptions.add(count), fundNumber);
+            }
+        });
+    }
+
+    public List<TradeSummaryDto> getSummary() {
+        return toSummaries(counters.keySet());
+    }
+
+    /**
+     * Returns the current counts of every fund that has changed since the previous call.
+     */
+    public List<TradeSummaryDto> drainChanges() {
+        List<String> drained = new ArrayList<>(changedFunds);
+        changedFunds.removeAll(drained);
+        return toSummaries(drained);
+    }
+
+    private List<TradeSummaryDto> toSummaries(Collection<String> fundNumbers) {
+        List<TradeSummaryDto> summaries = new ArrayList<>(fundNumbers.size());
+        for (String fundNumber : fundNumbers) {
+            FundCounters fund = counters.get(fundNumber);
+            long created = fund.created.sum();
+            long exceptions = fund.exceptions.sum();
+            summaries.add(new TradeSummaryDto(fundNumber, created + exceptions, created, exceptions));
+        }
+        return summaries;
+    }
+
+    private void afterCommit(Runnable update, String fundNumber) {
+        Runnable apply = () -> {
+            update.run();
+            changedFunds.add(fundNumber);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    private FundCounters countersFor(String fundNumber) {
+        return counters.computeIfAbsent(fundNumber, fn -> new FundCounters());
+    }
+
+    private static final class FundCounters {
+        private final LongAdder created = new LongAdder();
+        private final LongAdder exceptions = new LongAdder();
+    }
+}
@@ -0,0 +1,241 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.dto.FundReference;
+import com.poc.trademanager.dto.RuleScope;
+import com.poc.trademanager.dto.TradeDetailsDto;
+import com.poc.trademanager.dto.TradeRuleType;
+import com.poc.trademanager.entity.TradeValidationRule;
+import com.poc.trademanager.repository.TradeValidationRuleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Validates trades against the rules in {@code trade_validation_rules}. The enabled rules are compiled into one array
+ * per fund, so validating a trade is a loop over that array; the table is polled every
+ * {@code app.validation.refresh-interval-ms} and the rules are recompiled when it changed, without a restart. A rule
+ * that fails to compile leaves the previous rules in place.
+ * <p>
+ * Rules apply in scope order, every trade first, then the fund's type, then the fund itself, and by id within a
+ * scope. An empty table is seeded with the checks every trade has always had.
+ */
+@Component
+public class TradeValidationEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeValidationEngine.class);
+
+    private final TradeValidationRuleRepository ruleRepository;
+
+    private volatile CompiledRules compiledRules;
+    private long loadedCount = -1;
+    private LocalDateTime loadedUpdatedAt;
+
+    public TradeValidationEngine(TradeValidationRuleRepository ruleRepository) {
+        this.ruleRepository = ruleRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (ruleRepository.count() == 0) {
+            ruleRepository.saveAll(List.of(
+                    new TradeValidationRule(RuleScope.ALL, null, TradeRuleType.TRADE_DATE_IS_TODAY, null),
+                    new TradeValidationRule(RuleScope.ALL, null, TradeRuleType.SETTLE_DATE_IN_FUTURE, null),
+                    new TradeValidationRule(RuleScope.ALL, null, TradeRuleType.PRINCIPAL_EQUALS_QUANTITY_TIMES_PRICE, null)));
+            log.info("Seeded the default trade validation rules.");
+        }
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${app.validation.refresh-interval-ms:30000}",
+            initialDelayString = "${app.validation.refresh-interval-ms:30000}")
+    public synchronized void refresh() {
+        if (ruleRepository.count() != loadedCount || !Objects.equals(ruleRepository.findLastUpdatedAt(), loadedUpdatedAt)) {
+            reload();
+        }
+    }
+
+    /**
+     * Reads and compiles the enabled rules.
+     *
+     * @throws IllegalArgumentException if a rule does not compile and there are no previous rules to keep
+     */
+    public synchronized void reload() {
+        // Read the version first: a change made while the rules are read is picked up by the next refresh.
+        long count = ruleRepository.count();
+        LocalDateTime updatedAt = ruleRepository.findLastUpdatedAt();
+        List<TradeValidationRule> rules = ruleRepository.findByEnabledTrueOrderByIdAsc();
+        loadedCount = count;
+        loadedUpdatedAt = updatedAt;
+        try {
+            compiledRules = CompiledRules.compile(rules);
+            log.info("Compiled {} trade validation rules.", rules.size());
+        } catch (IllegalArgumentException e) {
+            if (compiledRules == null) {
+                throw e;
+            }
+            log.error("Trade validation rules did not compile, keeping the previous rules: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Checks a trade against the rules for its fund.
+     *
+     * @return the failure messages in rule order, or an empty list if the trade passed
+     */
+    public List<String> validate(TradeDetailsDto trade, FundReference fund) {
+        TradeRule[] rules = compiledRules.forFund(fund.getFundNumber(), fund.getFundType());
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        List<String> errors = null;
+        for (TradeRule rule : rules) {
+            if (!rule.test(trade, today)) {
+                if (errors == null) {
+                    errors = new ArrayList<>(rules.length);
+                }
+                errors.add(rule.failureMessage(trade, today));
+            }
+        }
+        return errors == null ? Collections.emptyList() : errors;
+    }
+
+    public List<TradeValidationRule> getRules() {
+        return ruleRepository.findAll(Sort.by("id"));
+    }
+
+    /**
+     * Saves a new or changed rule and recompiles, so it applies to the next trade rather than after the next refresh.
+     *
+     * @throws IllegalArgumentException if the rule does not compile
+     */
+    public TradeValidationRule saveRule(TradeValidationRule rule) {
+        check(rule);
+        TradeValidationRule saved = ruleRepository.save(rule);
+        reload();
+        return saved;
+    }
+
+    public boolean hasRule(Long id) {
+        return ruleRepository.existsById(id);
+    }
+
+    public boolean deleteRule(Long id) {
+        if (!ruleRepository.existsById(id)) {
+            return false;
+        }
+        ruleRepository.deleteById(id);
+        reload();
+        return true;
+    }
+
+    private static void check(TradeValidationRule rule) {
+        if (rule.getScope() == null || rule.getRuleType() == null) {
+            throw new IllegalArgumentException("Scope and rule type are required");
+        }
+        if (rule.getScope() != RuleScope.ALL && (rule.getScopeValue() == null || rule.getScopeValue().trim().isEmpty())) {
+            throw new IllegalArgumentException("A " + rule.getScope() + " rule needs a scope value");
+        }
+        TradeRules.compile(rule.getRuleType(), rule.getParameter());
+    }
+
+    /**
+     * One generation of compiled rules. The array for a fund is merged on first use and kept until the fund's type
+     * changes or the rules are recompiled.
+     */
+    private static final class CompiledRules {
+
+        private final TradeRule[] allTrades;
+        private final Map<String, TradeRule[]> byFundType;
+        private final Map<String, TradeRule[]> byFund;
+        private final ConcurrentHashMap<String, FundRules> merged = new ConcurrentHashMap<>();
+
+        private CompiledRules(TradeRule[] allTrades, Map<String, TradeRule[]> byFundType, Map<String, TradeRule[]> byFund) {
+            this.allTrades = allTrades;
+            this.byFundType = byFundType;
+            this.byFund = byFund;
+        }
+
+        static CompiledRules compile(List<TradeValidationRule> rules) {
+            List<TradeRule> allTrades = new ArrayList<>();
+            Map<String, List<TradeRule>> byFundType = new HashMap<>();
+            Map<String, List<TradeRule>> byFund = new HashMap<>();
+            for (TradeValidationRule rule : rules) {
+                TradeRule compiled;
+                try {
+                    compiled = TradeRules.compile(rule.getRuleType(), rule.getParameter());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Rule " + rule.getId() + ": " + e.getMessage(), e);
+                }
+                if (rule.getScope() == RuleScope.ALL) {
+                    allTrades.add(compiled);
+                    continue;
+                }
+                String scopeValue = rule.getScopeValue() == null ? "" : rule.getScopeValue().trim();
+                if (scopeValue.isEmpty()) {
+                    throw new IllegalArgumentException("Rule " + rule.getId() + ": a " + rule.getScope() + " rule needs a scope value");
+                }
+                Map<String, List<TradeRule>> target = rule.getScope() == RuleScope.FUND_TYPE ? byFundType : byFund;
+                target.computeIfAbsent(scopeValue, key -> new ArrayList<>()).add(compiled);
+            }
+            return new CompiledRules(allTrades.toArray(new TradeRule[0]), toArrays(byFundType), toArrays(byFund));
+        }
+
+        TradeRule[] forFund(String fundNumber, String fundType) {
+            if (byFundType.isEmpty() && byFund.isEmpty()) {
+                return allTrades;
+            }
+            FundRules fundRules = merged.get(fundNumber);
+            if (fundRules == null || !Objects.equals(fundRules.fundType, fundType)) {
+                fundRules = new FundRules(fundType, concat(allTrades,
+                        fundType == null ? null : byFundType.get(fundType), byFund.get(fundNumber)));
+                merged.put(fundNumber, fundRules);
+            }
+            return fundRules.rules;
+        }
+
+        private static TradeRule[] concat(TradeRule[] allTrades, TradeRule[] fundType, TradeRule[] fund) {
+            if (fundType == null && fund == null) {
+                return allTrades;
+            }
+            int fundTypeLength = fundType == null ? 0 : fundType.length;
+            int fundLength = fund == null ? 0 : fund.length;
+            TradeRule[] rules = Arrays.copyOf(allTrades, allTrades.length + fundTypeLength + fundLength);
+            if (fundType != null) {
+                System.arraycopy(fundType, 0, rules, allTrades.length, fundTypeLength);
+            }
+            if (fund != null) {
+                System.arraycopy(fund, 0, rules, allTrades.length + fundTypeLength, fundLength);
+            }
+            return rules;
+        }
+
+        private static Map<String, TradeRule[]> toArrays(Map<String, List<TradeRule>> lists) {
+            Map<String, TradeRule[]> arrays = new HashMap<>();
+            lists.forEach((key, list) -> arrays.put(key, list.toArray(new TradeRule[0])));
+            return arrays;
+        }
+    }
+
+    private static final class FundRules {
+        private final String fundType;
+        private final TradeRule[] rules;
+
+        private FundRules(String fundType, TradeRule[] rules) {
+            this.fundType = fundType;
+            this.rules = rules;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.poc.trademanager.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted index from case-folded character trigrams to document ids. Any document containing a string contains
+ * all of that string's trigrams, so the documents listed under every trigram of a filter are a superset of those
+ * matching it; callers still have to check the candidates.
+ * <p>
+ * Each posting list is a delta and varint encoded byte array. Ids may arrive slightly out of order and, rarely,
+ * more than once; decoding sorts and de-duplicates them.
+ */
+public class TrigramIndex {
+
+    private static final int SNAPSHOT_VERSION = 1;
+
+    /**
+     * Intersecting the rarest few trigrams already narrows the candidates to nearly the exact matches; the common
+     * ones would only cost decoding time.
+     */
+    private static final int MAX_INTERSECTED_TRIGRAMS = 6;
+
+    private final Map<Long, Postings> postings = new ConcurrentHashMap<>();
+
+    public void add(long id, String text) {
+        for (long trigram : trigrams(text)) {
+            postings.computeIfAbsent(trigram, key -> new Postings()).add(id);
+        }
+    }
+
+    /**
+     * Returns the sorted ids of every document that may contain the filter, ignoring case, or {@code null} if the
+     * filter is shorter than a trigram and the index cannot narrow it down.
+     */
+    public long[] candidates(String filter) {
+        Set<Long> filterTrigrams = trigrams(filter);
+        if (filterTrigrams.isEmpty()) {
+            return null;
+        }
+        List<Postings> lists = new ArrayList<>(filterTrigrams.size());
+        for (long trigram : filterTrigrams) {
+            Postings list = postings.get(trigram);
+            if (list == null) {
+                return new long[0];
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(Postings::size));
+
+        long[] result = lists.get(0).decode();
+        for (int i = 1; i < Math.min(lists.size(), MAX_INTERSECTED_TRIGRAMS) && result.length > 0; i++) {
+            result = intersect(result, lists.get(i).decode());
+        }
+        return result;
+    }
+
+    public int getTrigramCount() {
+        return postings.size();
+    }
+
+    public long getSizeInBytes() {
+        return postings.values().stream().mapToLong(Postings::size).sum();
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(SNAPSHOT_VERSION);
+        for (Map.Entry<Long, Postings> entry : postings.entrySet()) {
+            out.writeLong(entry.getKey());
+            entry.getValue().writeTo(out);
+        }
+        // Trigram keys are never negative, so -1 marks the end; the map may still be growing while it is written.
+        out.writeLong(-1L);
+    }
+
+    public static TrigramIndex readFrom(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported trigram index snapshot version " + version);
+        }
+        TrigramIndex index = new TrigramIndex();
+        long trigram;
+        while ((trigram = in.readLong()) != -1L) {
+            index.postings.put(trigram, Postings.readFrom(in));
+        }
+        return index;
+    }
+
+    static Set<Long> trigrams(String text) {
+        Set<Long> trigrams = new HashSet<>();
+        if (text == null) {
+            return trigrams;
+        }
+        for (int i = 0; i + 2 < text.length(); i++) {
+            long c0 = Character.toLowerCase(text.charAt(i));
+            long c1 = Character.toLowerCase(text.charAt(i + 1));
+            long c2 = Character.toLowerCase(text.charAt(i + 2));
+            trigrams.add(c0 << 32 | c1 << 16 | c2);
+        }
+        return trigrams;
+    }
+
+    private static long[] intersect(long[] left, long[] right) {
+        long[] result = new long[Math.min(left.length, right.length)];
+        int i = 0, j = 0, k = 0;
+        while (i < left.length && j < right.length) {
+            if (left[i] < right[j]) {
+                i++;
+            } else if (left[i] > right[j]) {
+                j++;
+            } else {
+                result[k++] = left[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+    private static final class Postings {
+        private byte[] bytes = new byte[8];
+        private int length;
+        private int count;
+        private long lastId;
+
+        synchronized void add(long id) {
+            long delta = id - lastId;
+            lastId = id;
+            // Zigzag so that an id arriving out of order still encodes to a short varint.
+            long value = (delta << 1) ^ (delta >> 63);
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+            count++;
+        }
+
+        synchronized int size() {
+            return length;
+        }
+
+        synchronized long[] decode() {
+            long[] ids = new long[count];
+            long id = 0;
+            int position = 0;
+            for (int n = 0; n < count; n++) {
+                long value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[position++];
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                id += (value >>> 1) ^ -(value & 1);
+                ids[n] = id;
+            }
+            Arrays.sort(ids);
+            int distinct = 0;
+            for (int n = 0; n < ids.length; n++) {
+                if (n == 0 || ids[n] != ids[n - 1]) {
+                    ids[distinct++] = ids[n];
+                }
+            }
+            return distinct == ids.length ? ids : Arrays.copyOf(ids, distinct);
+        }
+
+        synchronized void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(count);
+            out.writeLong(lastId);
+            out.writeInt(length);
+            out.write(bytes, 0, length);
+        }
+
+        static Postings readFrom(DataInputStream in) throws IOException {
+            Postings postings = new Postings();
+            postings.count = in.readInt();
+            postings.lastId = in.readLong();
+            postings.length = in.readInt();
+            postings.bytes = new byte[Math.max(8, postings.length)];
+            in.readFully(postings.bytes, 0, postings.length);
+            return postings;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+}
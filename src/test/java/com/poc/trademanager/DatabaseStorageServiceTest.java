@@ -1,17 +1,39 @@
 package com.poc.trademanager;
 
+import com.poc.trademanager.dto.CursorPage;
+import com.poc.trademanager.dto.JsonData;
+import com.poc.trademanager.dto.KeysetCursor;
 import com.poc.trademanager.entity.JsonDoc;
+import com.poc.trademanager.entity.PayloadCodec;
 import com.poc.trademanager.repository.JsonDocRepository;
+import com.poc.trademanager.service.JsonDocArchiver;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureTestEntityManager;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest
@@ -33,6 +55,25 @@ class DatabaseStorageServiceTest {
     @Autowired
     private JsonDocRepository jsonDocRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JsonDocArchiver jsonDocArchiver;
+
+    @Value("${app.archive.directory}")
+    private Path archiveDirectory;
+
+    @AfterEach
+    void deleteArchiveSegments() throws IOException {
+        // The next run starts with an empty database, which the segments would no longer match.
+        try (Stream<Path> files = Files.list(archiveDirectory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
     @Test
     @Transactional
     void testSaveRawMessage() {
@@ -50,4 +91,153 @@ class DatabaseStorageServiceTest {
         assertThat(foundDoc.getData()).isEqualTo(jsonMessage);
         assertThat(foundDoc.getMessageKey()).isNotNull();
     }
+
+    @Test
+    @Transactional
+    void testContentFilterMatchesUncompressedMessages() {
+        // Given
+        String matching = "{\"clientReferenceNumber\":\"CRN-PLAIN-1\",\"fundNumber\":\"F0001\",\"securityId\":\"US0378331005\"}";
+        String other = "{\"clientReferenceNumber\":\"CRN-PLAIN-2\",\"fundNumber\":\"F0002\",\"securityId\":\"US5949181045\"}";
+        JsonDoc saved = databaseStorageService.saveRawMessage(matching);
+        databaseStorageService.saveRawMessage(other);
+        entityManager.flush();
+        entityManager.clear();
+
+        // When
+        String stored = jdbcTemplate.queryForObject("SELECT data FROM json_docs WHERE id = ?", String.class, saved.getId());
+        LocalDate today = LocalDate.now();
+        Page<JsonData> page = databaseStorageService.getDataByDateRange(today, today, "US0378331005", PageRequest.of(0, 10));
+        CursorPage<JsonData> cursorPage = databaseStorageService.getDataAfterCursor(today, today, "US0378331005", null, 10);
+
+        // Then
+        assertThat(stored).isEqualTo(matching);
+        assertThat(PayloadCodec.isEncoded(stored)).isFalse();
+        assertThat(page.getTotalElements()).isEqualTo(1);
+        assertThat(page.getContent().get(0).getJsonData()).isEqualTo(matching);
+        assertThat(cursorPage.getContent()).extracting(JsonData::getId).containsExactly(saved.getId());
+    }
+
+    @Test
+    void testContentFilterIsALikePattern() {
+        // Given messages a LIKE '%50%_off%' would all match, and one it would not
+        List<JsonDoc> saved = databaseStorageService.saveRawMessages(Arrays.asList(
+                "{\"clientReferenceNumber\":\"CRN-WILDCARD-1\",\"note\":\"50%_off\"}",
+                "{\"clientReferenceNumber\":\"CRN-WILDCARD-2\",\"note\":\"50 off\"}",
+                "{\"clientReferenceNumber\":\"CRN-WILDCARD-3\",\"note\":\"5000%Xoff\"}",
+                "{\"clientReferenceNumber\":\"CRN-WILDCARD-4\",\"note\":\"full price\"}"));
+        LocalDate today = LocalDate.now();
+
+        // When
+        Page<JsonData> wildcards = databaseStorageService.getDataByDateRange(today, today, "50%_off", PageRequest.of(0, 10));
+        CursorPage<JsonData> escaped = databaseStorageService.getDataAfterCursor(today, today, "50\\%\\_off", null, 10);
+
+        // Then
+        assertThat(wildcards.getContent()).extracting(JsonData::getId).containsExactlyInAnyOrder(
+                saved.get(0).getId(), saved.get(1).getId(), saved.get(2).getId());
+        assertThat(escaped.getContent()).extracting(JsonData::getId).containsExactly(saved.get(0).getId());
+        assertThat(DatabaseStorageService.longestLiteral("50\\%\\_off%x")).isEqualTo("50%_off");
+        assertThat(DatabaseStorageService.likePattern("50%_OFF").matcher("{\"note\":\"5000%Xoff\"}").find()).isTrue();
+    }
+
+    @Test
+    void testUnindexedContentFilterCountsEveryMatch() {
+        // Given
+        databaseStorageService.saveRawMessages(Arrays.asList(
+                "{\"clientReferenceNumber\":\"CRN-COUNTED-1\",\"note\":\"Q!\"}",
+                "{\"clientReferenceNumber\":\"CRN-COUNTED-2\",\"note\":\"Q!\"}",
+                "{\"clientReferenceNumber\":\"CRN-COUNTED-3\",\"note\":\"Q!\"}"));
+        LocalDate today = LocalDate.now();
+
+        // When the two-character filter is too short for the content index, over an open and a long range
+        Page<JsonData> first = databaseStorageService.getDataByDateRange(null, today, "Q!", PageRequest.of(0, 1));
+        CursorPage<JsonData> scrolled = databaseStorageService.getDataAfterCursor(today.minusDays(60), today, "Q!", null, 10);
+
+        // Then
+        assertThat(first.getContent()).hasSize(1);
+        assertThat(first.getTotalElements()).isEqualTo(3);
+        assertThat(scrolled.getContent()).hasSize(3);
+    }
+
+    @Test
+    void testArchivedMessagesAreStillFound() {
+        // Given three messages from 100 days ago, two of which are archived
+        LocalDate day = LocalDate.now().minusDays(100);
+        List<JsonDoc> saved = databaseStorageService.saveRawMessages(Arrays.asList(
+                "{\"clientReferenceNumber\":\"CRN-ARCHIVED-1\",\"fundNumber\":\"F0001\"}",
+                "{\"clientReferenceNumber\":\"CRN-ARCHIVED-2\",\"fundNumber\":\"F0002\"}",
+                "{\"clientReferenceNumber\":\"CRN-ARCHIVED-3\",\"fundNumber\":\"F0003\"}"));
+        for (int i = 0; i < saved.size(); i++) {
+            jdbcTemplate.update("UPDATE json_docs SET created_at = ? WHERE id = ?",
+                    Timestamp.valueOf(day.atTime(12, i)), saved.get(i).getId());
+        }
+        jsonDocArchiver.archive();
+        JsonDoc recent = databaseStorageService.saveRawMessage("{\"clientReferenceNumber\":\"CRN-ARCHIVED-4\"}");
+        jdbcTemplate.update("UPDATE json_docs SET created_at = ? WHERE id = ?", Timestamp.valueOf(day.atTime(12, 30)), recent.getId());
+
+        // When
+        Page<JsonData> page = databaseStorageService.getDataByDateRange(day, day, null, PageRequest.of(0, 10));
+        Page<JsonData> filtered = databaseStorageService.getDataByDateRange(day, day, "crn-archived-2", PageRequest.of(0, 10));
+        CursorPage<JsonData> firstPage = databaseStorageService.getDataAfterCursor(day, day, null, null, 2);
+        CursorPage<JsonData> secondPage = databaseStorageService.getDataAfterCursor(day, day, null, KeysetCursor.decode(firstPage.getNextCursor()), 2);
+
+        // Then
+        assertThat(jsonDocRepository.findById(saved.get(0).getId())).isEmpty();
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(page.getContent()).extracting(JsonData::getId).containsExactly(
+                recent.getId(), saved.get(2).getId(), saved.get(1).getId(), saved.get(0).getId());
+        assertThat(filtered.getContent()).extracting(JsonData::getJsonData).containsExactly(saved.get(1).getData());
+        assertThat(firstPage.getContent()).extracting(JsonData::getId).containsExactly(recent.getId(), saved.get(2).getId());
+        assertThat(secondPage.getContent()).extracting(JsonData::getId).containsExactly(saved.get(1).getId(), saved.get(0).getId());
+        assertThat(databaseStorageService.getDataByMessageKey(saved.get(0).getMessageKey()))
+                .map(JsonData::getJsonData).contains(saved.get(0).getData());
+    }
+
+    @Test
+    void testDeepPagesOfAnArchivedRangeAreSeekedTo() {
+        // Given 200 messages archived into several segments, and 25 in the table at times in between them
+        LocalDate day = LocalDate.now().minusDays(120);
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            messages.add("{\"clientReferenceNumber\":\"CRN-DEEP-" + i + "\"}");
+        }
+        List<JsonDoc> archived = databaseStorageService.saveRawMessages(messages);
+        for (int i = 0; i < archived.size(); i++) {
+            jdbcTemplate.update("UPDATE json_docs SET created_at = ? WHERE id = ?",
+                    Timestamp.valueOf(day.atTime(8, 0).plusMinutes(i)), archived.get(i).getId());
+        }
+        ReflectionTestUtils.setField(jsonDocArchiver, "maxSegmentRecords", 70);
+        try {
+            jsonDocArchiver.archive();
+        } finally {
+            ReflectionTestUtils.setField(jsonDocArchiver, "maxSegmentRecords", 500000);
+        }
+        List<JsonDoc> current = databaseStorageService.saveRawMessages(messages.subList(0, 25));
+        for (int i = 0; i < current.size(); i++) {
+            jdbcTemplate.update("UPDATE json_docs SET created_at = ? WHERE id = ?",
+                    Timestamp.valueOf(day.atTime(8, 0).plusMinutes(8L * i + 3).plusSeconds(30)), current.get(i).getId());
+        }
+        List<Long> expected = new ArrayList<>();
+        for (int minute = 199; minute >= 0; minute--) {
+            if (minute % 8 == 3 && minute / 8 < current.size()) {
+                expected.add(current.get(minute / 8).getId());
+            }
+            expected.add(archived.get(minute).getId());
+        }
+
+        // When every page is read
+        List<Long> paged = new ArrayList<>();
+        long total = 0;
+        for (int page = 0; page * 17 < expected.size(); page++) {
+            Page<JsonData> result = databaseStorageService.getDataByDateRange(day, day, null, PageRequest.of(page, 17));
+            result.getContent().forEach(doc -> paged.add(doc.getId()));
+            total = result.getTotalElements();
+        }
+        Page<JsonData> pastTheEnd = databaseStorageService.getDataByDateRange(day, day, null, PageRequest.of(20, 17));
+
+        // Then
+        assertThat(jsonDocRepository.findById(archived.get(0).getId())).isEmpty();
+        assertThat(total).isEqualTo(225);
+        assertThat(paged).isEqualTo(expected);
+        assertThat(pastTheEnd.getContent()).isEmpty();
+    }
 }
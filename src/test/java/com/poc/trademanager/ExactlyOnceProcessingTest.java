@@ -0,0 +1,94 @@
+package com.poc.trademanager;
+
+import com.poc.trademanager.service.ExactlyOnceBatchProcessor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@DirtiesContext
+@EmbeddedKafka(partitions = 1, topics = {ExactlyOnceProcessingTest.TOPIC, "eos-input-topic.dlq"},
+        brokerProperties = {"transaction.state.log.replication.factor=1", "transaction.state.log.min.isr=1"})
+@TestPropertySource(properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.consumer.auto-offset-reset=earliest",
+        "spring.kafka.consumer.group-id=" + ExactlyOnceProcessingTest.GROUP,
+        "app.kafka.topic.json-input=" + ExactlyOnceProcessingTest.TOPIC,
+        "app.kafka.topic.json-input-dlq=eos-input-topic.dlq",
+        "app.kafka.exactly-once=true",
+        "app.outbox.relay-enabled=false"
+})
+@ActiveProfiles("test")
+class ExactlyOnceProcessingTest {
+
+    static final String TOPIC = "eos-input-topic";
+    static final String GROUP = "eos-test-group";
+
+    @Autowired
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @Autowired
+    private ExactlyOnceBatchProcessor exactlyOnceBatchProcessor;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void processesEachRecordOnceAndCommitsOffsetsInTheTransaction() throws Exception {
+        // Given
+        List<String> messages = List.of(
+                "{\"clientReferenceNumber\":\"EOS-1\",\"fundNumber\":\"NO-SUCH-FUND\"}",
+                "{\"clientReferenceNumber\":\"EOS-2\",\"fundNumber\":\"NO-SUCH-FUND\"}");
+
+        // When
+        for (String message : messages) {
+            kafkaTemplate.send(TOPIC, message);
+        }
+
+        // Then both are processed before the listener returns, and the offsets are committed with the transaction
+        assertThat(awaitCommittedOffset(2)).isEqualTo(2);
+        assertThat(countExceptions()).isEqualTo(2);
+
+        // When the same records are redelivered, as after a crash between the database and Kafka commits
+        int skipped = exactlyOnceBatchProcessor.process(List.of(
+                new ConsumerRecord<>(TOPIC, 0, 0L, null, messages.get(0)),
+                new ConsumerRecord<>(TOPIC, 0, 1L, null, messages.get(1))));
+
+        // Then nothing is written again
+        assertThat(skipped).isEqualTo(2);
+        assertThat(countExceptions()).isEqualTo(2);
+    }
+
+    private long awaitCommittedOffset(long expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 30_000;
+        long offset = -1;
+        while (offset < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(200);
+            OffsetAndMetadata committed = KafkaTestUtils.getCurrentOffset(embeddedKafka.getBrokersAsString(), GROUP, TOPIC, 0);
+            offset = committed == null ? -1 : committed.offset();
+        }
+        return offset;
+    }
+
+    private Integer countExceptions() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM trade_exceptions WHERE client_reference_number LIKE 'EOS-%'", Integer.class);
+    }
+}
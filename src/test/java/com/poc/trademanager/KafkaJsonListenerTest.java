@@ -2,6 +2,7 @@ package com.poc.trademanager;
 
 import com.poc.trademanager.entity.JsonDoc;
 import com.poc.trademanager.service.MessageProcessingService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,12 +13,20 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchListenerFailedException;
 import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.kafka.test.context.EmbeddedKafka;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 
-import static org.mockito.ArgumentMatchers.any;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.BDDMockito.given;
@@ -48,6 +57,9 @@ class KafkaJsonListenerTest {
     @MockBean
     private MessageProcessingService messageProcessingService;
 
+    @Autowired
+    private KafkaJsonListener kafkaJsonListener;
+
     @Value("${app.kafka.topic.json-input}")
     private String topic;
 
@@ -59,6 +71,7 @@ class KafkaJsonListenerTest {
             ConcurrentKafkaListenerContainerFactory<String, String> factory =
                     new ConcurrentKafkaListenerContainerFactory<>();
             factory.setConsumerFactory(consumerFactory);
+            factory.setBatchListener(true);
             factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
             return factory;
         }
@@ -73,13 +86,41 @@ class KafkaJsonListenerTest {
         jsonDoc.setMessageKey("test-key");
         jsonDoc.setData(jsonMessage);
 
-        given(databaseStorageService.saveRawMessage(any(String.class))).willReturn(jsonDoc);
+        given(databaseStorageService.saveRawMessages(anyList())).willReturn(List.of(jsonDoc));
 
         // When
         kafkaTemplate.send(topic, jsonMessage);
 
         // Then
-        verify(databaseStorageService, timeout(5000).times(1)).saveRawMessage(jsonMessage);
+        verify(databaseStorageService, timeout(5000).times(1)).saveRawMessages(List.of(jsonMessage));
         verify(messageProcessingService, timeout(5000).times(1)).processMessage(jsonDoc);
     }
+
+    @Test
+    void testPoisonMessageDoesNotRollBackPrecedingRecords() {
+        // Given
+        JsonDoc first = new JsonDoc();
+        first.setMessageKey("first-key");
+        first.setData("first");
+        List<ConsumerRecord<String, String>> records = List.of(
+                new ConsumerRecord<>(topic, 0, 0L, null, "first"),
+                new ConsumerRecord<>(topic, 0, 1L, null, "poison"),
+                new ConsumerRecord<>(topic, 0, 2L, null, "third"));
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+
+        given(databaseStorageService.saveRawMessages(List.of("first", "poison", "third")))
+                .willThrow(new IllegalStateException("batch failed"));
+        given(databaseStorageService.saveRawMessages(Collections.singletonList("first"))).willReturn(List.of(first));
+        given(databaseStorageService.saveRawMessages(Collections.singletonList("poison")))
+                .willThrow(new IllegalStateException("poison"));
+
+        // When & Then
+        assertThatThrownBy(() -> kafkaJsonListener.listen(records, acknowledgment))
+                .isInstanceOf(BatchListenerFailedException.class)
+                .extracting(e -> ((BatchListenerFailedException) e).getRecord())
+                .isEqualTo(records.get(1));
+        verify(messageProcessingService, timeout(5000)).processMessage(first);
+        verify(databaseStorageService, never()).saveRawMessages(Collections.singletonList("third"));
+        verify(acknowledgment, never()).acknowledge();
+    }
 }
@@ -0,0 +1,121 @@
+package com.poc.trademanager;
+
+import com.poc.trademanager.dto.RetryTierStatus;
+import com.poc.trademanager.entity.JsonDoc;
+import com.poc.trademanager.service.MessageProcessingService;
+import com.poc.trademanager.service.RetryTopicRouter;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+@DirtiesContext
+@EmbeddedKafka(partitions = 1, topics = {RetryTopicTest.TOPIC, RetryTopicTest.TOPIC + ".retry-1", RetryTopicTest.TOPIC + ".retry-2",
+        RetryTopicTest.TOPIC + ".retry-3", RetryTopicTest.DLQ})
+@TestPropertySource(properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.consumer.auto-offset-reset=earliest",
+        "spring.kafka.consumer.group-id=retry-test-group",
+        "app.kafka.topic.json-input=" + RetryTopicTest.TOPIC,
+        "app.kafka.topic.json-input-dlq=" + RetryTopicTest.DLQ,
+        "app.kafka.retry.delay-1=500ms",
+        "app.kafka.retry.delay-2=500ms",
+        "app.kafka.retry.delay-3=500ms",
+        "app.outbox.relay-enabled=false"
+})
+@ActiveProfiles("test")
+class RetryTopicTest {
+
+    static final String TOPIC = "retry-input-topic";
+    static final String DLQ = "retry-input-topic.dlq";
+
+    private static final String POISON = "{\"clientReferenceNumber\":\"POISON\"}";
+    private static final String TRANSIENT = "{\"clientReferenceNumber\":\"TRANSIENT\"}";
+    private static final String HEALTHY = "{\"clientReferenceNumber\":\"HEALTHY\"}";
+
+    @Autowired
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @Autowired
+    private RetryTopicRouter retryTopicRouter;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    @MockBean
+    private DatabaseStorageService databaseStorageService;
+
+    @MockBean
+    private MessageProcessingService messageProcessingService;
+
+    @Test
+    void failedRecordsBackOffThroughTheTiersWhileTheInputKeepsMoving() throws Exception {
+        // Given one message that always fails to save and one that fails only when read from the input topic
+        given(databaseStorageService.saveRawMessages(anyList())).willAnswer(invocation -> {
+            List<String> messages = invocation.getArgument(0);
+            boolean inputListener = Thread.currentThread().getName().startsWith(KafkaJsonListener.LISTENER_ID);
+            if (messages.contains(POISON) || (messages.contains(TRANSIENT) && inputListener)) {
+                throw new DataAccessResourceFailureException("database unavailable");
+            }
+            return messages.stream().map(RetryTopicTest::jsonDoc).collect(Collectors.toList());
+        });
+
+        // When
+        kafkaTemplate.send(TOPIC, "poison", POISON);
+        kafkaTemplate.send(TOPIC, "transient", TRANSIENT);
+        kafkaTemplate.send(TOPIC, "healthy", HEALTHY);
+
+        // Then the healthy message is stored without waiting for the failed ones
+        verify(databaseStorageService, timeout(10_000)).saveRawMessages(Collections.singletonList(HEALTHY));
+
+        // And the poison message reaches the DLQ through every tier, while the other recovers in the first
+        ConsumerRecord<String, String> deadLetter = readOne(DLQ);
+        assertThat(deadLetter.value()).isEqualTo(POISON);
+        List<RetryTierStatus> statuses = retryTopicRouter.getStatuses();
+        assertThat(statuses).extracting(RetryTierStatus::getReceived).containsExactly(2L, 1L, 1L);
+        assertThat(statuses).extracting(RetryTierStatus::getRecovered).containsExactly(1L, 0L, 0L);
+        assertThat(statuses).extracting(RetryTierStatus::getForwarded).containsExactly(1L, 1L, 1L);
+    }
+
+    private ConsumerRecord<String, String> readOne(String topic) {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("retry-test-dlq-reader", "false", embeddedKafka);
+        props.put("auto.offset.reset", "earliest");
+        try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<String, String>(props,
+                new StringDeserializer(), new StringDeserializer())
+                .createConsumer()) {
+            embeddedKafka.consumeFromAnEmbeddedTopic(consumer, topic);
+            return KafkaTestUtils.getSingleRecord(consumer, topic, 30_000);
+        }
+    }
+
+    private static JsonDoc jsonDoc(String message) {
+        JsonDoc jsonDoc = new JsonDoc();
+        jsonDoc.setMessageKey("key-" + message.hashCode());
+        jsonDoc.setData(message);
+        return jsonDoc;
+    }
+}
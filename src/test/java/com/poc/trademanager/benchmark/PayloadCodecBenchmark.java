@@ -0,0 +1,78 @@
+package com.poc.trademanager.benchmark;
+
+import com.poc.trademanager.entity.PayloadCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-message cost of {@link PayloadCodec}, and the compression ratio it achieves, printed once per fork.
+ * <p>
+ * Run with {@code org.openjdk.jmh.Main PayloadCodecBenchmark} on the test classpath; pass
+ * {@code -p samples=<file.ndjson>} to measure real messages instead of generated ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadCodecBenchmark {
+
+    @Param("")
+    private String samples;
+
+    private String[] payloads;
+    private String[] encoded;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        List<String> messages = samples.isEmpty()
+                ? TradeMessageSamples.generate(10_000, 7L)
+                : TradeMessageSamples.load(Paths.get(samples));
+        payloads = messages.toArray(new String[0]);
+        encoded = new String[payloads.length];
+        long originalBytes = 0;
+        long storedBytes = 0;
+        for (int i = 0; i < payloads.length; i++) {
+            encoded[i] = PayloadCodec.encode(payloads[i]);
+            originalBytes += payloads[i].getBytes(StandardCharsets.UTF_8).length;
+            storedBytes += encoded[i].getBytes(StandardCharsets.UTF_8).length;
+        }
+        System.out.printf("%n%d messages, %.1f bytes on average, stored in %.1f bytes: ratio %.2f%n",
+                payloads.length, (double) originalBytes / payloads.length, (double) storedBytes / payloads.length,
+                (double) originalBytes / storedBytes);
+    }
+
+    @Benchmark
+    public void encode(Blackhole blackhole) {
+        blackhole.consume(PayloadCodec.encode(payloads[nextIndex()]));
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) {
+        blackhole.consume(PayloadCodec.decode(encoded[nextIndex()]));
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == payloads.length ? 0 : index + 1;
+        return index;
+    }
+}
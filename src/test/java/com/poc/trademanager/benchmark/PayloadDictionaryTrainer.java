@@ -0,0 +1,46 @@
+package com.poc.trademanager.benchmark;
+
+import com.github.luben.zstd.ZstdDictTrainer;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Trains the zstd dictionary used by {@code PayloadCodec}.
+ * <p>
+ * Usage: {@code PayloadDictionaryTrainer <output.zdict> [samples.ndjson]}. Without a sample file, generated trade
+ * messages are used. A retrained dictionary must be shipped under a new id: rows compressed with the old one
+ * still need it to be read.
+ */
+public final class PayloadDictionaryTrainer {
+
+    private static final int DICTIONARY_SIZE = 16 * 1024;
+
+    private PayloadDictionaryTrainer() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: PayloadDictionaryTrainer <output.zdict> [samples.ndjson]");
+            System.exit(1);
+        }
+        List<String> samples = args.length > 1
+                ? TradeMessageSamples.load(Paths.get(args[1]))
+                : TradeMessageSamples.generate(20_000, 42L);
+
+        long sampleBytes = samples.stream().mapToLong(sample -> sample.getBytes(StandardCharsets.UTF_8).length).sum();
+        ZstdDictTrainer trainer = new ZstdDictTrainer((int) Math.min(Integer.MAX_VALUE, sampleBytes), DICTIONARY_SIZE);
+        for (String sample : samples) {
+            trainer.addSample(sample.getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] dictionary = trainer.trainSamples();
+
+        Path output = Paths.get(args[0]);
+        Files.write(output, dictionary);
+        System.out.printf("Trained a %d byte dictionary from %d samples (%d bytes) into %s%n",
+                dictionary.length, samples.size(), sampleBytes, output);
+    }
+}
@@ -0,0 +1,81 @@
+package com.poc.trademanager.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.poc.trademanager.config.JacksonConfig;
+import com.poc.trademanager.dto.TradeDetailsDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-message cost of binding an inbound trade message to {@link TradeDetailsDto} and writing the outbound JSON,
+ * as {@code MessageProcessingService} does, with and without the modules from {@link JacksonConfig}. Run with
+ * {@code org.openjdk.jmh.Main TradeDetailsBindingBenchmark -prof gc} on the test classpath for the time and the
+ * allocation per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TradeDetailsBindingBenchmark {
+
+    @Param({"false", "true"})
+    private boolean configured;
+
+    private ObjectMapper objectMapper;
+    private ObjectReader reader;
+    private ObjectWriter writer;
+    private String[] messages;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if (configured) {
+            JacksonConfig config = new JacksonConfig();
+            builder.modulesToInstall(config.blackbirdModule(), config.isoLocalDateModule());
+        }
+        objectMapper = builder.build();
+        reader = objectMapper.readerFor(TradeDetailsDto.class);
+        writer = objectMapper.writerFor(TradeDetailsDto.class);
+        List<String> samples = TradeMessageSamples.generate(10_000, 11L);
+        messages = samples.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public String mapper() throws Exception {
+        TradeDetailsDto trade = objectMapper.readValue(messages[nextIndex()], TradeDetailsDto.class);
+        trade.setBaseCurrency("USD");
+        return objectMapper.writeValueAsString(trade);
+    }
+
+    @Benchmark
+    public String readerAndWriter() throws Exception {
+        TradeDetailsDto trade = reader.readValue(messages[nextIndex()]);
+        trade.setBaseCurrency("USD");
+        return writer.writeValueAsString(trade);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == messages.length ? 0 : index + 1;
+        return index;
+    }
+}
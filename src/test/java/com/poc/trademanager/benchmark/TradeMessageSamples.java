@@ -0,0 +1,62 @@
+package com.poc.trademanager.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Payloads for training the compression dictionary and benchmarking it: either real messages, one per line, from
+ * a file, or generated ones shaped like the inbound trade messages and the outbound JSON written for them.
+ */
+final class TradeMessageSamples {
+
+    private static final String[] CURRENCIES = {"USD", "EUR", "GBP", "JPY", "CHF", "CAD"};
+
+    private TradeMessageSamples() {
+    }
+
+    static List<String> load(Path file) throws IOException {
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            return lines.filter(line -> !line.isEmpty()).collect(Collectors.toList());
+        }
+    }
+
+    static List<String> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> samples = new ArrayList<>(count);
+        LocalDate baseDate = LocalDate.of(2024, 1, 2);
+        for (int i = 0; i < count; i++) {
+            LocalDate tradeDate = baseDate.plusDays(random.nextInt(365));
+            long quantity = (1 + random.nextInt(500)) * 100L;
+            double price = 5 + random.nextInt(200_000) / 100.0;
+            double principal = quantity * price;
+            double netAmount = principal + random.nextInt(5_000) / 100.0;
+            StringBuilder json = new StringBuilder(320)
+                    .append("{\"clientReferenceNumber\":\"CRN-").append(tradeDate.toString().replace("-", ""))
+                    .append('-').append(String.format(Locale.ROOT, "%06d", random.nextInt(1_000_000))).append('"')
+                    .append(",\"fundNumber\":\"F").append(String.format(Locale.ROOT, "%04d", random.nextInt(200))).append('"')
+                    .append(",\"securityId\":\"US").append(String.format(Locale.ROOT, "%09d", random.nextInt(1_000_000_000)))
+                    .append(random.nextInt(10)).append('"')
+                    .append(",\"tradeDate\":\"").append(tradeDate).append('"')
+                    .append(",\"settleDate\":\"").append(tradeDate.plusDays(2)).append('"')
+                    .append(",\"quantity\":").append(quantity)
+                    .append(",\"price\":").append(String.format(Locale.ROOT, "%.4f", price))
+                    .append(",\"principal\":").append(String.format(Locale.ROOT, "%.2f", principal))
+                    .append(",\"netAmount\":").append(String.format(Locale.ROOT, "%.2f", netAmount));
+            // Every other sample is the outbound form, which carries the fund's base currency.
+            if (i % 2 == 1) {
+                json.append(",\"baseCurrency\":\"").append(CURRENCIES[random.nextInt(CURRENCIES.length)]).append('"');
+            }
+            samples.add(json.append('}').toString());
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,59 @@
+package com.poc.trademanager.config;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.poc.trademanager.dto.TradeDetailsDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IsoLocalDateDeserializerTest {
+
+    // Installed the way Spring Boot installs module beans, after the well-known modules
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(new JacksonConfig().blackbirdModule(), new JacksonConfig().isoLocalDateModule())
+            .build();
+
+    private final ObjectReader reader = mapper.readerFor(TradeDetailsDto.class);
+
+    @Test
+    void readsIsoDatesAndLeavesOtherFormsToTheStandardDeserializer() throws Exception {
+        // when
+        TradeDetailsDto iso = reader.readValue("{\"tradeDate\":\"2024-02-29\",\"settleDate\":\"2024-03-04\"}");
+        TradeDetailsDto array = reader.readValue("{\"tradeDate\":[2024,2,29]}");
+
+        // then
+        assertThat(iso.getTradeDate()).isEqualTo(LocalDate.of(2024, 2, 29));
+        assertThat(iso.getSettleDate()).isEqualTo(LocalDate.of(2024, 3, 4));
+        assertThat(array.getTradeDate()).isEqualTo(LocalDate.of(2024, 2, 29));
+    }
+
+    @Test
+    void invalidDatesFailAsBefore() {
+        assertThatThrownBy(() -> reader.readValue("{\"tradeDate\":\"2023-02-29\"}"))
+                .isInstanceOf(InvalidFormatException.class)
+                .hasMessageContaining("2023-02-29");
+        assertThatThrownBy(() -> reader.readValue("{\"tradeDate\":\"2023/02/28\"}"))
+                .isInstanceOf(InvalidFormatException.class);
+    }
+
+    @Test
+    void jsonFormatOnAPropertyIsHonoured() throws Exception {
+        // when
+        FormattedDate formatted = mapper.readValue("{\"date\":\"2024-29-02\"}", FormattedDate.class);
+
+        // then
+        assertThat(formatted.date).isEqualTo(LocalDate.of(2024, 2, 29));
+    }
+
+    static class FormattedDate {
+        @JsonFormat(pattern = "yyyy-dd-MM")
+        public LocalDate date;
+    }
+}
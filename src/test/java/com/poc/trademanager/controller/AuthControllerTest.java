@@ -0,0 +1,66 @@
+package com.poc.trademanager.controller;
+
+import com.poc.trademanager.config.SecurityConfig;
+import com.poc.trademanager.service.AuthTokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(AuthController.class)
+@Import({SecurityConfig.class, AuthTokenService.class})
+class AuthControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private AuthTokenService authTokenService;
+
+    @MockBean
+    private UserDetailsService userDetailsService;
+
+    @BeforeEach
+    void setUp() {
+        given(userDetailsService.loadUserByUsername("support"))
+                .willReturn(User.withUsername("support").password(passwordEncoder.encode("password")).roles("SUPPORT").build());
+    }
+
+    @Test
+    void issueToken_withUsernameAndPassword_returnsToken() throws Exception {
+        // When & Then
+        mockMvc.perform(post("/api/auth/token").with(httpBasic("support", "password")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.tokenType", is("Bearer")));
+    }
+
+    @Test
+    void issueToken_withBearerToken_isRefused() throws Exception {
+        // Given
+        String token = authTokenService.issue(new UsernamePasswordAuthenticationToken("support", null,
+                AuthorityUtils.createAuthorityList("ROLE_SUPPORT")), authTokenService.getExpiry());
+
+        // When & Then
+        mockMvc.perform(post("/api/auth/token").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isUnauthorized());
+    }
+}
@@ -2,12 +2,16 @@ package com.poc.trademanager.controller;
 
 import com.poc.trademanager.DatabaseStorageService;
 import com.poc.trademanager.dto.ApiResponse;
+import com.poc.trademanager.dto.CursorPage;
 import com.poc.trademanager.dto.ErrorType;
 import com.poc.trademanager.dto.JsonData;
+import com.poc.trademanager.dto.KeysetCursor;
 import com.poc.trademanager.dto.TradeDetailsDto;
 import com.poc.trademanager.dto.TradeExceptionData;
 import com.poc.trademanager.entity.JsonDoc;
-import com.poc.trademanager.service.MessageProcessingService;
+import com.poc.trademanager.service.TradeExportService;
+import com.poc.trademanager.service.TradeExportService.ExportFormat;
+import com.poc.trademanager.service.TradeProcessingDispatcher;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -20,10 +24,14 @@ import org.springframework.http.MediaType;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.hamcrest.Matchers.hasSize;
@@ -35,9 +43,13 @@ import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(JsonDataController.class)
@@ -51,7 +63,10 @@ class JsonDataControllerTest {
     private DatabaseStorageService databaseStorageService;
 
     @MockBean
-    private MessageProcessingService messageProcessingService;
+    private TradeProcessingDispatcher tradeProcessingDispatcher;
+
+    @MockBean
+    private TradeExportService tradeExportService;
 
     @MockBean
     private KafkaTemplate<String, String> kafkaTemplate;
@@ -153,13 +168,47 @@ class JsonDataControllerTest {
 
 
     @Test
-    void whenGetTrades_thenReturnJsonArray() throws Exception {
+    void whenScrollData_thenReturnPageWithNextCursor() throws Exception {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        JsonData jsonData = new JsonData(7L, UUID.randomUUID().toString(), "{\"test\":\"data\"}", now);
+        String nextCursor = new KeysetCursor(now, 7L).encode();
+        given(databaseStorageService.getDataAfterCursor(any(), any(), eq(null), any(KeysetCursor.class), eq(1)))
+                .willReturn(new CursorPage<>(Collections.singletonList(jsonData), nextCursor));
+
+        // When & Then
+        mockMvc.perform(get("/api/data/scroll")
+                        .header("X-Correlation-ID", CORRELATION_ID)
+                        .header("X-Source-Application-ID", SOURCE_APP_ID)
+                        .header("Authorization", AUTH_TOKEN)
+                        .param("startDate", "2023-01-01T00:00:00")
+                        .param("endDate", "2023-01-31T23:59:59")
+                        .param("cursor", new KeysetCursor(now.plusSeconds(1), 8L).encode())
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.content", hasSize(1)))
+                .andExpect(jsonPath("$.data.content[0].id", is(7)))
+                .andExpect(jsonPath("$.data.nextCursor", is(nextCursor)));
+    }
+
+    @Test
+    void whenScrollDataWithInvalidCursor_thenBadRequest() throws Exception {
+        mockMvc.perform(get("/api/data/scroll")
+                        .header("X-Correlation-ID", CORRELATION_ID)
+                        .header("X-Source-Application-ID", SOURCE_APP_ID)
+                        .header("Authorization", AUTH_TOKEN)
+                        .param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenGetTrades_thenReturnPageOfTrades() throws Exception {
         // Given
         TradeDetailsDto tradeDetailsDto = new TradeDetailsDto();
         tradeDetailsDto.setClientReferenceNumber("CLIENT-001");
-        List<TradeDetailsDto> tradeDetailsList = Collections.singletonList(tradeDetailsDto);
+        Page<TradeDetailsDto> tradeDetailsPage = new PageImpl<>(Collections.singletonList(tradeDetailsDto));
 
-        given(databaseStorageService.getTradeDetailsForUser(eq("CLIENT-001"), eq("test-user"), any(), any())).willReturn(tradeDetailsList);
+        given(databaseStorageService.getTradeDetailsForUser(eq("CLIENT-001"), eq("test-user"), any(), any(), any(Pageable.class))).willReturn(tradeDetailsPage);
 
         // When & Then
         mockMvc.perform(get("/api/trades")
@@ -169,8 +218,24 @@ class JsonDataControllerTest {
                         .header("Authorization", AUTH_TOKEN))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.success", is(true)))
-                .andExpect(jsonPath("$.data", hasSize(1)))
-                .andExpect(jsonPath("$.data[0].clientReferenceNumber", is("CLIENT-001")));
+                .andExpect(jsonPath("$.data.content", hasSize(1)))
+                .andExpect(jsonPath("$.data.content[0].clientReferenceNumber", is("CLIENT-001")));
+    }
+
+    @Test
+    void whenGetTradesWithUnknownSortProperty_thenBadRequest() throws Exception {
+        mockMvc.perform(get("/api/trades")
+                        .param("clientReferenceNumber", "CLIENT-001")
+                        .param("sort", "outboundJson,asc"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenGetOutboundJsonForUnknownTrade_thenNotFound() throws Exception {
+        given(databaseStorageService.getOutboundJsonForUser("CLIENT-404", "test-user")).willReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/trades/CLIENT-404/outbound-json"))
+                .andExpect(status().isNotFound());
     }
 
     @Test
@@ -258,4 +323,30 @@ class JsonDataControllerTest {
                         .header("Authorization", AUTH_TOKEN))
                 .andExpect(status().isForbidden());
     }
+
+    @Test
+    void whenExportTradesAsCsv_thenStreamAttachment() throws Exception {
+        StreamingResponseBody body = out -> out.write("clientReferenceNumber\nCRN-1\n".getBytes(StandardCharsets.UTF_8));
+        given(tradeExportService.exportTrades(eq(ExportFormat.CSV), eq("test-user"), eq("CRN-1"), any(), any())).willReturn(body);
+
+        MvcResult result = mockMvc.perform(get("/api/trades/export")
+                        .param("clientReferenceNumber", "CRN-1")
+                        .param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"trades.csv\""))
+                .andExpect(content().string("clientReferenceNumber\nCRN-1\n"));
+    }
+
+    @Test
+    void whenExportTradesWithUnknownFormat_thenBadRequest() throws Exception {
+        mockMvc.perform(get("/api/trades/export")
+                        .param("clientReferenceNumber", "CRN-1")
+                        .param("format", "xlsx"))
+                .andExpect(status().isBadRequest());
+    }
 }
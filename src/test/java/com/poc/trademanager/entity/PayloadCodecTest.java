@@ -0,0 +1,48 @@
+package com.poc.trademanager.entity;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PayloadCodecTest {
+
+    private static final String TRADE = "{\"clientReferenceNumber\":\"CRN-20240612-000123\",\"fundNumber\":\"F0042\","
+            + "\"securityId\":\"US0378331005\",\"tradeDate\":\"2024-06-12\",\"settleDate\":\"2024-06-14\","
+            + "\"quantity\":1500,\"price\":187.2300,\"principal\":280845.00,\"netAmount\":280860.25}";
+
+    @Test
+    void encodedPayloadIsShorterAndDecodesToTheOriginal() {
+        // when
+        String encoded = PayloadCodec.encode(TRADE);
+
+        // then
+        assertThat(PayloadCodec.isEncoded(encoded)).isTrue();
+        assertThat(encoded.length()).isLessThan(TRADE.length() / 2);
+        assertThat(PayloadCodec.decode(encoded)).isEqualTo(TRADE);
+    }
+
+    @Test
+    void valuesWrittenBeforeCompressionAreReadUnchanged() {
+        // given
+        String legacy = TRADE.replace("F0042", "F0043");
+
+        // then
+        assertThat(PayloadCodec.decode(legacy)).isEqualTo(legacy);
+        assertThat(PayloadCodec.decode(null)).isNull();
+    }
+
+    @Test
+    void shortAndMarkerLikePayloadsRoundTrip() {
+        // given
+        String shortPayload = "{\"a\":1}";
+        String markerLike = PayloadCodec.MARKER_PREFIX + "not compressed}";
+
+        // when
+        String encodedShort = PayloadCodec.encode(shortPayload);
+        String encodedMarkerLike = PayloadCodec.encode(markerLike);
+
+        // then
+        assertThat(encodedShort).isEqualTo(shortPayload);
+        assertThat(PayloadCodec.decode(encodedMarkerLike)).isEqualTo(markerLike);
+    }
+}
@@ -0,0 +1,143 @@
+package com.poc.trademanager.repository;
+
+import com.poc.trademanager.entity.JsonDoc;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class JdbcBatchingTest {
+
+    @Autowired
+    private JsonDocRepository jsonDocRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @TestConfiguration
+    static class StatementCountingConfig {
+        @Bean
+        static BeanPostProcessor statementCountingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource && !(bean instanceof StatementCountingDataSource)) {
+                        return new StatementCountingDataSource((DataSource) bean);
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    @BeforeEach
+    void resetCounts() {
+        executed().clear();
+    }
+
+    @Test
+    void saveAllSendsInsertsAsJdbcBatches() {
+        // Given
+        List<JsonDoc> docs = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            JsonDoc doc = new JsonDoc();
+            doc.setMessageKey("batch-key-" + i);
+            doc.setData("{\"n\":" + i + "}");
+            docs.add(doc);
+        }
+
+        // When
+        jsonDocRepository.saveAll(docs);
+        entityManager.flush();
+
+        // Then
+        long inserts = executed().stream().filter(sql -> sql.startsWith("insert into json_docs")).count();
+        long sequenceCalls = executed().stream().filter(sql -> sql.contains("json_docs_seq")).count();
+        assertThat(inserts).as("insert executions for 120 rows with batch size 50").isEqualTo(3);
+        assertThat(sequenceCalls).as("sequence round trips with allocation size 50").isLessThanOrEqualTo(3);
+        assertThat(executed()).hasSize((int) (inserts + sequenceCalls));
+    }
+
+    private List<String> executed() {
+        return ((StatementCountingDataSource) dataSource).executed;
+    }
+
+    /**
+     * Records every statement execution that reaches the driver. A batch counts once, however many rows
+     * were added to it, because it is sent in a single round trip.
+     */
+    static class StatementCountingDataSource extends DelegatingDataSource {
+
+        private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+        final List<String> executed = new CopyOnWriteArrayList<>();
+
+        StatementCountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return countingConnection(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return countingConnection(super.getConnection(username, password));
+        }
+
+        private Connection countingConnection(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        if (result instanceof PreparedStatement && method.getName().equals("prepareStatement")) {
+                            return countingStatement((PreparedStatement) result, (String) args[0]);
+                        }
+                        return result;
+                    });
+        }
+
+        private PreparedStatement countingStatement(PreparedStatement statement, String sql) {
+            String normalizedSql = sql.trim().toLowerCase(Locale.ROOT);
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        if (EXECUTE_METHODS.contains(method.getName())) {
+                            executed.add(normalizedSql);
+                        }
+                        return invoke(statement, method, args);
+                    });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
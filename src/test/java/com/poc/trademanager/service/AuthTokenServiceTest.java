@@ -0,0 +1,70 @@
+package com.poc.trademanager.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuthTokenServiceTest {
+
+    private static final Instant NOW = Instant.parse("2024-01-01T09:00:00Z");
+
+    private final AuthTokenService authTokenService = new AuthTokenService("test-secret", Duration.ofMinutes(30), Clock.fixed(NOW, ZoneOffset.UTC));
+
+    private final Authentication user = new UsernamePasswordAuthenticationToken("support", "password",
+            AuthorityUtils.commaSeparatedStringToAuthorityList("ROLE_SUPPORT,MANUAL_PROCESSING"));
+
+    @Test
+    void issuedTokenCarriesUsernameAndRoles() {
+        // Given
+        String token = authTokenService.issue(user, authTokenService.getExpiry());
+
+        // When
+        Optional<Authentication> verified = authTokenService.verify(token);
+
+        // Then
+        assertThat(verified).isPresent();
+        assertThat(verified.get().getName()).isEqualTo("support");
+        assertThat(verified.get().getAuthorities()).extracting("authority").containsExactly("ROLE_SUPPORT", "MANUAL_PROCESSING");
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        // Given a token whose payload has been swapped for another user's
+        String token = authTokenService.issue(user, authTokenService.getExpiry());
+        String otherUser = authTokenService.issue(new UsernamePasswordAuthenticationToken("admin", "password",
+                AuthorityUtils.commaSeparatedStringToAuthorityList("ROLE_SUPPORT")), authTokenService.getExpiry());
+        String forged = otherUser.substring(0, otherUser.indexOf('.')) + token.substring(token.indexOf('.'));
+
+        // Then
+        assertThat(authTokenService.verify(forged)).isEmpty();
+        assertThat(authTokenService.verify("not-a-token")).isEmpty();
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        // Given
+        String token = authTokenService.issue(user, NOW.minusSeconds(1));
+
+        // Then
+        assertThat(authTokenService.verify(token)).isEmpty();
+    }
+
+    @Test
+    void tokenFromAnotherKeyIsRejected() {
+        // Given
+        AuthTokenService otherService = new AuthTokenService("other-secret", Duration.ofMinutes(30), Clock.fixed(NOW, ZoneOffset.UTC));
+        String token = otherService.issue(user, otherService.getExpiry());
+
+        // Then
+        assertThat(authTokenService.verify(token)).isEmpty();
+    }
+}
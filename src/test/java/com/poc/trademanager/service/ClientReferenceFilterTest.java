@@ -0,0 +1,75 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.repository.TradeDetailRepository;
+import com.poc.trademanager.repository.TradeExceptionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ClientReferenceFilterTest {
+
+    private TradeDetailRepository tradeDetailRepository;
+    private TradeExceptionRepository tradeExceptionRepository;
+    private ClientReferenceFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        tradeDetailRepository = mock(TradeDetailRepository.class);
+        tradeExceptionRepository = mock(TradeExceptionRepository.class);
+        filter = new ClientReferenceFilter(tradeDetailRepository, tradeExceptionRepository,
+                mock(PlatformTransactionManager.class), 1000, 0.001);
+    }
+
+    @Test
+    void everyReferenceIsAPossibleHitUntilWarmedUp() {
+        // then
+        assertThat(filter.isReady()).isFalse();
+        assertThat(filter.mightContain("NEVER-STORED")).isTrue();
+    }
+
+    @Test
+    void warmUpLoadsBothTablesAndLaterSavesAreAdded() {
+        // given
+        when(tradeDetailRepository.streamAllClientReferenceNumbers()).thenAnswer(invocation -> Stream.of("TRADE-1", "TRADE-2"));
+        when(tradeExceptionRepository.streamAllClientReferenceNumbers()).thenAnswer(invocation -> Stream.of("EXCEPTION-1"));
+
+        // when
+        filter.warmUp();
+        filter.put("TRADE-3");
+
+        // then
+        assertThat(filter.isReady()).isTrue();
+        assertThat(filter.mightContain("TRADE-1")).isTrue();
+        assertThat(filter.mightContain("TRADE-2")).isTrue();
+        assertThat(filter.mightContain("EXCEPTION-1")).isTrue();
+        assertThat(filter.mightContain("TRADE-3")).isTrue();
+        assertThat(filter.mightContain("NEVER-STORED")).isFalse();
+    }
+
+    @Test
+    void rebuildDropsDeletedReferencesAndKeepsThoseSavedWhileItRuns() {
+        // given a reference that has since been deleted
+        when(tradeDetailRepository.streamAllClientReferenceNumbers()).thenAnswer(invocation -> Stream.of("TRADE-1"));
+        when(tradeExceptionRepository.streamAllClientReferenceNumbers()).thenAnswer(invocation -> Stream.of("REPLAYED"));
+        filter.warmUp();
+        when(tradeExceptionRepository.streamAllClientReferenceNumbers()).thenAnswer(invocation -> {
+            // saved by a processing thread after the trades were read
+            filter.put("SAVED-DURING-REBUILD");
+            return Stream.empty();
+        });
+
+        // when
+        filter.rebuild();
+
+        // then
+        assertThat(filter.mightContain("TRADE-1")).isTrue();
+        assertThat(filter.mightContain("SAVED-DURING-REBUILD")).isTrue();
+        assertThat(filter.mightContain("REPLAYED")).isFalse();
+    }
+}
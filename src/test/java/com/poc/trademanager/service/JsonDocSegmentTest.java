@@ -0,0 +1,122 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.dto.JsonData;
+import com.poc.trademanager.entity.PayloadCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonDocSegmentTest {
+
+    private static final LocalDateTime NEWEST = LocalDateTime.of(2024, 3, 31, 18, 0, 0, 123_000_000);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackRecordsNewestFirstFromAnyPosition() throws IOException {
+        // Given 1000 records, two per timestamp, so positions inside a timestamp matter
+        List<JsonData> records = records(1000);
+        JsonDocSegment segment = write(records);
+
+        // When
+        JsonData cursor = records.get(637);
+        List<JsonData> afterCursor = toList(segment.iterator(cursor.getCreatedAt(), cursor.getId(), null, null));
+        List<JsonData> inRange = toList(segment.iterator(LocalDateTime.MAX, Long.MAX_VALUE,
+                records.get(900).getCreatedAt(), records.get(100).getCreatedAt()));
+
+        // Then
+        assertThat(segment.getRecordCount()).isEqualTo(1000);
+        assertThat(segment.getOldest()).isEqualTo(records.get(999).getCreatedAt());
+        assertThat(ids(afterCursor)).isEqualTo(ids(records.subList(638, 1000)));
+        assertThat(afterCursor.get(0).getJsonData()).isEqualTo(records.get(638).getJsonData());
+        // Both records of the boundary timestamps are in range
+        assertThat(ids(inRange)).isEqualTo(ids(records.subList(100, 902)));
+        assertThat(segment.count(records.get(900).getCreatedAt(), records.get(100).getCreatedAt())).isEqualTo(802);
+    }
+
+    @Test
+    void countsAndSeeksThroughTheTimeIndex() throws IOException {
+        // Given 1000 records, two per timestamp
+        List<JsonData> records = records(1000);
+        JsonDocSegment segment = write(records);
+        JsonData cursor = records.get(637);
+        LocalDateTime start = records.get(900).getCreatedAt();
+        LocalDateTime end = records.get(100).getCreatedAt();
+
+        // Then the whole segment is counted from the trailer, and a partial range through the index
+        assertThat(segment.count(null, null)).isEqualTo(1000);
+        assertThat(segment.count(records.get(999).getCreatedAt(), records.get(0).getCreatedAt())).isEqualTo(1000);
+        assertThat(segment.count(start, end)).isEqualTo(802);
+        assertThat(segment.count(start, null)).isEqualTo(902);
+        // Records after the cursor and newer than a later record
+        assertThat(segment.countBetween(cursor, null, start, end)).isEqualTo(902 - 638);
+        assertThat(segment.countBetween(cursor, records.get(700), start, end)).isEqualTo(700 - 638);
+        assertThat(segment.countBetween(null, records.get(50), null, end)).isZero();
+        // The nth record after a cursor, across index runs, and none past the end of the range
+        for (int n = 1; n <= 902 - 638; n += 13) {
+            assertThat(segment.headerAt(cursor, n, start, end).getId()).isEqualTo(records.get(637 + n).getId());
+        }
+        assertThat(segment.headerAt(null, 1, start, end).getId()).isEqualTo(records.get(100).getId());
+        assertThat(segment.headerAt(cursor, 902 - 637, start, end)).isNull();
+    }
+
+    @Test
+    void findsRecordsByMessageKey() throws IOException {
+        // Given
+        List<JsonData> records = records(500);
+        JsonDocSegment segment = write(records);
+
+        // Then
+        for (int i = 0; i < records.size(); i += 37) {
+            JsonData found = segment.findByMessageKey(records.get(i).getMessageKey()).orElse(null);
+            assertThat(found).isNotNull();
+            assertThat(found.getId()).isEqualTo(records.get(i).getId());
+            assertThat(found.getJsonData()).isEqualTo(records.get(i).getJsonData());
+        }
+        assertThat(segment.findByMessageKey("no-such-key")).isEmpty();
+        assertThat(segment.findByMessageKey("")).isEmpty();
+    }
+
+    private JsonDocSegment write(List<JsonData> records) throws IOException {
+        try (JsonDocSegment.Writer writer = JsonDocSegment.writer(directory.resolve("test" + JsonDocSegment.SUFFIX))) {
+            for (JsonData record : records) {
+                // Stored the way the archiver reads it from the table: compressed when long enough
+                writer.append(record.getId(), record.getCreatedAt(), record.getMessageKey(),
+                        PayloadCodec.toBinary(PayloadCodec.encode(record.getJsonData())));
+            }
+            return writer.finish();
+        }
+    }
+
+    private static List<JsonData> records(int count) {
+        List<JsonData> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long id = 10_000L - i;
+            String payload = i % 10 == 0 ? "{\"n\":" + i + "}"
+                    : "{\"clientReferenceNumber\":\"CRN-" + id + "\",\"fundNumber\":\"F" + (i % 50) + "\",\"quantity\":" + i * 10 + "}";
+            // Message keys are unrelated to the time order
+            records.add(new JsonData(id, "key-" + Long.toHexString(id * 7919L), payload, NEWEST.minusMinutes(i / 2)));
+        }
+        return records;
+    }
+
+    private static List<JsonData> toList(Iterator<JsonData> iterator) {
+        List<JsonData> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    private static List<Long> ids(List<JsonData> records) {
+        return records.stream().map(JsonData::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,203 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.dto.CursorPage;
+import com.poc.trademanager.dto.KafkaMessageDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@EmbeddedKafka(partitions = 2, topics = KafkaAdminServiceTest.TOPIC)
+class KafkaAdminServiceTest {
+
+    static final String TOPIC = "browse-topic";
+
+    private static final long FIRST_TIMESTAMP = 1_700_000_000_000L;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static KafkaAdminService kafkaAdminService;
+
+    @BeforeAll
+    static void setUp(EmbeddedKafkaBroker embeddedKafka) throws Exception {
+        try (Producer<String, String> producer = new DefaultKafkaProducerFactory<>(KafkaTestUtils.producerProps(embeddedKafka),
+                new StringSerializer(), new StringSerializer()).createProducer()) {
+            for (int i = 0; i < 25; i++) {
+                producer.send(new ProducerRecord<>(TOPIC, 0, FIRST_TIMESTAMP + i * 1000L, "key-" + i, "{\"n\":" + i + "}")).get();
+            }
+            // Later, and with a header on every other message
+            for (int i = 0; i < 10; i++) {
+                ProducerRecord<String, String> record = new ProducerRecord<>(TOPIC, 1, FIRST_TIMESTAMP + 100_000L + i, "other-" + i,
+                        "{\"clientReferenceNumber\":\"CRN-" + i + "\"}");
+                if (i % 2 == 1) {
+                    record.headers().add("source", "dlq".getBytes(StandardCharsets.UTF_8));
+                }
+                producer.send(record).get();
+            }
+        }
+        kafkaAdminService = new KafkaAdminService(new DefaultKafkaConsumerFactory<>(
+                KafkaTestUtils.consumerProps("unused", "false", embeddedKafka), new StringDeserializer(), new StringDeserializer()),
+                objectMapper, 2, Duration.ofSeconds(5), 2, Duration.ofSeconds(30));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        kafkaAdminService.shutdown();
+    }
+
+    @Test
+    void pagesThroughAPartitionWithContinuationTokens() {
+        // When
+        List<CursorPage<KafkaMessageDto>> pages = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<KafkaMessageDto> page = kafkaAdminService.browseMessages(TOPIC, 0, null, null, cursor, 10, 1_000_000);
+            pages.add(page);
+            cursor = page.getNextCursor();
+        } while (cursor != null && pages.size() < 5);
+
+        // Then
+        assertThat(pages).extracting(page -> page.getContent().size()).containsExactly(10, 10, 5);
+        assertThat(pages.stream().flatMap(page -> page.getContent().stream()).map(KafkaMessageDto::getOffset).collect(Collectors.toList()))
+                .isEqualTo(offsets(0, 25));
+        assertThat(kafkaAdminService.browseMessages(TOPIC, 1, null, null, null, 10, 1_000_000).getContent()).hasSize(10);
+    }
+
+    @Test
+    void seeksByOffsetOrTimestampAndStopsAtTheByteLimit() {
+        // When
+        CursorPage<KafkaMessageDto> fromOffset = kafkaAdminService.browseMessages(TOPIC, 0, 20L, null, null, 100, 1_000_000);
+        CursorPage<KafkaMessageDto> fromTimestamp = kafkaAdminService.browseMessages(TOPIC, 0, null,
+                Instant.ofEpochMilli(FIRST_TIMESTAMP + 14_500), null, 3, 1_000_000);
+        // Each message is 6 bytes of key and 8 of value
+        CursorPage<KafkaMessageDto> byteLimited = kafkaAdminService.browseMessages(TOPIC, 0, 0L, null, null, 100, 30);
+
+        // Then
+        assertThat(fromOffset.getContent()).extracting(KafkaMessageDto::getOffset).isEqualTo(offsets(20, 25));
+        assertThat(fromOffset.getNextCursor()).isNull();
+        assertThat(fromTimestamp.getContent()).extracting(KafkaMessageDto::getOffset).isEqualTo(offsets(15, 18));
+        assertThat(fromTimestamp.getContent().get(0).getValue()).isEqualTo("{\"n\":15}");
+        assertThat(byteLimited.getContent()).extracting(KafkaMessageDto::getOffset).isEqualTo(offsets(0, 2));
+        assertThat(kafkaAdminService.browseMessages(TOPIC, 0, null, null, byteLimited.getNextCursor(), 1, 1_000_000).getContent())
+                .extracting(KafkaMessageDto::getOffset).containsExactly(2L);
+        assertThatThrownBy(() -> kafkaAdminService.browseMessages(TOPIC, 5, null, null, null, 10, 1_000_000))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void searchesAllPartitionsAndStopsAtTheLimit() throws IOException {
+        // Given
+        Instant from = Instant.ofEpochMilli(FIRST_TIMESTAMP);
+
+        // When
+        List<KafkaMessageDto> byHeader = search(from, null, null, "source", "dlq", "CRN-", 100);
+        List<KafkaMessageDto> byKey = search(from, null, "key-3", null, null, null, 100);
+        List<KafkaMessageDto> inWindow = search(Instant.ofEpochMilli(FIRST_TIMESTAMP + 5_000), Instant.ofEpochMilli(FIRST_TIMESTAMP + 8_000),
+                null, null, null, "{", 100);
+        List<KafkaMessageDto> limited = search(from, null, null, null, null, "{", 7);
+
+        // Then
+        assertThat(byHeader).extracting(KafkaMessageDto::getKey).containsExactlyInAnyOrder("other-1", "other-3", "other-5", "other-7", "other-9");
+        assertThat(byKey).extracting(KafkaMessageDto::getOffset).containsExactly(3L);
+        assertThat(inWindow).extracting(KafkaMessageDto::getOffset).containsExactlyInAnyOrder(5L, 6L, 7L);
+        assertThat(limited).hasSize(7);
+        assertThatThrownBy(() -> kafkaAdminService.searchMessages("no-such-topic", from, null, "key-1", null, null, null, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void searchStopsWhenTheClientGoesAwayWithoutAMatch() throws Exception {
+        // Given a partition that takes a long time to scan and finds nothing
+        TopicPartition topicPartition = new TopicPartition(TOPIC, 0);
+        Consumer<String, String> consumer = mock(Consumer.class);
+        when(consumer.partitionsFor(TOPIC)).thenReturn(Collections.singletonList(new PartitionInfo(TOPIC, 0, null, null, null)));
+        when(consumer.offsetsForTimes(anyMap())).thenReturn(Collections.singletonMap(topicPartition, new OffsetAndTimestamp(0, FIRST_TIMESTAMP)));
+        when(consumer.endOffsets(anyCollection())).thenReturn(Collections.singletonMap(topicPartition, Long.MAX_VALUE));
+        when(consumer.poll(any(Duration.class))).thenAnswer(invocation -> {
+            Thread.sleep(50);
+            return ConsumerRecords.empty();
+        });
+        ConsumerFactory<String, String> consumerFactory = mock(ConsumerFactory.class);
+        when(consumerFactory.createConsumer(anyString(), any(), anyString(), any(Properties.class))).thenReturn(consumer);
+        KafkaAdminService service = new KafkaAdminService(consumerFactory, objectMapper, 1, Duration.ofSeconds(5), 1, Duration.ofMinutes(5));
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Connection reset by peer");
+            }
+        };
+
+        try {
+            // When
+            long startTime = System.currentTimeMillis();
+            assertThatThrownBy(() -> service.searchMessages(TOPIC, Instant.ofEpochMilli(FIRST_TIMESTAMP), null, null, null, null, "CRN-", 10)
+                    .writeTo(disconnected)).isInstanceOf(IOException.class);
+
+            // Then the search gives up at its first heartbeat, not its timeout, and the scan hands its consumer back
+            assertThat(System.currentTimeMillis() - startTime).isLessThan(10_000);
+            verify(consumer, timeout(5000).times(2)).unsubscribe();
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private static List<KafkaMessageDto> search(Instant from, Instant to, String key, String headerName, String headerValue,
+                                                String valueContains, int limit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        kafkaAdminService.searchMessages(TOPIC, from, to, key, headerName, headerValue, valueContains, limit).writeTo(out);
+        List<KafkaMessageDto> hits = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) {
+                hits.add(objectMapper.readValue(line, KafkaMessageDto.class));
+            }
+        }
+        return hits;
+    }
+
+    private static List<Long> offsets(long from, long to) {
+        List<Long> offsets = new ArrayList<>();
+        for (long offset = from; offset < to; offset++) {
+            offsets.add(offset);
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,90 @@
+package com.poc.trademanager.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrincipalCheckTest {
+
+    private static final int RUNS = 500_000;
+
+    @Test
+    void agreesWithBigDecimalArithmeticOnRandomTrades() {
+        // Given a fixed seed, so a failure can be reproduced
+        Random random = new Random(20240612L);
+        int matched = 0;
+
+        for (int run = 0; run < RUNS; run++) {
+            BigDecimal quantity = randomDecimal(random);
+            BigDecimal price = randomDecimal(random);
+            BigDecimal principal = randomPrincipal(random, quantity, price);
+
+            // When
+            boolean actual = PrincipalCheck.matches(quantity, price, principal);
+
+            // Then it decides exactly as the original check did
+            boolean expected = quantity.multiply(price).setScale(4, RoundingMode.HALF_UP)
+                    .compareTo(principal.setScale(4, RoundingMode.HALF_UP)) == 0;
+            assertThat(actual).as("quantity %s, price %s, principal %s", quantity, price, principal).isEqualTo(expected);
+            if (expected) {
+                matched++;
+            }
+        }
+        // Both outcomes were exercised in earnest
+        assertThat(matched).isBetween(RUNS / 5, RUNS - RUNS / 5);
+    }
+
+    /**
+     * Mostly trade-sized amounts, with some that are too precise, too large or negatively scaled for the fast path.
+     */
+    private static BigDecimal randomDecimal(Random random) {
+        int digits;
+        int scale;
+        switch (random.nextInt(10)) {
+            case 0:
+                digits = 14 + random.nextInt(12);
+                scale = random.nextInt(20);
+                break;
+            case 1:
+                digits = 1 + random.nextInt(4);
+                scale = -random.nextInt(4);
+                break;
+            default:
+                digits = 1 + random.nextInt(11);
+                scale = random.nextInt(7);
+        }
+        BigInteger unscaled = new BigInteger(digits * 4, random).mod(BigInteger.TEN.pow(digits));
+        if (random.nextInt(20) == 0) {
+            unscaled = unscaled.negate();
+        }
+        return new BigDecimal(unscaled, scale);
+    }
+
+    /**
+     * The exact product, or values around its rounding boundaries: the rounded product at other scales, half a
+     * unit of the fourth place either side, or an unrelated amount.
+     */
+    private static BigDecimal randomPrincipal(Random random, BigDecimal quantity, BigDecimal price) {
+        BigDecimal product = quantity.multiply(price);
+        BigDecimal halfUnit = new BigDecimal("0.00005");
+        switch (random.nextInt(6)) {
+            case 0:
+                return product;
+            case 1:
+                return product.setScale(4, RoundingMode.HALF_UP);
+            case 2:
+                return product.setScale(random.nextInt(7), RoundingMode.HALF_UP);
+            case 3:
+                return product.setScale(4, RoundingMode.HALF_UP).add(halfUnit);
+            case 4:
+                return product.setScale(4, RoundingMode.HALF_UP).subtract(halfUnit.movePointLeft(random.nextInt(3)));
+            default:
+                return randomDecimal(random);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.poc.trademanager.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProcessingFlowControllerTest {
+
+    private static final String LISTENER_ID = "test-listener";
+    private static final String RETRY_LISTENER_ID = "test-retry-listener";
+
+    private KeyedTaskExecutor executor;
+    private MessageListenerContainer container;
+    private MessageListenerContainer retryContainer;
+    private KafkaListenerEndpointRegistry registry;
+    private ProcessingFlowController flowController;
+
+    @BeforeEach
+    void setUp() {
+        executor = new KeyedTaskExecutor(1, 10, "test-lane-");
+
+        container = mock(MessageListenerContainer.class);
+        registry = mock(KafkaListenerEndpointRegistry.class);
+        when(registry.getListenerContainer(LISTENER_ID)).thenReturn(container);
+        retryContainer = mock(MessageListenerContainer.class);
+        when(registry.getListenerContainer(RETRY_LISTENER_ID)).thenReturn(retryContainer);
+
+        flowController = flowController(executor, 30, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void batchesAreAcknowledgedInArrivalOrder() {
+        // Given
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        CompletableFuture<Void> second = new CompletableFuture<>();
+        Acknowledgment firstAck = mock(Acknowledgment.class);
+        Acknowledgment secondAck = mock(Acknowledgment.class);
+        flowController.track(LISTENER_ID, List.of(first), firstAck);
+        flowController.track(LISTENER_ID, List.of(second), secondAck);
+
+        // When the later batch finishes first
+        second.complete(null);
+
+        // Then nothing is committed ahead of the unfinished batch
+        verify(secondAck, never()).acknowledge();
+
+        // When the earlier batch finishes
+        first.complete(null);
+
+        // Then both are acknowledged, oldest first
+        InOrder order = inOrder(firstAck, secondAck);
+        order.verify(firstAck).acknowledge();
+        order.verify(secondAck).acknowledge();
+    }
+
+    @Test
+    void listenerIsPausedWhileTheQueueIsBackedUpAndResumedOnceItDrains() {
+        // Given a busy worker and a queue at the pause threshold
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> blocked = executor.execute("key", () -> await(release));
+        List<CompletableFuture<Void>> queued = List.of(
+                executor.execute("key", () -> { }),
+                executor.execute("key", () -> { }),
+                executor.execute("key", () -> { }));
+
+        // When
+        flowController.track(LISTENER_ID, List.of(blocked, queued.get(0), queued.get(1), queued.get(2)), mock(Acknowledgment.class));
+
+        // Then
+        verify(container).pause();
+
+        // When the queue drains
+        release.countDown();
+
+        // Then
+        verify(container, timeout(5000)).resume();
+    }
+
+    @Test
+    void listenerIsPausedWhenASingleLaneFillsUp() {
+        // Given four lanes of four, with every message for the same client reference
+        KeyedTaskExecutor hotExecutor = new KeyedTaskExecutor(4, 4, "hot-lane-");
+        ProcessingFlowController hotFlowController = flowController(hotExecutor, 80, 20);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Void> blocked = hotExecutor.execute("hot", () -> await(release));
+            List<CompletableFuture<Void>> queued = List.of(
+                    hotExecutor.execute("hot", () -> { }),
+                    hotExecutor.execute("hot", () -> { }),
+                    hotExecutor.execute("hot", () -> { }),
+                    hotExecutor.execute("hot", () -> { }));
+
+            // When one lane is full but the lanes together are only a quarter full
+            hotFlowController.track(LISTENER_ID, List.of(blocked, queued.get(0), queued.get(1), queued.get(2), queued.get(3)), mock(Acknowledgment.class));
+
+            // Then the listener is paused before the next batch can block on the hot lane
+            verify(container).pause();
+        } finally {
+            release.countDown();
+            hotExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void listenersArePausedAndAcknowledgedIndependently() {
+        // Given the main listener paused behind a busy worker and a queue at the pause threshold
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> blocked = executor.execute("key", () -> await(release));
+        List<CompletableFuture<Void>> queued = List.of(
+                executor.execute("key", () -> { }),
+                executor.execute("key", () -> { }),
+                executor.execute("key", () -> { }));
+        Acknowledgment mainAck = mock(Acknowledgment.class);
+        flowController.track(LISTENER_ID, List.of(blocked, queued.get(0), queued.get(1), queued.get(2)), mainAck);
+        verify(container).pause();
+
+        // When a retry-tier batch arrives and finishes while the main batch is still queued
+        CompletableFuture<Void> retried = new CompletableFuture<>();
+        Acknowledgment retryAck = mock(Acknowledgment.class);
+        flowController.track(RETRY_LISTENER_ID, List.of(retried), retryAck);
+        retried.complete(null);
+
+        // Then the retry listener is paused too, and its batch is committed without waiting for the main one,
+        // but neither listener is resumed while the lane is still full
+        verify(retryContainer).pause();
+        verify(retryAck).acknowledge();
+        verify(mainAck, never()).acknowledge();
+        verify(container, never()).resume();
+        verify(retryContainer, never()).resume();
+
+        // When the queue drains
+        release.countDown();
+
+        // Then both listeners are resumed, each on its own container
+        verify(mainAck, timeout(5000)).acknowledge();
+        verify(container, timeout(5000)).resume();
+        verify(retryContainer, timeout(5000)).resume();
+    }
+
+    private ProcessingFlowController flowController(KeyedTaskExecutor executor, int pauseLaneFillPercent, int resumeLaneFillPercent) {
+        ProcessingFlowController controller = new ProcessingFlowController(registry, executor);
+        ReflectionTestUtils.setField(controller, "pauseLaneFillPercent", pauseLaneFillPercent);
+        ReflectionTestUtils.setField(controller, "resumeLaneFillPercent", resumeLaneFillPercent);
+        return controller;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.entity.TradeOutboxMessage;
+import com.poc.trademanager.repository.TradeOutboxRepository;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@DirtiesContext
+@EmbeddedKafka(partitions = 1, topics = {TradeOutboxRelayTest.TOPIC})
+@TestPropertySource(properties = {
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.producer.compression-type=zstd",
+        "spring.kafka.producer.properties.linger.ms=5",
+        "app.outbox.relay-enabled=false",
+        "app.outbox.send-timeout=10s"
+})
+@ActiveProfiles("test")
+class TradeOutboxRelayTest {
+
+    static final String TOPIC = "test-outbox-topic";
+
+    @Autowired
+    private TradeOutboxRelay tradeOutboxRelay;
+
+    @Autowired
+    private TradeOutboxRepository tradeOutboxRepository;
+
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    @AfterEach
+    void tearDown() {
+        tradeOutboxRepository.deleteAll();
+    }
+
+    @Test
+    void marksOnlyAcknowledgedMessagesSent() {
+        // Given a batch with one message the broker cannot accept
+        TradeOutboxMessage first = tradeOutboxRepository.save(new TradeOutboxMessage(TOPIC, "{\"n\":1}"));
+        TradeOutboxMessage undeliverable = tradeOutboxRepository.save(new TradeOutboxMessage("not a valid topic!", "{\"n\":2}"));
+        TradeOutboxMessage third = tradeOutboxRepository.save(new TradeOutboxMessage(TOPIC, "{\"n\":3}"));
+
+        // When
+        int relayed = tradeOutboxRelay.relayBatch();
+
+        // Then the others are published in order and marked sent; the failed one is left for the next poll
+        assertThat(relayed).isEqualTo(-1);
+        assertThat(consume(2)).containsExactly("{\"n\":1}", "{\"n\":3}");
+        assertThat(tradeOutboxRepository.findById(first.getId()).orElseThrow().getSentAt()).isNotNull();
+        assertThat(tradeOutboxRepository.findById(undeliverable.getId()).orElseThrow().getSentAt()).isNull();
+        assertThat(tradeOutboxRepository.findById(third.getId()).orElseThrow().getSentAt()).isNotNull();
+
+        // When the failed message is fixed
+        undeliverable.setTopic(TOPIC);
+        tradeOutboxRepository.save(undeliverable);
+
+        // Then it alone is sent
+        assertThat(tradeOutboxRelay.relayBatch()).isEqualTo(1);
+        assertThat(tradeOutboxRelay.relayBatch()).isZero();
+    }
+
+    private List<String> consume(int count) {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("outbox-test", "false", embeddedKafka);
+        props.put("auto.offset.reset", "earliest");
+        try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(props,
+                new StringDeserializer(), new StringDeserializer()).createConsumer()) {
+            embeddedKafka.consumeFromAnEmbeddedTopic(consumer, TOPIC);
+            List<String> values = new ArrayList<>();
+            for (ConsumerRecord<String, String> record : KafkaTestUtils.getRecords(consumer, 10_000L, count)) {
+                values.add(record.value());
+            }
+            return values;
+        }
+    }
+}
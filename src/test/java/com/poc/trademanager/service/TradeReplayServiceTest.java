@@ -0,0 +1,100 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.dto.ErrorType;
+import com.poc.trademanager.dto.ReplayJobStatus;
+import com.poc.trademanager.dto.ReplayRequest;
+import com.poc.trademanager.dto.ReplaySource;
+import com.poc.trademanager.entity.ReplayJob;
+import com.poc.trademanager.entity.TradeException;
+import com.poc.trademanager.repository.TradeExceptionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "app.kafka.topic.json-input=test-input-topic",
+        "app.kafka.topic.json-output=test-output-topic",
+        "spring.kafka.consumer.group-id=test-group",
+        "app.replay.chunk-size=2"
+})
+class TradeReplayServiceTest {
+
+    @Autowired
+    private TradeReplayService tradeReplayService;
+
+    @Autowired
+    private TradeExceptionRepository tradeExceptionRepository;
+
+    @Test
+    void replaysMatchingExceptionsOnceInChunks() throws Exception {
+        // Given five technical failures for one fund, one for the same fund without a client reference and one for
+        // another fund
+        List<Long> matchingIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            matchingIds.add(saveException("CRN-REPLAY-" + i, "REPLAY-FUND").getId());
+        }
+        TradeException withoutReference = saveException(null, "REPLAY-FUND");
+        TradeException otherFund = saveException("CRN-REPLAY-OTHER", "OTHER-FUND");
+        ReplayRequest request = new ReplayRequest();
+        request.setSource(ReplaySource.TRADE_EXCEPTIONS);
+        request.setFundNumber("REPLAY-FUND");
+        request.setRatePerSecond(100);
+
+        // When
+        ReplayJob job = awaitFinished(tradeReplayService.start(request, "supportuser").getId());
+
+        // Then each is processed again; the fund is still unknown, so each fails again and is replaced by a new
+        // exception, which the job does not pick up although it matches the filter. Processing stores nothing for
+        // the one without a client reference, so it is skipped and kept.
+        assertThat(job.getStatus()).isEqualTo(ReplayJobStatus.COMPLETED);
+        assertThat(job.getTotalCandidates()).isEqualTo(6);
+        assertThat(job.getScanned()).isEqualTo(6);
+        assertThat(job.getReplayed()).isZero();
+        assertThat(job.getFailed()).isEqualTo(5);
+        assertThat(job.getSkipped()).isEqualTo(1);
+        assertThat(tradeExceptionRepository.findAllById(matchingIds)).isEmpty();
+        assertThat(tradeExceptionRepository.findById(withoutReference.getId())).isPresent();
+        List<TradeException> replayed = tradeExceptionRepository.findAll().stream()
+                .filter(e -> e.getClientReferenceNumber() != null && e.getClientReferenceNumber().startsWith("CRN-REPLAY-"))
+                .collect(Collectors.toList());
+        assertThat(replayed).hasSize(6);
+        assertThat(replayed).filteredOn(e -> "REPLAY-FUND".equals(e.getFundNumber()))
+                .allSatisfy(e -> {
+                    assertThat(e.getErrorType()).isEqualTo(ErrorType.BUSINESS);
+                    assertThat(e.getFailureReason()).isEqualTo("Fund not found");
+                });
+        assertThat(tradeExceptionRepository.findById(otherFund.getId())).isPresent();
+    }
+
+    private TradeException saveException(String clientReferenceNumber, String fundNumber) {
+        TradeException tradeException = new TradeException();
+        tradeException.setClientReferenceNumber(clientReferenceNumber);
+        tradeException.setFundNumber(fundNumber);
+        tradeException.setErrorType(ErrorType.TECHNICAL);
+        tradeException.setFailureReason("QueryTimeoutException: timed out");
+        tradeException.setFailedTradeJson(clientReferenceNumber == null
+                ? "{\"fundNumber\":\"" + fundNumber + "\"}"
+                : "{\"clientReferenceNumber\":\"" + clientReferenceNumber + "\",\"fundNumber\":\"" + fundNumber + "\"}");
+        return tradeExceptionRepository.save(tradeException);
+    }
+
+    private ReplayJob awaitFinished(long id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        ReplayJob job = tradeReplayService.getJob(id).orElseThrow();
+        while (job.getStatus() == ReplayJobStatus.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            job = tradeReplayService.getJob(id).orElseThrow();
+        }
+        return job;
+    }
+}
@@ -0,0 +1,39 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.DatabaseStorageService;
+import com.poc.trademanager.dto.TradeSummaryDto;
+import com.poc.trademanager.entity.TradeException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TradeSummaryCountersTest {
+
+    @Test
+    void backfilledExceptionsMoveFromUnknownToTheirFund() {
+        // Given three exceptions seeded as unknown because they had no fund number yet, and one for FUND-1
+        DatabaseStorageService databaseStorageService = mock(DatabaseStorageService.class);
+        when(databaseStorageService.getTradeSummary()).thenReturn(List.of(
+                new TradeSummaryDto(TradeException.UNKNOWN_FUND, 3L, 0L, 3L),
+                new TradeSummaryDto("FUND-1", 6L, 5L, 1L)));
+        TradeSummaryCounters counters = new TradeSummaryCounters(databaseStorageService);
+        counters.afterSingletonsInstantiated();
+
+        // When the backfill finds FUND-1 on two of them, and one of those is then replayed
+        counters.recordExceptionsBackfilled(Map.of("FUND-1", 2L));
+        counters.recordExceptionRemoved("FUND-1");
+
+        // Then
+        assertThat(counters.getSummary())
+                .extracting(TradeSummaryDto::getFundNumber, TradeSummaryDto::getExceptions)
+                .containsExactlyInAnyOrder(
+                        tuple(TradeException.UNKNOWN_FUND, 1L),
+                        tuple("FUND-1", 2L));
+    }
+}
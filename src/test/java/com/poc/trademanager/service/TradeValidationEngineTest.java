@@ -0,0 +1,117 @@
+package com.poc.trademanager.service;
+
+import com.poc.trademanager.dto.FundReference;
+import com.poc.trademanager.dto.RuleScope;
+import com.poc.trademanager.dto.TradeDetailsDto;
+import com.poc.trademanager.dto.TradeRuleType;
+import com.poc.trademanager.entity.TradeValidationRule;
+import com.poc.trademanager.repository.TradeValidationRuleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TradeValidationEngineTest {
+
+    private static final FundReference EQUITY_FUND = new FundReference("F1", "USD", "EQUITY");
+    private static final FundReference MONEY_MARKET_FUND = new FundReference("F2", "USD", "MONEY_MARKET");
+
+    private final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    private TradeValidationRuleRepository ruleRepository;
+    private final List<TradeValidationRule> rules = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ruleRepository = mock(TradeValidationRuleRepository.class);
+        when(ruleRepository.findByEnabledTrueOrderByIdAsc()).thenReturn(rules);
+        when(ruleRepository.count()).thenAnswer(invocation -> (long) rules.size());
+        rules.add(rule(1L, RuleScope.ALL, null, TradeRuleType.TRADE_DATE_IS_TODAY, null));
+        rules.add(rule(2L, RuleScope.ALL, null, TradeRuleType.SETTLE_DATE_IN_FUTURE, null));
+        rules.add(rule(3L, RuleScope.ALL, null, TradeRuleType.PRINCIPAL_EQUALS_QUANTITY_TIMES_PRICE, null));
+    }
+
+    @Test
+    void defaultRulesAreSeededAndReportFailuresInOrder() {
+        // Given an empty table
+        List<TradeValidationRule> seeded = new ArrayList<>(rules);
+        rules.clear();
+        when(ruleRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            rules.addAll(seeded);
+            return seeded;
+        });
+        TradeValidationEngine engine = new TradeValidationEngine(ruleRepository);
+
+        // When
+        engine.init();
+        TradeDetailsDto failing = trade(today.minusDays(1), null, "100", "2.5", "251");
+
+        // Then
+        verify(ruleRepository).saveAll(anyList());
+        assertThat(engine.validate(trade(today, today.plusDays(2), "100", "2.5", "250"), EQUITY_FUND)).isEmpty();
+        assertThat(engine.validate(failing, EQUITY_FUND)).containsExactly(
+                "Trade date (" + today.minusDays(1) + ") is not the current date (" + today + ").",
+                "Settlement date is null.",
+                "Principal amount (251.0000) does not equal quantity * price (250.0000).");
+    }
+
+    @Test
+    void scopedRulesApplyToTheirFundsAndChangesAreRecompiled() {
+        // Given a settlement limit for money market funds and a principal limit for fund F1
+        rules.add(rule(4L, RuleScope.FUND_TYPE, "MONEY_MARKET", TradeRuleType.MAX_SETTLEMENT_DAYS, "1"));
+        rules.add(rule(5L, RuleScope.FUND, "F1", TradeRuleType.MAX_PRINCIPAL, "1000"));
+        TradeValidationEngine engine = new TradeValidationEngine(ruleRepository);
+        engine.init();
+        TradeDetailsDto trade = trade(today, today.plusDays(2), "100", "20", "2000");
+
+        // Then each fund gets only its own rules
+        assertThat(engine.validate(trade, EQUITY_FUND)).containsExactly("Principal amount (2000) exceeds the limit (1000).");
+        assertThat(engine.validate(trade, MONEY_MARKET_FUND)).containsExactly(
+                "Settlement date (" + today.plusDays(2) + ") is more than 1 days after the trade date (" + today + ").");
+        // A fund whose type changed is merged again
+        assertThat(engine.validate(trade, new FundReference("F1", "USD", "MONEY_MARKET"))).hasSize(2);
+
+        // When a rule is removed and the refresh sees the change
+        rules.remove(4);
+        engine.refresh();
+
+        // Then
+        assertThat(engine.validate(trade, EQUITY_FUND)).isEmpty();
+
+        // When a rule that does not compile is added
+        rules.add(rule(6L, RuleScope.ALL, null, TradeRuleType.MAX_PRINCIPAL, "lots"));
+        when(ruleRepository.findLastUpdatedAt()).thenReturn(LocalDateTime.now());
+        engine.refresh();
+
+        // Then the previous rules stay in force
+        assertThat(engine.validate(trade, EQUITY_FUND)).isEmpty();
+        assertThat(engine.validate(trade, MONEY_MARKET_FUND)).hasSize(1);
+    }
+
+    private static TradeValidationRule rule(Long id, RuleScope scope, String scopeValue, TradeRuleType type, String parameter) {
+        TradeValidationRule rule = new TradeValidationRule(scope, scopeValue, type, parameter);
+        rule.setId(id);
+        return rule;
+    }
+
+    private static TradeDetailsDto trade(LocalDate tradeDate, LocalDate settleDate, String quantity, String price, String principal) {
+        TradeDetailsDto trade = new TradeDetailsDto();
+        trade.setFundNumber("F1");
+        trade.setTradeDate(tradeDate);
+        trade.setSettleDate(settleDate);
+        trade.setQuantity(new BigDecimal(quantity));
+        trade.setPrice(new BigDecimal(price));
+        trade.setPrincipal(new BigDecimal(principal));
+        return trade;
+    }
+}
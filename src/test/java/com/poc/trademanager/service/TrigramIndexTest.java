@@ -0,0 +1,81 @@
+package com.poc.trademanager.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrigramIndexTest {
+
+    @Test
+    void candidatesIncludeEveryDocumentContainingTheFilter() {
+        // Given documents indexed with ids out of order
+        Random random = new Random(42);
+        TrigramIndex index = new TrigramIndex();
+        List<String> documents = new ArrayList<>();
+        for (int id = 0; id < 2000; id++) {
+            documents.add("{\"clientReferenceNumber\":\"CRN-" + random.nextInt(100000) + "\",\"fundNumber\":\"F" + random.nextInt(50) + "\"}");
+        }
+        for (int id = documents.size() - 1; id >= 0; id -= 2) {
+            index.add(id, documents.get(id));
+        }
+        for (int id = 0; id < documents.size(); id += 2) {
+            index.add(id, documents.get(id));
+        }
+
+        for (String filter : List.of("crn-123", "\"F7\"", "CRN-9", "fundNumber", "no-such-text")) {
+            // When
+            long[] candidates = index.candidates(filter);
+
+            // Then
+            for (int id = 0; id < documents.size(); id++) {
+                if (documents.get(id).toLowerCase(Locale.ROOT).contains(filter.toLowerCase(Locale.ROOT))) {
+                    assertThat(candidates).as("candidates for %s", filter).contains(id);
+                }
+            }
+        }
+    }
+
+    @Test
+    void candidatesAreSortedAndDistinct() {
+        // Given
+        TrigramIndex index = new TrigramIndex();
+        index.add(30, "abcdef");
+        index.add(10, "abcdef");
+        index.add(20, "xyz");
+        index.add(10, "abcdef");
+
+        // Then
+        assertThat(index.candidates("bcd")).containsExactly(10, 30);
+        assertThat(index.candidates("zzz")).isEmpty();
+        assertThat(index.candidates("ab")).isNull();
+    }
+
+    @Test
+    void snapshotRoundTripsThePostings() throws IOException {
+        // Given
+        TrigramIndex index = new TrigramIndex();
+        index.add(1, "{\"fundNumber\":\"F1\"}");
+        index.add(1_000_000_000_000L, "{\"fundNumber\":\"F2\"}");
+
+        // When
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes));
+        TrigramIndex restored = TrigramIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        // Then
+        assertThat(restored.candidates("fundnumber")).containsExactly(1, 1_000_000_000_000L);
+        assertThat(restored.candidates("\"F2\"")).containsExactly(1_000_000_000_000L);
+        restored.add(5, "F2\"}");
+        assertThat(restored.candidates("F2\"}")).containsExactly(5, 1_000_000_000_000L);
+    }
+}